@@ -0,0 +1,37 @@
+/*
+	A move made by a player, applied through GameEngine.apply()
+
+	Actions only describe what the player wants to do, the engine checks them against the
+	rules before changing anything. Each kind of action has a type code so clients can switch
+	on it without instanceof chains.
+
+	Unit counts are always in Army order: foot, archer, cavalry, siege
+*/
+public abstract class Action {
+	// Type codes
+	public static final int BID = 0;
+	public static final int START = 1;
+	public static final int PICK = 2;
+	public static final int TAX = 3;
+	public static final int SPEND = 4;
+	public static final int EXPAND = 5;
+	public static final int MANEUVER = 6;
+	public static final int FORTIFY = 7;
+	public static final int SIEGE = 8;
+
+	private Player player;
+	private int type;
+
+	protected Action(Player player, int type) {
+		this.player = player;
+		this.type = type;
+	}
+
+	public Player getPlayer() {
+		return player;
+	}
+
+	public int getType() {
+		return type;
+	}
+}
@@ -101,6 +101,15 @@ public class Army {
 		}
 	}
 
+	//Replaces the unit counts, used when a saved game state is restored
+	public void setUnits(int foot, int archer, int cavalry, int siege) {
+		units[0] = foot;
+		units[1] = archer;
+		units[2] = cavalry;
+		units[3] = siege;
+		unitTotal = foot + archer + cavalry + siege;
+	}
+
 	/*
 		Joins with another Army
 		Other Army object is unchagned
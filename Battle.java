@@ -1,10 +1,8 @@
-import java.util.Random;
-import java.util.Arrays;
 import java.util.Scanner;
 
-public class Battle {
+public class Battle implements BattleResolver.Observer {
 	//Used to "roll dice"
-	private Random rand;
+	private DiceSource dice;
 	private Scanner sc;
 
 	private Territory dispTerr;
@@ -12,84 +10,63 @@ public class Battle {
 	private Army defender;
 
 	private boolean hasCastle;
-	private boolean canCastleDef;
 
-	//Constructor
-	public Battle(Territory dispTerr) {
+	//Unit counts at the start of the current rank, used for display
+	private int attUnits, defUnits;
+	//Set when the defender was shown their dice and asked to reroll
+	private boolean prompted, rerolled;
+
+	//Constructors
+	public Battle(Territory dispTerr, DiceSource dice) {
 		this.dispTerr = dispTerr;
+		this.dice = dice;
 		attacker = dispTerr.getAtk();
 		defender = dispTerr.getDef();
 		hasCastle = dispTerr.hasCastle();
-
-		rand = new Random();
-		sc = new Scanner(System.in);
-		canCastleDef = hasCastle;
 	}
 
-	//Returns an array of dice roll results in descending order
-	private int[] rollDice(int rolls) {
-		int[] results = new int[rolls];
-
-		//Loads results array with random values from 1 to 6
-		for(int i = 0; i < rolls; i++) {
-			results[i] = rand.nextInt(6) + 1;
-		}
-
-		//Sort array in descending order
-		for (int i = 0; i < results.length-1; i++) {
-			int largest = i;
-
-			for (int j = i+1; j < results.length; j++) {
-				if (results[j] > results[largest]) {
-					largest = j;
-				}
-			}
-
-			// Selected largest, sort
-			int temp = results[i];
-			results[i] = results[largest];
-			results[largest] = temp;
-		}
-
-		return results;
+	public Battle(Territory dispTerr) {
+		this(dispTerr, new SeededDice());
 	}
 
 	/*
-		Performs a general attack with the given amount of dice
-		Expects: attDice 1-3 and defDice 1-2
-		Returns an array in the format: {att hits, def hits}
+		Resolves the battle without any console input or output
+		Returns the winning army or null if both were destroyed
 	*/
-	private int[] genAttack(int[] attDice, int[] defDice) {
-		//Compare the dice, defense wins ties
-		int[] hits = new int[2];
-
-		//Find bound
-		int limit = (defDice.length > attDice.length) ? attDice.length : defDice.length;
+	public Army resolve() {
+		BattleResolver resolver = new BattleResolver(dice);
+		resolver.resolve(units(attacker), units(defender), hasCastle);
 
-		for (int i = 0; i < limit; i++) {
-			if (defDice[i] >= attDice[i]) {
-				//Defense wins
-				hits[1]++;
-			} else {
-				//Offense wins
-				hits[0]++;
-			}
-		}
+		return settle(resolver);
+	}
 
-		return hits;
+	//Returns the units of an army in the resolver's order
+	private static int[] units(Army army) {
+		int[] units = {army.getFoot(), army.getArcher(), army.getCavalry(), army.getSiege()};
+		return units;
 	}
 
-	//Returns the number of hits based on the number of rolls and the number a hit is based on
-	private int countHits(int[] dice, int hitOn) {
-		int hits = 0;
+	//Applies the resolver's casualties to the real armies and returns the winner
+	private Army settle(BattleResolver resolver) {
+		return settle(resolver.getWinner(), resolver.getAttackerTotal(), resolver.getDefenderTotal());
+	}
 
-		for (int i = 0; i < dice.length; i++) {
-			if (dice[i] >= hitOn) {
-				hits++;
-			}
+	/*
+		Applies a known result instead of fighting, as when a logged game is replayed
+		Winner is a BattleResolver code, returns the winning army or null if both were destroyed
+	*/
+	public Army settle(int winner, int attackerLeft, int defenderLeft) {
+		attacker.destroyUnits(attacker.getTotal() - attackerLeft);
+		defender.destroyUnits(defender.getTotal() - defenderLeft);
+
+		switch (winner) {
+			case BattleResolver.ATTACKER:
+				return attacker;
+			case BattleResolver.DEFENDER:
+				return defender;
+			default:
+				return null;
 		}
-
-		return hits;
 	}
 
 	//Clears the terminal
@@ -104,58 +81,147 @@ public class Battle {
 	}
 
 	//Returns a string of dice nice
-	private String displayDice(int[] dice) {
-		String out = "[";
+	private String displayDice(int[] dice, int count) {
+		StringBuilder out = new StringBuilder(count * 3 + 2);
+		out.append('[');
 
-		for (int i = 0; i < dice.length; i++) {
+		for (int i = 0; i < count; i++) {
 			if (i != 0) {
-				out += ", ";
+				out.append(", ");
 			}
 
-			out += dice[i];
+			out.append(dice[i]);
+		}
+
+		return out.append(']').toString();
+	}
+
+	//Formats unit counts the same way Army.toString() does
+	private String displayArmy(int[] units) {
+		return "Footmen: " + units[0] + " | Archers: " + units[1] +
+		" | Cavalry: " + units[2] + " | Siege: " + units[3];
+	}
+
+	//Returns the unit name for a rank, pluralized if needed
+	private String unitName(int rank, int count) {
+		switch (rank) {
+			case BattleResolver.SIEGE:
+				return "siege unit" + (count > 1 ? "s" : "");
+			case BattleResolver.ARCHER:
+				return "archer" + (count > 1 ? "s" : "");
+			default:
+				return "cavalr" + (count > 1 ? "ies" : "y");
 		}
+	}
 
-		return out + "]";
+	/*
+		Observer callbacks, these present the battle as the resolver plays it out
+	*/
+	public void rankStart(int rank, int turn, int[] att, int[] def) {
+		//Display turn, rank, and army standings
+		System.out.println("Turn: " + turn);
+		System.out.println("(A) " + attacker.getOwner().getName() + "'s Army: " + displayArmy(att));
+		System.out.println("(D) " + defender.getOwner().getName() + "'s Army: " + displayArmy(def) + "\n");
+
+		switch (rank) {
+			case BattleResolver.SIEGE:
+				System.out.println("Siege Bombardment");
+				attUnits = att[3];
+				defUnits = def[3];
+				break;
+			case BattleResolver.ARCHER:
+				System.out.println("Archer Volley");
+				attUnits = att[1];
+				defUnits = def[1];
+				break;
+			case BattleResolver.CAVALRY:
+				System.out.println("Cavalry Assault");
+				attUnits = att[2];
+				defUnits = def[2];
+				break;
+			default:
+				System.out.println("General Attack");
+				break;
+		}
+
+		prompted = rerolled = false;
 	}
 
 	//Allows the defender to reroll
-	private int[] castleDefense(int numOfDice) {
+	public boolean castleReroll(int rank, int[] attDice, int attCount, int[] defDice, int defCount) {
+		if (attCount != 0) System.out.println("\nAtt: " + displayDice(attDice, attCount));
+		System.out.println("Def: " + displayDice(defDice, defCount));
 		System.out.print("\nThe defender can reroll, what is their choice (1or0)? ");
 
+		prompted = true;
+
 		// Get input from user
 		do {
 			try {
 				int input = sc.nextInt();
-				
+
 				// Flush '\n'
 				sc.nextLine();
 
 				if (input == 0) {
 					// Do nothing
-					return null;
+					return false;
 				} else if (input == 1) {
 					// Continue as normal
-					break;
+					rerolled = true;
+					return true;
 				} else {
 					// Bad number
 					System.out.print("Type 1 or 0: ");
 				}
 			} catch (Exception e) {
+				// Flush the bad token
+				sc.nextLine();
 				System.out.print("Type an integer: ");
 			}
 		} while (true);
+	}
+
+	public void rankEnd(int rank, int[] attDice, int attCount, int[] defDice, int defCount, int attHits, int defHits) {
+		//Display the dice unless they were already shown for a reroll
+		if (!prompted) {
+			if (attCount != 0) System.out.println("\nAtt: " + displayDice(attDice, attCount));
+			if (defCount != 0) System.out.println("Def: " + displayDice(defDice, defCount));
+		} else if (rerolled) {
+			System.out.println("Def2: " + displayDice(defDice, defCount));
+		}
 
-		// Reroll and display results
-		int[] reroll = rollDice(numOfDice);
-		System.out.println("Def2: " + displayDice(reroll));
+		//Display Results
+		if (rank == BattleResolver.GENERAL) {
+			if (attHits > 0) {
+				System.out.println("\nThe attacker scored " + attHits + " hit" + (attHits > 1 ? "s" : "") + ".");
+			} else {
+				System.out.println("\nThe attacker scored no hits!");
+			}
 
-		// Set state
-		canCastleDef = false;
+			if (defHits > 0) {
+				System.out.println("The defender scored " + defHits + " hit" + (defHits > 1 ? "s" : "") + ".");
+			} else {
+				System.out.println("The defenders scored no hits!");
+			}
+		} else {
+			if (attUnits != 0) {
+				System.out.println("\nWith " + attUnits + " " + unitName(rank, attUnits) + " the attacker scored " + attHits + " hit" + (attHits != 1 ? "s" : "") + ".");
+			}
 
-		return reroll;
+			if (defUnits != 0) {
+				System.out.println("With " + defUnits + " " + unitName(rank, defUnits) + " the defender scored " + defHits + " hit" + (defHits != 1 ? "s" : "") + ".");
+			}
+		}
+
+		System.out.print("\nPress ENTER to continue...");
+		sc.nextLine();
+		clearScreen();
 	}
 
 	public Army startBattle() {
+		sc = new Scanner(System.in);
+
 		//Holds the initial values of the armies
 		int attInit = attacker.totalValue(), defInit = defender.totalValue();
 
@@ -165,192 +231,17 @@ public class Battle {
 		sc.nextLine();
 		clearScreen();
 
-		//Battle Loop
-		int turn = 1, rank = 1;
-		int attHits, defHits;
-
-		//Battle ends once an entire army is wiped out
-		while (attacker.getTotal() != 0 && defender.getTotal() != 0) {
-			attHits = 0;
-			defHits = 0;
-
-			//Display turn, rank, and army standings
-			System.out.println("Turn: " + turn);
-			System.out.println("(A) " + attacker.getOwner().getName() + "'s Army: " + attacker);
-			System.out.println("(D) " + defender.getOwner().getName() + "'s Army: " + defender + "\n");
-
-			if (rank == 1 && (attacker.getSiege() > 0 || defender.getSiege() > 0)) {
-				//Siege Attack
-				System.out.println("Siege Bombardment");
-
-				int attSiege = attacker.getSiege();
-				int defSiege = defender.getSiege();
-
-				if (attSiege != 0) {
-					int[] attDice = rollDice(2 * attSiege);
-					attHits = countHits(attDice, 3);
-
-					System.out.println("\nAtt: " + displayDice(attDice));
-					System.out.println("With " + attSiege + " siege unit" + (attSiege > 1 ? "s" : "") + " the attacker scored " + attHits + " hit" + (attHits > 1 ? "s" : "") + ".\n");
-				}
-				if (defSiege != 0) {
-					int[] defDice = rollDice(2 * defSiege);
-
-					System.out.println("\nDef: " + displayDice(defDice));
-					if (canCastleDef)  {
-						int[] reroll = castleDefense(defSiege);
-						if (reroll != null) defDice = reroll;
-					}
-
-					defHits = countHits(defDice, 3);
-					System.out.println("With " + defSiege + " siege unit" + (defSiege > 1 ? "s" : "") + " the defender scored " + defHits + " hit" + (defHits > 1 ? "s" : "") + ".");
-				}
-
-				//Cycle rank
-				rank = 2;
-
-				System.out.println("Press ENTER to continue...");
-				sc.nextLine();
-				clearScreen();
-
-			} else if (rank == 2 && (attacker.getArcher() > 0 || defender.getArcher() > 0)) {
-				//Archer Attack
-				System.out.println("Archer Volley");
-
-				int attArch = attacker.getArcher();
-				int defArch = defender.getArcher();
-
-				if (attArch != 0) {
-					int[] attDice = rollDice(attArch);
-					attHits = countHits(attDice, 5);
-
-					System.out.println("\nAtt: " + displayDice(attDice));
-					System.out.println("With " + attArch + " archer" + (attArch > 1 ? "s" : "") + " the attacker scored " + attHits + " hit" + (attHits > 1 ? "s" : "") + ".");
-				}
-				if (defArch != 0) {
-					int[] defDice = rollDice(defArch);
-
-					System.out.println("\nDef: " + displayDice(defDice));
-					if (canCastleDef)  {
-						int[] reroll = castleDefense(defArch);
-						if (reroll != null) defDice = reroll;
-					}
-
-					defHits = countHits(defDice, 5);
-					System.out.println("With " + defArch + " archer" + (defArch > 1 ? "s" : "") + " the defender scored " + defHits + " hit" + (defHits > 1 ? "s" : "") + ".");
-				}
-
-				//Cycle rank
-				rank = 3;
-
-				System.out.println("\nPress ENTER to continue...");
-				sc.nextLine();
-				clearScreen();
-
-			} else if (rank == 3 && (attacker.getCavalry() > 0 || defender.getCavalry() > 0)) {
-				//Cavalry Attack
-				System.out.println("Cavalry Assault");
-
-				int attCav = attacker.getCavalry();
-				int defCav = attacker.getCavalry();
-
-				if (attCav != 0) {
-					int[] attDice = rollDice(attCav);
-					attHits = countHits(attDice, 3);
-
-					System.out.println("\nAtt: " + displayDice(attDice));
-					System.out.println("With " + attCav + " cavalr" + (attCav > 1 ? "ies" : "y") + " the attacker scored " + attHits + " hit" + (attHits > 1 ? "s" : "") + ".");
-				}
-				if (defCav != 0) {
-					int[] defDice = rollDice(defCav);
-	
-					System.out.println("\nDef: " + displayDice(defDice));
-					if (canCastleDef)  {
-						int[] reroll = castleDefense(defCav);
-						if (reroll != null) defDice = reroll;
-					}
-
-					defHits = countHits(defDice, 3);
-					System.out.println("With " + defCav + " cavalr" + (defCav > 1 ? "ies" : "y") + " the defender scored " + defHits + " hit" + (defHits > 1 ? "s" : "") + ".");
-				}
-
-				//Cycle rank
-				rank = 4;
-
-				System.out.print("\nPress ENTER to continue...");
-				sc.nextLine();
-				clearScreen();
-
-			} else {
-				//General Attack
-				System.out.println("General Attack");
-
-				int[] attDice, defDice;
-
-				if (attacker.getTotal() < 3) {
-					attDice = rollDice(attacker.getTotal());
-				} else {
-					attDice = rollDice(3);
-				}
-
-				if (defender.getTotal() < 2) {
-					defDice = rollDice(1);
-				} else {
-					defDice = rollDice(2);
-				}
-
-				//Display Results
-				System.out.println("Att: " + displayDice(attDice));
-				System.out.println("Def: " + displayDice(defDice));
-				
-				if (canCastleDef)  {
-					int[] reroll = castleDefense(defDice.length);
-					if (reroll != null) defDice = reroll;
-				}
-
-				int[] hits = genAttack(attDice, defDice);
-				attHits = hits[0];
-				defHits = hits[1];
-
-				if (attHits > 0) {
-					System.out.println("\nThe attacker scored " + attHits + " hit" + (attHits > 1 ? "s" : "") + ".");
-				} else {
-					System.out.println("\nThe attacker scored no hits!");
-				}
-
-				if (defHits > 0) {
-					System.out.println("The defender scored " + defHits + " hit" + (defHits > 1 ? "s" : "") + ".");
-				} else {
-					System.out.println("The defenders scored no hits!");
-				}
-				
-				//Cycle rank
-				rank = 1;
-				turn++;
-
-				//Change state
-				canCastleDef = hasCastle;
-
-				System.out.print("\nPress ENTER to continue...");
-				sc.nextLine();
-				clearScreen();
-			}
-
-			//Remove units based on other army's hits
-			attacker.destroyUnits(defHits);
-			defender.destroyUnits(attHits);
-		}
+		//Battle Loop, every rank is shown through the observer callbacks
+		BattleResolver resolver = new BattleResolver(dice, this);
+		resolver.resolve(units(attacker), units(defender), hasCastle);
+		Army winner = settle(resolver);
 
 		//Display Winner
-		Army winner = null;
-
-		if (attacker.getTotal() == 0 && defender.getTotal() == 0) {
+		if (winner == null) {
 			System.out.println("Both armies have defeated each other. The land is vacant!");
-		} else if (defender.getTotal() == 0) {
-			winner = attacker;
+		} else if (winner == attacker) {
 			System.out.println("The attacking army siezes control of " + dispTerr.getPrefName() + "!");
 		} else {
-			winner = defender;
 			System.out.println("The defending army stood their ground!");
 		}
 
@@ -367,4 +258,4 @@ public class Battle {
 
 		return winner;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+/*
+	Command line battle calculator
+
+	Usage: java BattleCalculator attF attA attC attS defF defA defC defS [castle(1or0)] [trials] [seed]
+
+	Prints the exact odds from BattleOdds followed by a parallel simulation from BattleSimulator
+	with 95% confidence intervals, so either can be checked against the other.
+*/
+
+public class BattleCalculator {
+	public static void main(String[] args) {
+		if (args.length < 8) {
+			System.out.println("Usage: java BattleCalculator attF attA attC attS defF defA defC defS [castle(1or0)] [trials] [seed]");
+			return;
+		}
+
+		int[] att = new int[4], def = new int[4];
+		for (int i = 0; i < 4; i++) {
+			att[i] = Integer.parseInt(args[i]);
+			def[i] = Integer.parseInt(args[i + 4]);
+		}
+
+		boolean castle = args.length > 8 && args[8].equals("1");
+		long trials = 1000000;
+
+		try {
+			if (args.length > 9) trials = Long.parseLong(args[9]);
+		} catch (NumberFormatException e) {
+			trials = 0;
+		}
+
+		if (trials < 1) {
+			System.out.println("Trials must be a whole number of at least 1, not " + args[9]);
+			return;
+		}
+
+		long seed = args.length > 10 ? Long.parseLong(args[10]) : System.nanoTime();
+
+		System.out.println("Attacker: " + new Army(att[0], att[1], att[2], att[3]));
+		System.out.println("Defender: " + new Army(def[0], def[1], def[2], def[3]) + (castle ? " (Castle)" : ""));
+
+		// Exact odds
+		BattleOdds odds = new BattleOdds();
+		long start = System.nanoTime();
+		odds.compute(att, def, castle);
+		long time = System.nanoTime() - start;
+
+		System.out.println("\nExact Odds (" + (time / 1000) + " us):");
+		System.out.printf("  Attacker wins - %.4f%n", odds.getAttackerWin());
+		System.out.printf("  Defender wins - %.4f%n", odds.getDefenderWin());
+		System.out.printf("  Land vacant   - %.4f%n", odds.getMutualDestruction());
+		System.out.printf("  Units left    - Attacking %.2f | Defending %.2f%n", odds.getExpectedAttackers(), odds.getExpectedDefenders());
+
+		// Simulated battles
+		BattleSimulator sim = new BattleSimulator();
+		start = System.nanoTime();
+		BattleSimulator.Result res = sim.run(att, def, castle, trials, seed);
+		time = System.nanoTime() - start;
+
+		System.out.println("\nSimulated " + res.getTrials() + " battles (" + (time / 1000000) + " ms, "
+			+ (long) (res.getTrials() / (time / 1e9)) + " battles/s):");
+		printOutcome("Attacker wins", res, BattleResolver.ATTACKER);
+		printOutcome("Defender wins", res, BattleResolver.DEFENDER);
+		printOutcome("Land vacant  ", res, BattleResolver.NONE);
+		System.out.printf("  Units left    - Attacking %.2f +/- %.2f | Defending %.2f +/- %.2f%n", res.getExpectedAttackers(),
+			res.getAttackersMargin(), res.getExpectedDefenders(), res.getDefendersMargin());
+
+		System.out.println("\nAttacking units left: ");
+		printHistogram(res.getAttackerHistogram(), res.getTrials());
+		System.out.println("\nDefending units left: ");
+		printHistogram(res.getDefenderHistogram(), res.getTrials());
+	}
+
+	private static void printOutcome(String label, BattleSimulator.Result res, int winner) {
+		double[] ci = res.getInterval(winner);
+		System.out.printf("  %s - %.4f [%.4f, %.4f]%n", label, res.getProbability(winner), ci[0], ci[1]);
+	}
+
+	private static void printHistogram(long[] hist, long trials) {
+		for (int i = 0; i < hist.length; i++) {
+			if (hist[i] != 0) {
+				System.out.printf("  %3d - %.4f%n", i, (double) hist[i] / trials);
+			}
+		}
+	}
+}
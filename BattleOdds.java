@@ -0,0 +1,378 @@
+/*
+	Calculates the exact outcome distribution of a battle
+
+	Follows the same sequence as BattleResolver: siege bombardment, archer volley, cavalry assault
+	and a general attack each turn, with the castle reroll decided by BattleResolver.shouldReroll().
+
+	Units are always removed in the same order (see Army.destroyUnits()), so an army's composition
+	is fully determined by how many units it has lost. A battle state is then just
+	(attacker losses, defender losses, rank, castle reroll available) and is memoized on that.
+	Every turn ends with a general attack that always scores at least one hit, so states never repeat.
+
+	An instance reuses its buffers between queries and must not be shared across threads.
+*/
+
+public class BattleOdds {
+	// Per rank volley: unit index, dice per unit, and the number a hit is based on
+	private static final int[] RANK_UNIT = {3, 1, 2};
+	private static final int[] DICE_PER_UNIT = {2, 1, 1};
+	private static final int[] HIT_ON = {3, 5, 3};
+
+	// Values stored per state
+	private static final int ATT_WIN = 0, DEF_WIN = 1, NONE = 2, ATT_LEFT = 3, DEF_LEFT = 4, STRIDE = 5;
+
+	/*
+		General attack results indexed by [attDice][defDice][attHits]
+		The defender scores (min(attDice, defDice) - attHits) hits
+			GEN_PLAIN: no reroll available
+			GEN_KEEP: reroll available but the defender keeps their roll
+			GEN_REROLL: reroll available and used
+	*/
+	private static final double[][][] GEN_PLAIN = new double[4][3][];
+	private static final double[][][] GEN_KEEP = new double[4][3][];
+	private static final double[][][] GEN_REROLL = new double[4][3][];
+
+	static {
+		for (int na = 1; na <= 3; na++) {
+			for (int nd = 1; nd <= 2; nd++) {
+				buildGeneralTable(na, nd);
+			}
+		}
+	}
+
+	// Compositions after k losses, flattened as [k*4 + unit]
+	private int[] attComp = new int[0];
+	private int[] defComp = new int[0];
+	private int attTotal, defTotal;
+	private boolean hasCastle;
+
+	// Memoized values, flattened as [state*STRIDE + value]
+	private double[] memo = new double[0];
+	private boolean[] done = new boolean[0];
+
+	// Binomial distributions cached by [hitOn][dice]
+	private double[][][] binom = new double[7][][];
+
+	// Results of the last query
+	private double[] result = new double[STRIDE];
+
+	/*
+		Computes the outcome distribution for the given compositions (foot, archer, cavalry, siege)
+	*/
+	public void compute(int[] attacker, int[] defender, boolean hasCastle) {
+		this.hasCastle = hasCastle;
+		attTotal = attacker[0] + attacker[1] + attacker[2] + attacker[3];
+		defTotal = defender[0] + defender[1] + defender[2] + defender[3];
+
+		attComp = compositions(attComp, attacker, attTotal);
+		defComp = compositions(defComp, defender, defTotal);
+
+		int states = (attTotal + 1) * (defTotal + 1) * 8;
+		if (done.length < states) {
+			memo = new double[states * STRIDE];
+			done = new boolean[states];
+		} else {
+			for (int i = 0; i < states; i++) done[i] = false;
+		}
+
+		int s = state(0, 0, BattleResolver.SIEGE, hasCastle);
+		solve(0, 0, BattleResolver.SIEGE, hasCastle);
+
+		for (int i = 0; i < STRIDE; i++) {
+			result[i] = memo[s * STRIDE + i];
+		}
+	}
+
+	public void compute(Army attacker, Army defender, boolean hasCastle) {
+		int[] att = {attacker.getFoot(), attacker.getArcher(), attacker.getCavalry(), attacker.getSiege()};
+		int[] def = {defender.getFoot(), defender.getArcher(), defender.getCavalry(), defender.getSiege()};
+		compute(att, def, hasCastle);
+	}
+
+	/*
+		Getters for the last query
+	*/
+	public double getAttackerWin() {
+		return result[ATT_WIN];
+	}
+
+	public double getDefenderWin() {
+		return result[DEF_WIN];
+	}
+
+	// Both armies destroy each other and the territory is left vacant
+	public double getMutualDestruction() {
+		return result[NONE];
+	}
+
+	public double getExpectedAttackers() {
+		return result[ATT_LEFT];
+	}
+
+	public double getExpectedDefenders() {
+		return result[DEF_LEFT];
+	}
+
+	/*
+		Attacker win probability of the battle that starts after the given losses
+		Every such battle is a sub problem of the last query so it is answered from the same memo
+	*/
+	public double getAttackerWin(int attLost, int defLost) {
+		solve(attLost, defLost, BattleResolver.SIEGE, hasCastle);
+		return memo[state(attLost, defLost, BattleResolver.SIEGE, hasCastle) * STRIDE + ATT_WIN];
+	}
+
+	private int state(int attLost, int defLost, int rank, boolean canReroll) {
+		return ((attLost * (defTotal + 1) + defLost) * 4 + rank) * 2 + (canReroll ? 1 : 0);
+	}
+
+	/*
+		Fills in the memo for a state
+	*/
+	private void solve(int attLost, int defLost, int rank, boolean canReroll) {
+		int s = state(attLost, defLost, rank, canReroll);
+		if (done[s]) return;
+
+		int base = s * STRIDE;
+		for (int i = 0; i < STRIDE; i++) memo[base + i] = 0;
+
+		int attLeft = attTotal - attLost, defLeft = defTotal - defLost;
+
+		if (attLeft == 0 || defLeft == 0) {
+			// Battle is over
+			if (attLeft == 0 && defLeft == 0) {
+				memo[base + NONE] = 1;
+			} else if (defLeft == 0) {
+				memo[base + ATT_WIN] = 1;
+			} else {
+				memo[base + DEF_WIN] = 1;
+			}
+
+			memo[base + ATT_LEFT] = attLeft;
+			memo[base + DEF_LEFT] = defLeft;
+		} else if (rank == BattleResolver.GENERAL) {
+			generalAttack(base, attLost, defLost, canReroll);
+		} else {
+			volley(base, attLost, defLost, rank, canReroll);
+		}
+
+		done[s] = true;
+	}
+
+	private void volley(int base, int attLost, int defLost, int rank, boolean canReroll) {
+		int unit = RANK_UNIT[rank];
+		int attDice = attComp[attLost * 4 + unit] * DICE_PER_UNIT[rank];
+		int defDice = defComp[defLost * 4 + unit] * DICE_PER_UNIT[rank];
+
+		if (attDice == 0 && defDice == 0) {
+			// Nobody fires this rank
+			accumulate(base, 1, attLost, defLost, rank + 1, canReroll);
+			return;
+		}
+
+		double[] attProb = binomial(attDice, HIT_ON[rank]);
+		double[] defProb = binomial(defDice, HIT_ON[rank]);
+		boolean rerollPossible = canReroll && defDice != 0;
+
+		// Probability the defender's first roll is rerolled
+		double rerollMass = 0;
+		if (rerollPossible) {
+			for (int h = 0; h <= defDice; h++) {
+				if (BattleResolver.shouldReroll(rank, defDice, h, 0)) rerollMass += defProb[h];
+			}
+		}
+
+		for (int ah = 0; ah <= attDice; ah++) {
+			if (attProb[ah] == 0) continue;
+
+			for (int dh = 0; dh <= defDice; dh++) {
+				int nextAtt = cap(attLost + dh, attTotal);
+				int nextDef = cap(defLost + ah, defTotal);
+
+				if (!rerollPossible) {
+					accumulate(base, attProb[ah] * defProb[dh], nextAtt, nextDef, rank + 1, canReroll);
+				} else {
+					// Kept first rolls leave the castle available, rerolls use it up
+					if (!BattleResolver.shouldReroll(rank, defDice, dh, 0)) {
+						accumulate(base, attProb[ah] * defProb[dh], nextAtt, nextDef, rank + 1, true);
+					}
+
+					accumulate(base, attProb[ah] * rerollMass * defProb[dh], nextAtt, nextDef, rank + 1, false);
+				}
+			}
+		}
+	}
+
+	private void generalAttack(int base, int attLost, int defLost, boolean canReroll) {
+		int attLeft = attTotal - attLost, defLeft = defTotal - defLost;
+		int attDice = attLeft < 3 ? attLeft : 3;
+		int defDice = defLeft < 2 ? 1 : 2;
+		int limit = attDice < defDice ? attDice : defDice;
+
+		for (int ah = 0; ah <= limit; ah++) {
+			int nextAtt = cap(attLost + limit - ah, attTotal);
+			int nextDef = cap(defLost + ah, defTotal);
+
+			// Next turn starts with the castle available again
+			if (canReroll) {
+				accumulate(base, GEN_KEEP[attDice][defDice][ah] + GEN_REROLL[attDice][defDice][ah], nextAtt, nextDef, BattleResolver.SIEGE, hasCastle);
+			} else {
+				accumulate(base, GEN_PLAIN[attDice][defDice][ah], nextAtt, nextDef, BattleResolver.SIEGE, hasCastle);
+			}
+		}
+	}
+
+	// Adds a weighted successor state to the values at base
+	private void accumulate(int base, double prob, int attLost, int defLost, int rank, boolean canReroll) {
+		if (prob == 0) return;
+
+		// A new turn starts after the general attack
+		if (rank > BattleResolver.GENERAL) {
+			rank = BattleResolver.SIEGE;
+			canReroll = hasCastle;
+		}
+
+		solve(attLost, defLost, rank, canReroll);
+		int next = state(attLost, defLost, rank, canReroll) * STRIDE;
+
+		for (int i = 0; i < STRIDE; i++) {
+			memo[base + i] += prob * memo[next + i];
+		}
+	}
+
+	private static int cap(int lost, int total) {
+		return lost > total ? total : lost;
+	}
+
+	/*
+		Lists the composition after every number of losses
+	*/
+	private static int[] compositions(int[] buffer, int[] units, int total) {
+		int size = (total + 1) * 4;
+		if (buffer.length < size) buffer = new int[size];
+
+		int[] current = {units[0], units[1], units[2], units[3]};
+		int left = total;
+
+		for (int k = 0; k <= total; k++) {
+			for (int i = 0; i < 4; i++) {
+				buffer[k * 4 + i] = current[i];
+			}
+
+			left = BattleResolver.destroyUnits(current, left, 1);
+		}
+
+		return buffer;
+	}
+
+	// Probability of each number of hits when rolling a number of dice
+	private double[] binomial(int dice, int hitOn) {
+		double[][] cache = binom[hitOn];
+
+		if (cache == null || cache.length <= dice) {
+			double[][] grown = new double[dice + 1][];
+			if (cache != null) {
+				for (int i = 0; i < cache.length; i++) grown[i] = cache[i];
+			}
+
+			binom[hitOn] = cache = grown;
+		}
+
+		if (cache[dice] == null) {
+			double p = (7 - hitOn) / 6.0;
+			double[] dist = new double[dice + 1];
+			dist[0] = 1;
+
+			// Adds one die at a time
+			for (int n = 1; n <= dice; n++) {
+				for (int h = n; h > 0; h--) {
+					dist[h] = dist[h] * (1 - p) + dist[h-1] * p;
+				}
+
+				dist[0] *= 1 - p;
+			}
+
+			cache[dice] = dist;
+		}
+
+		return cache[dice];
+	}
+
+	/*
+		Enumerates every roll of a general attack
+	*/
+	private static void buildGeneralTable(int attDice, int defDice) {
+		int limit = attDice < defDice ? attDice : defDice;
+		int attRolls = pow6(attDice), defRolls = pow6(defDice);
+		double attWeight = 1.0 / attRolls, defWeight = 1.0 / defRolls;
+
+		double[] plain = new double[limit + 1];
+		double[] keep = new double[limit + 1];
+		double[] reroll = new double[limit + 1];
+		double[] given = new double[limit + 1];
+		int[] att = new int[attDice], def = new int[defDice];
+
+		for (int a = 0; a < attRolls; a++) {
+			decode(a, att);
+
+			// Distribution of att hits for this attacking roll
+			double rerollMass = 0;
+			for (int i = 0; i <= limit; i++) given[i] = 0;
+
+			for (int d = 0; d < defRolls; d++) {
+				decode(d, def);
+				int attHits = compare(att, def, limit);
+
+				given[attHits] += defWeight;
+
+				if (BattleResolver.shouldReroll(BattleResolver.GENERAL, defDice, limit - attHits, attHits)) {
+					rerollMass += defWeight;
+				} else {
+					keep[attHits] += attWeight * defWeight;
+				}
+			}
+
+			for (int i = 0; i <= limit; i++) {
+				plain[i] += attWeight * given[i];
+				reroll[i] += attWeight * rerollMass * given[i];
+			}
+		}
+
+		GEN_PLAIN[attDice][defDice] = plain;
+		GEN_KEEP[attDice][defDice] = keep;
+		GEN_REROLL[attDice][defDice] = reroll;
+	}
+
+	private static int pow6(int n) {
+		int out = 1;
+		for (int i = 0; i < n; i++) out *= 6;
+		return out;
+	}
+
+	// Turns a roll index into dice sorted in descending order
+	private static void decode(int roll, int[] dice) {
+		for (int i = 0; i < dice.length; i++) {
+			int value = roll % 6 + 1;
+			roll /= 6;
+
+			int j = i;
+			while (j > 0 && dice[j-1] < value) {
+				dice[j] = dice[j-1];
+				j--;
+			}
+
+			dice[j] = value;
+		}
+	}
+
+	// Returns the attacker's hits, defense wins ties
+	private static int compare(int[] att, int[] def, int limit) {
+		int hits = 0;
+
+		for (int i = 0; i < limit; i++) {
+			if (att[i] > def[i]) hits++;
+		}
+
+		return hits;
+	}
+}
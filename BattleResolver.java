@@ -0,0 +1,324 @@
+/*
+	Resolves a battle between two army compositions without any console I/O
+
+	Compositions are given in the same order Army stores them: foot, archer, cavalry, siege.
+	Each turn runs the ranks in order, skipping any rank where neither side has units:
+		- Siege Bombardment: two dice per siege weapon, hits on 3+
+		- Archer Volley: one die per archer, hits on 5+
+		- Cavalry Assault: one die per cavalry, hits on 3+
+		- General Attack: up to 3 attacking dice against up to 2 defending dice, defense wins ties
+	Casualties are removed after every rank in the same order as Army.destroyUnits().
+	The battle ends as soon as either side has no units left.
+
+	A castle lets the defender reroll their dice once per turn. Without an observer the
+	defender rerolls whenever the first roll did worse than expected (see shouldReroll).
+
+	Dice are only counted per face, hits and the general attack comparison are read straight from
+	those counts, so nothing is sorted or allocated while a battle is played out. Sorted dice are
+	only written out when an observer is there to look at them.
+
+	The resolver reuses its own buffers, so a single instance must not be shared across threads.
+	Bulk simulations should give each thread its own DiceSource (see SeededDice.split()).
+*/
+
+public class BattleResolver {
+	// Winner codes returned by resolve()
+	public static final int NONE = 0;
+	public static final int ATTACKER = 1;
+	public static final int DEFENDER = 2;
+
+	// Ranks in the order they fire each turn
+	public static final int SIEGE = 0;
+	public static final int ARCHER = 1;
+	public static final int CAVALRY = 2;
+	public static final int GENERAL = 3;
+
+	// Per rank volley: unit index, dice per unit, and the number a hit is based on
+	private static final int[] RANK_UNIT = {3, 1, 2};
+	private static final int[] DICE_PER_UNIT = {2, 1, 1};
+	private static final int[] HIT_ON = {3, 5, 3};
+
+	/*
+		Receives every rank as it is resolved, used to present a battle
+		Arrays passed in are the resolver's buffers and are only valid during the call
+	*/
+	public interface Observer {
+		// Called before a rank fires with the current compositions
+		void rankStart(int rank, int turn, int[] att, int[] def);
+
+		// Called when the defender may use their castle, return true to reroll
+		boolean castleReroll(int rank, int[] attDice, int attCount, int[] defDice, int defCount);
+
+		// Called after a rank fires but before casualties are removed
+		void rankEnd(int rank, int[] attDice, int attCount, int[] defDice, int defCount, int attHits, int defHits);
+	}
+
+	private DiceSource dice;
+	private Observer observer;
+
+	private int[] att = new int[4];
+	private int[] def = new int[4];
+	private int attTotal, defTotal;
+
+	// Dice counted by face (index 1-6)
+	private int[] attFaces = new int[7];
+	private int[] defFaces = new int[7];
+	private int attCount, defCount;
+
+	// Sorted dice for the observer, grown only when a larger volley is seen
+	private int[] attDice = new int[8];
+	private int[] defDice = new int[8];
+	private int attHits, defHits;
+
+	private boolean canCastleDef;
+	private int winner;
+	private int turns;
+
+	/*
+		Constructors
+	*/
+	public BattleResolver(DiceSource dice, Observer observer) {
+		this.dice = dice;
+		this.observer = observer;
+	}
+
+	public BattleResolver(DiceSource dice) {
+		this(dice, null);
+	}
+
+	/*
+		Plays out a full battle, input arrays are not modified
+		Returns NONE, ATTACKER or DEFENDER
+	*/
+	public int resolve(int[] attacker, int[] defender, boolean hasCastle) {
+		attTotal = defTotal = 0;
+
+		for (int i = 0; i < 4; i++) {
+			att[i] = attacker[i];
+			def[i] = defender[i];
+			attTotal += att[i];
+			defTotal += def[i];
+		}
+
+		turns = 0;
+
+		// Battle ends once an entire army is wiped out
+		while (attTotal != 0 && defTotal != 0) {
+			turns++;
+			canCastleDef = hasCastle;
+
+			for (int rank = SIEGE; rank <= GENERAL && attTotal != 0 && defTotal != 0; rank++) {
+				// Skip ranks that nobody has units for
+				if (rank != GENERAL && att[RANK_UNIT[rank]] == 0 && def[RANK_UNIT[rank]] == 0) continue;
+
+				if (observer != null) observer.rankStart(rank, turns, att, def);
+
+				if (rank == GENERAL) {
+					generalAttack();
+				} else {
+					volley(rank);
+				}
+
+				if (observer != null) {
+					writeDice();
+					observer.rankEnd(rank, attDice, attCount, defDice, defCount, attHits, defHits);
+				}
+
+				// Remove units based on other army's hits
+				attTotal = destroyUnits(att, attTotal, defHits);
+				defTotal = destroyUnits(def, defTotal, attHits);
+			}
+		}
+
+		if (attTotal == 0 && defTotal == 0) {
+			winner = NONE;
+		} else if (defTotal == 0) {
+			winner = ATTACKER;
+		} else {
+			winner = DEFENDER;
+		}
+
+		return winner;
+	}
+
+	/*
+		Policy used when no observer is deciding castle rerolls
+		Rank volleys reroll when fewer hits than the expected count were scored,
+		general attacks reroll when the attacker won more comparisons than the defender
+	*/
+	public static boolean shouldReroll(int rank, int dice, int hits, int lost) {
+		if (rank == GENERAL) {
+			return lost > hits;
+		}
+
+		return hits * 6 < dice * (7 - HIT_ON[rank]);
+	}
+
+	// Siege, archer or cavalry volley
+	private void volley(int rank) {
+		int unit = RANK_UNIT[rank];
+		int hitOn = HIT_ON[rank];
+
+		attCount = att[unit] * DICE_PER_UNIT[rank];
+		defCount = def[unit] * DICE_PER_UNIT[rank];
+
+		rollDice(attFaces, attCount);
+		attHits = countHits(attFaces, hitOn);
+
+		rollDice(defFaces, defCount);
+		defHits = countHits(defFaces, hitOn);
+
+		if (canCastleDef && defCount != 0 && wantsReroll(rank, defHits, 0)) {
+			rollDice(defFaces, defCount);
+			defHits = countHits(defFaces, hitOn);
+			canCastleDef = false;
+		}
+	}
+
+	// Compares the highest dice, defense wins ties
+	private void generalAttack() {
+		attCount = attTotal < 3 ? attTotal : 3;
+		defCount = defTotal < 2 ? 1 : 2;
+
+		rollDice(attFaces, attCount);
+		rollDice(defFaces, defCount);
+		compareDice();
+
+		if (canCastleDef && wantsReroll(GENERAL, defHits, attHits)) {
+			rollDice(defFaces, defCount);
+			compareDice();
+			canCastleDef = false;
+		}
+	}
+
+	/*
+		Pairs off the highest dice of each side by walking both face counts down from 6
+	*/
+	private void compareDice() {
+		int limit = defCount > attCount ? attCount : defCount;
+		int attFace = 6, defFace = 6;
+		int attLeft = attFaces[6], defLeft = defFaces[6];
+		attHits = defHits = 0;
+
+		for (int i = 0; i < limit; i++) {
+			// Step down to the next face that was rolled
+			while (attLeft == 0) attLeft = attFaces[--attFace];
+			while (defLeft == 0) defLeft = defFaces[--defFace];
+
+			if (defFace >= attFace) {
+				defHits++;
+			} else {
+				attHits++;
+			}
+
+			attLeft--;
+			defLeft--;
+		}
+	}
+
+	private boolean wantsReroll(int rank, int hits, int lost) {
+		if (observer != null) {
+			writeDice();
+			return observer.castleReroll(rank, attDice, attCount, defDice, defCount);
+		}
+
+		return shouldReroll(rank, defCount, hits, lost);
+	}
+
+	// Counts dice from 1 to 6 by face
+	private void rollDice(int[] faces, int count) {
+		for (int i = 1; i <= 6; i++) {
+			faces[i] = 0;
+		}
+
+		for (int i = 0; i < count; i++) {
+			faces[dice.roll()]++;
+		}
+	}
+
+	private static int countHits(int[] faces, int hitOn) {
+		int hits = 0;
+
+		for (int i = hitOn; i <= 6; i++) {
+			hits += faces[i];
+		}
+
+		return hits;
+	}
+
+	/*
+		Writes both sides' dice in descending order for the observer
+	*/
+	private void writeDice() {
+		ensureCapacity(attCount > defCount ? attCount : defCount);
+		expand(attFaces, attDice);
+		expand(defFaces, defDice);
+	}
+
+	private static void expand(int[] faces, int[] dice) {
+		int j = 0;
+
+		for (int face = 6; face >= 1; face--) {
+			for (int k = 0; k < faces[face]; k++) {
+				dice[j++] = face;
+			}
+		}
+	}
+
+	/*
+		Same removal order as Army.destroyUnits(), returns the new total
+	*/
+	static int destroyUnits(int[] units, int total, int hits) {
+		if (hits >= total) {
+			for (int i = 0; i < 4; i++) {
+				units[i] = 0;
+			}
+
+			return 0;
+		}
+
+		total -= hits;
+
+		for (int i = 0; hits > 0; i++) {
+			int removed = units[i] < hits ? units[i] : hits;
+			units[i] -= removed;
+			hits -= removed;
+		}
+
+		return total;
+	}
+
+	private void ensureCapacity(int count) {
+		if (count > attDice.length) {
+			attDice = new int[count];
+			defDice = new int[count];
+		}
+	}
+
+	/*
+		Getters, valid until the next call to resolve()
+	*/
+	public int getWinner() {
+		return winner;
+	}
+
+	public int getTurns() {
+		return turns;
+	}
+
+	public int[] getAttacker() {
+		return att;
+	}
+
+	public int[] getDefender() {
+		return def;
+	}
+
+	public int getAttackerTotal() {
+		return attTotal;
+	}
+
+	public int getDefenderTotal() {
+		return defTotal;
+	}
+}
@@ -0,0 +1,205 @@
+/*
+	Plays out large numbers of battles in parallel to estimate their outcomes
+
+	Trials are split recursively across a ForkJoinPool. Every task gets its own SeededDice
+	(split from the parent's) and its own BattleResolver, so no generator or buffer is shared
+	between threads. How trials are split depends only on their number, never on the pool, so a
+	run is reproducible for a given seed regardless of the pool size.
+
+	Results are merged into a Result holding outcome counts and survivor histograms.
+*/
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class BattleSimulator {
+	// Trials below this are run in a single task
+	private static final long MIN_BATCH = 10000;
+
+	// Batches a run is split into at most
+	private static final long MAX_BATCHES = 256;
+
+	// z value for a 95% confidence interval
+	private static final double Z = 1.96;
+
+	private ForkJoinPool pool;
+
+	/*
+		Constructors
+	*/
+	public BattleSimulator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public BattleSimulator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/*
+		Runs the given number of battles and returns the merged results
+		Compositions are in Army order: foot, archer, cavalry, siege
+		Throws IllegalArgumentException for fewer than one trial
+	*/
+	public Result run(int[] attacker, int[] defender, boolean hasCastle, long trials, long seed) {
+		if (trials < 1) throw new IllegalArgumentException("At least one trial is needed");
+
+		long batch = trials / MAX_BATCHES;
+		if (batch < MIN_BATCH) batch = MIN_BATCH;
+
+		return pool.invoke(new SimTask(attacker, defender, hasCastle, trials, batch, new SeededDice(seed)));
+	}
+
+	/*
+		95% Wilson score interval for a rate of count in n, returns {low, high}
+		Unlike the normal approximation it stays meaningful near 0 and 1 and for small n
+	*/
+	public static double[] wilson(long count, long n) {
+		double p = (double) count / n;
+		double z2n = Z * Z / n;
+		double center = (p + z2n / 2) / (1 + z2n);
+		double spread = Z * Math.sqrt(p * (1 - p) / n + z2n / (4.0 * n)) / (1 + z2n);
+
+		double[] out = {center - spread, center + spread};
+		return out;
+	}
+
+	/*
+		Splits trials in half until they are small enough to run
+	*/
+	private static class SimTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+
+		private int[] attacker, defender;
+		private boolean hasCastle;
+		private long trials, batch;
+		private SeededDice dice;
+
+		SimTask(int[] attacker, int[] defender, boolean hasCastle, long trials, long batch, SeededDice dice) {
+			this.attacker = attacker;
+			this.defender = defender;
+			this.hasCastle = hasCastle;
+			this.trials = trials;
+			this.batch = batch;
+			this.dice = dice;
+		}
+
+		protected Result compute() {
+			if (trials <= batch) {
+				return simulate();
+			}
+
+			long half = trials / 2;
+			SimTask left = new SimTask(attacker, defender, hasCastle, half, batch, dice.split());
+			SimTask right = new SimTask(attacker, defender, hasCastle, trials - half, batch, dice);
+
+			left.fork();
+			Result out = right.compute();
+			out.merge(left.join());
+
+			return out;
+		}
+
+		private Result simulate() {
+			BattleResolver resolver = new BattleResolver(dice);
+			Result out = new Result(total(attacker), total(defender));
+
+			for (long i = 0; i < trials; i++) {
+				out.wins[resolver.resolve(attacker, defender, hasCastle)]++;
+				out.attLeft[resolver.getAttackerTotal()]++;
+				out.defLeft[resolver.getDefenderTotal()]++;
+			}
+
+			out.trials = trials;
+			return out;
+		}
+
+		private static int total(int[] units) {
+			return units[0] + units[1] + units[2] + units[3];
+		}
+	}
+
+	/*
+		Outcome counts and histograms of surviving units
+	*/
+	public static class Result {
+		private long trials;
+		private long[] wins = new long[3];		// Indexed by BattleResolver winner codes
+		private long[] attLeft;					// Indexed by attacking units left
+		private long[] defLeft;					// Indexed by defending units left
+
+		Result(int attTotal, int defTotal) {
+			attLeft = new long[attTotal + 1];
+			defLeft = new long[defTotal + 1];
+		}
+
+		// Adds the other result into this one
+		void merge(Result other) {
+			trials += other.trials;
+
+			for (int i = 0; i < wins.length; i++) wins[i] += other.wins[i];
+			for (int i = 0; i < attLeft.length; i++) attLeft[i] += other.attLeft[i];
+			for (int i = 0; i < defLeft.length; i++) defLeft[i] += other.defLeft[i];
+		}
+
+		public long getTrials() {
+			return trials;
+		}
+
+		// Number of battles with the given winner code
+		public long getCount(int winner) {
+			return wins[winner];
+		}
+
+		public double getProbability(int winner) {
+			return (double) wins[winner] / trials;
+		}
+
+		/*
+			Wilson score interval for the probability of a winner code
+			Returns {low, high}
+		*/
+		public double[] getInterval(int winner) {
+			return wilson(wins[winner], trials);
+		}
+
+		// Histograms of the units left at the end of a battle
+		public long[] getAttackerHistogram() {
+			return attLeft;
+		}
+
+		public long[] getDefenderHistogram() {
+			return defLeft;
+		}
+
+		public double getExpectedAttackers() {
+			return mean(attLeft, trials);
+		}
+
+		public double getExpectedDefenders() {
+			return mean(defLeft, trials);
+		}
+
+		// Half width of the 95% confidence interval for the expected units left
+		public double getAttackersMargin() {
+			return margin(attLeft, trials);
+		}
+
+		public double getDefendersMargin() {
+			return margin(defLeft, trials);
+		}
+
+		private static double mean(long[] hist, long n) {
+			double sum = 0;
+			for (int i = 0; i < hist.length; i++) sum += (double) i * hist[i];
+			return sum / n;
+		}
+
+		// No spread can be measured from a single battle
+		private static double margin(long[] hist, long n) {
+			if (n < 2) return 0;
+
+			double mean = mean(hist, n), sq = 0;
+			for (int i = 0; i < hist.length; i++) sq += (i - mean) * (i - mean) * hist[i];
+			return Z * Math.sqrt(sq / (n - 1) / n);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+/*
+	A sealed bid for first player, bids are revealed once every player has bid
+*/
+public class BidAction extends Action {
+	private int amount;
+
+	public BidAction(Player player, int amount) {
+		super(player, BID);
+		this.amount = amount;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+}
@@ -14,6 +14,16 @@
 	...
 
 	For connections, name1 is connected to name2 and name3, they are conected back to name1.
+
+	Territories are given ids in the order they are listed (0 to count-1).
+	Names and crown names are indexed once at load in a case insensitive hash table.
+
+	Connections are compiled into compressed sparse rows: the neighbours of territory id are
+	neighbours[offsets[id]] to neighbours[offsets[id+1]-1]. Use getDegree() and getNeighbour()
+	to walk them without copying anything.
+
+	Each territory also gets an adjacency bitset (one bit per territory id packed into longs) so
+	adjacency is a single word probe and neighbourhoods can be combined with other id sets.
 */
 import java.io.File;
 import java.io.FileReader;
@@ -23,6 +33,18 @@ public class Board {
 	private Territory[] spaces;
 	private String[][] vertices;
 
+	// Open addressing table of names and crown names, ignoring case
+	private String[] lookupKeys;
+	private Territory[] lookup;
+	private int lookupMask;
+
+	// Compressed sparse row adjacency indexed by territory id
+	private int[] offsets;
+	private int[] neighbours;
+
+	// Words in a territory id bitset
+	private int words;
+
 	/*
 		Constructors
 	*/
@@ -39,6 +61,7 @@ public class Board {
 		this.spaces = spaces;
 		this.vertices = vertices;
 
+		buildIndex();
 		initializeConnections();
 	}
 
@@ -46,19 +69,124 @@ public class Board {
 		Retrieve territory object reference by name or crown name
 	*/
 	public Territory getTerritory(String name) {
-		for (int i = 0; i < spaces.length; i++) {
-			if (spaces[i].getName().equalsIgnoreCase(name) || (spaces[i].hasCrown() && spaces[i].getCrownName().equalsIgnoreCase(name))) {
-				return spaces[i];
+		if (name == null || lookup == null) return null;
+
+		// Probe until the name or an empty slot is found
+		for (int slot = hash(name) & lookupMask; lookupKeys[slot] != null; slot = (slot + 1) & lookupMask) {
+			if (lookupKeys[slot].equalsIgnoreCase(name)) {
+				return lookup[slot];
 			}
 		}
 
 		return null;
 	}
 
+	// Retrieve territory by id
+	public Territory getTerritory(int id) {
+		return spaces[id];
+	}
+
+	public int getTerritoryCount() {
+		return spaces.length;
+	}
+
+	/*
+		Zero copy neighbour iteration
+			for (int k = 0; k < brd.getDegree(id); k++) brd.getNeighbour(id, k) ...
+	*/
+	public int getDegree(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	// Returns the id of the kth neighbour of a territory
+	public int getNeighbour(int id, int k) {
+		return neighbours[offsets[id] + k];
+	}
+
+	public Territory getNeighbourTerritory(int id, int k) {
+		return spaces[neighbours[offsets[id] + k]];
+	}
+
+	/*
+		Bitset adjacency
+	*/
+	public boolean isAdjacent(int a, int b) {
+		return (spaces[a].getAdjacency()[b >>> 6] & (1L << b)) != 0;
+	}
+
+	// Number of longs in a bitset over territory ids
+	public int getWordCount() {
+		return words;
+	}
+
+	// Neighbour bitset of a territory, shared so it must not be modified
+	public long[] getAdjacency(int id) {
+		return spaces[id].getAdjacency();
+	}
+
+	/*
+		Writes the neighbours of id that are in set into out
+		Returns true if there were any
+	*/
+	public boolean neighboursIn(int id, long[] set, long[] out) {
+		long[] row = spaces[id].getAdjacency();
+		long any = 0;
+
+		for (int i = 0; i < words; i++) {
+			out[i] = row[i] & set[i];
+			any |= out[i];
+		}
+
+		return any != 0;
+	}
+
 	public Territory[] getTerritories() {
 		return spaces;
 	}
 
+	/*
+		Returns a board with the same territories (names, values, crowns, castles, ids) and no armies
+		The index, compressed rows and adjacency bitsets never change so they are shared
+	*/
+	public Board copy() {
+		Board out = new Board();
+		int n = spaces.length;
+
+		out.vertices = vertices;
+		out.offsets = offsets;
+		out.neighbours = neighbours;
+		out.words = words;
+		out.lookupKeys = lookupKeys;
+		out.lookupMask = lookupMask;
+		out.spaces = new Territory[n];
+
+		for (int i = 0; i < n; i++) {
+			Territory t = spaces[i];
+			out.spaces[i] = new Territory(t.getName(), t.getValue(), t.hasCrown(), t.getCrownName(), t.canStart());
+			out.spaces[i].setId(i);
+			out.spaces[i].setCastle(t.hasCastle());
+		}
+
+		for (int i = 0; i < n; i++) {
+			Territory[] conn = new Territory[getDegree(i)];
+
+			for (int k = 0; k < conn.length; k++) {
+				conn[k] = out.spaces[getNeighbour(i, k)];
+			}
+
+			out.spaces[i].setConnections(conn);
+			out.spaces[i].setAdjacency(spaces[i].getAdjacency());
+		}
+
+		out.lookup = new Territory[lookup.length];
+
+		for (int slot = 0; slot < lookup.length; slot++) {
+			if (lookup[slot] != null) out.lookup[slot] = out.spaces[lookup[slot].getId()];
+		}
+
+		return out;
+	}
+
 	/*
 		Creates territories and stores vertices from file
 		Format described in header
@@ -117,6 +245,7 @@ public class Board {
 			}
 
 			reader.close();
+			buildIndex();
 			initializeConnections();
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -160,19 +289,132 @@ public class Board {
 		return res;
 	}
 
+	/*
+		Assigns territory ids and indexes names and crown names
+		When names collide the territory listed first wins
+	*/
+	private void buildIndex() {
+		// At most two keys per territory, keep the table at most half full
+		int size = Integer.highestOneBit(spaces.length * 4) << 1;
+		lookupKeys = new String[size];
+		lookup = new Territory[size];
+		lookupMask = size - 1;
+
+		for (int i = 0; i < spaces.length; i++) {
+			spaces[i].setId(i);
+			index(spaces[i].getName(), spaces[i]);
+
+			if (spaces[i].hasCrown()) {
+				index(spaces[i].getCrownName(), spaces[i]);
+			}
+		}
+	}
+
+	private void index(String key, Territory terr) {
+		if (key == null) return;
+
+		int slot = hash(key) & lookupMask;
+		while (lookupKeys[slot] != null) {
+			// Already taken by an earlier territory
+			if (lookupKeys[slot].equalsIgnoreCase(key)) return;
+			slot = (slot + 1) & lookupMask;
+		}
+
+		lookupKeys[slot] = key;
+		lookup[slot] = terr;
+	}
+
+	// Case insensitive hash, folds characters the same way equalsIgnoreCase() compares them
+	private static int hash(String key) {
+		int h = 0;
+
+		for (int i = 0; i < key.length(); i++) {
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+		}
+
+		return h ^ (h >>> 16);
+	}
+
 	/*
 		Requires both spaces and vertex be properly initialized
+		Builds the compressed rows, then gives each territory its connection array once
 	*/
 	private void initializeConnections() {
-		// For each vertex
+		int n = spaces.length;
+		offsets = new int[n + 1];
+
+		// Count both ends of every edge, rows start after the ones before them
 		for (int i = 0; i < vertices.length; i++) {
-			Territory base = getTerritory(vertices[i][0]);
+			int base = getTerritory(vertices[i][0]).getId();
 
-			// For each territory in vertex
 			for (int j = 1; j < vertices[i].length; j++) {
-				base.addConnection(getTerritory(vertices[i][j]));
+				offsets[base + 1]++;
+				offsets[getTerritory(vertices[i][j]).getId() + 1]++;
 			}
 		}
+
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		// Fill the rows, fill[id] is where the next neighbour of id goes
+		neighbours = new int[offsets[n]];
+		int[] fill = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			fill[i] = offsets[i];
+		}
+
+		for (int i = 0; i < vertices.length; i++) {
+			int base = getTerritory(vertices[i][0]).getId();
+
+			for (int j = 1; j < vertices[i].length; j++) {
+				int other = getTerritory(vertices[i][j]).getId();
+
+				// Skip connections listed twice
+				if (!inRow(base, other, fill[base])) {
+					neighbours[fill[base]++] = other;
+					neighbours[fill[other]++] = base;
+				}
+			}
+		}
+
+		// Close the gaps left by skipped duplicates
+		int out = 0;
+		for (int i = 0; i < n; i++) {
+			int start = offsets[i];
+			offsets[i] = out;
+
+			for (int k = start; k < fill[i]; k++) {
+				neighbours[out++] = neighbours[k];
+			}
+		}
+
+		offsets[n] = out;
+
+		words = (n + 63) >>> 6;
+
+		for (int i = 0; i < n; i++) {
+			Territory[] conn = new Territory[getDegree(i)];
+			long[] row = new long[words];
+
+			for (int k = 0; k < conn.length; k++) {
+				conn[k] = getNeighbourTerritory(i, k);
+				row[getNeighbour(i, k) >>> 6] |= 1L << getNeighbour(i, k);
+			}
+
+			spaces[i].setConnections(conn);
+			spaces[i].setAdjacency(row);
+		}
+	}
+
+	// Checks the part of a row filled so far
+	private boolean inRow(int id, int other, int end) {
+		for (int k = offsets[id]; k < end; k++) {
+			if (neighbours[k] == other) return true;
+		}
+
+		return false;
 	}
 
 	/*
@@ -0,0 +1,10 @@
+/*
+	A computer controlled player
+
+	choose() is called whenever the engine is waiting on the bot's player (their bid, card picks,
+	or their part of a turn) and must return an action the engine accepts. It must return by
+	the deadline, a System.nanoTime() value, with the best choice found so far.
+*/
+public interface Bot {
+	Action choose(GameEngine engine, Player p, long deadline);
+}
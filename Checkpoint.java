@@ -0,0 +1,281 @@
+/*
+	Saves a game to a file and loads it back, so a game outlives the process playing it
+
+	A checkpoint is a GameState (see GameEngine.snapshot()) with what is needed to build the engine
+	again: the board file, player names, the deck and the rules. Dice are not saved.
+
+	The layout is fixed once the header's counts are known, every section starts at an offset
+	worked out from them and every number is a 4 byte int. Loading maps the file and reads the
+	ints in place, and single fields such as the round can be read without loading the rest, so
+	opening a great many parked games is quick. Saving writes a temporary file and moves it over
+	the old one, so a crash mid save leaves the last checkpoint whole.
+
+	Layout (n players, t territories, s card state ints per player, c cards in the deck):
+		Header (64 bytes)		magic, version, n, t, s, c, start money, crowns to win, castles,
+								turns per round, unit limits x4
+		Board path (256 bytes)	length (short) then UTF-8
+		Names (64 bytes each)	length (short) then UTF-8
+		Deck					c ints
+		Engine					phase, step, round, turn, start index, current, card in play,
+								first player, winner, castles built, last tax, last fortify,
+								last hits, battle count, then turn order, bids and picked (n each)
+		Players (each)			money, units x4, card state (s), territory count, territories (t)
+		Territories (each)		defender, attacker, defender units x4, attacker units x4, castle
+	Players are indices in the order they were named and -1 is none.
+*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class Checkpoint {
+	public static final int MAGIC = 0x52474350;			// "RGCP"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int PATH_SIZE = 256;
+	private static final int NAME_SIZE = 64;
+	private static final int ENGINE_INTS = 14;
+	private static final int TERRITORY_INTS = 11;
+
+	private ByteBuffer file;
+
+	// Counts from the header and the offsets they give
+	private int players, territories, cardStride, deckSize;
+	private int namesAt, deckAt, engineAt, playersAt, playerSize, territoriesAt, size;
+
+	private Checkpoint(int players, int territories, int cardStride, int deckSize) {
+		this.players = players;
+		this.territories = territories;
+		this.cardStride = cardStride;
+		this.deckSize = deckSize;
+
+		namesAt = HEADER_SIZE + PATH_SIZE;
+		deckAt = namesAt + players * NAME_SIZE;
+		engineAt = deckAt + deckSize * 4;
+		playersAt = engineAt + (ENGINE_INTS + players * 3) * 4;
+		playerSize = (6 + cardStride + territories) * 4;
+		territoriesAt = playersAt + players * playerSize;
+		size = territoriesAt + territories * TERRITORY_INTS * 4;
+	}
+
+	/*
+		Saving
+	*/
+	// Saves the game as it stands, boardPath is the board file it is played on
+	public static void save(GameEngine g, String boardPath, String path) throws IOException {
+		GameState s = g.snapshot();
+		int n = s.order.length, t = s.castle.length;
+		int[] deck = g.getDeck();
+
+		Checkpoint c = new Checkpoint(n, t, s.cardStride, deck.length);
+		ByteBuffer b = ByteBuffer.allocate(c.size);
+		c.file = b;
+
+		b.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(t).putInt(s.cardStride).putInt(deck.length);
+		b.putInt(g.getStartAmt()).putInt(g.getWinCrownCount()).putInt(g.getMaxCastles()).putInt(g.getTurnsPerRound());
+		for (int i = 0; i < 4; i++) b.putInt(g.getMaxUnits(i));
+
+		c.putString(HEADER_SIZE, PATH_SIZE, boardPath == null ? "" : boardPath);
+		for (int i = 0; i < n; i++) c.putString(c.namesAt + i * NAME_SIZE, NAME_SIZE, g.getPlayer(i).getName());
+
+		b.position(c.deckAt);
+		for (int i = 0; i < deck.length; i++) b.putInt(deck[i]);
+
+		// Engine
+		b.putInt(s.phase).putInt(s.step).putInt(s.round).putInt(s.turn).putInt(s.startIndex).putInt(s.current);
+		b.putInt(s.currentCard).putInt(s.firstPlayer).putInt(s.winner).putInt(s.totalCastles);
+		b.putInt(s.lastTax).putInt(s.lastFortify).putInt(s.lastHits).putInt(s.battleCount);
+
+		for (int i = 0; i < n; i++) b.putInt(s.order[i]);
+		for (int i = 0; i < n; i++) b.putInt(s.bids[i]);
+		for (int i = 0; i < n; i++) b.putInt(s.picked[i] ? 1 : 0);
+
+		// Players, unused territory slots are left zero
+		for (int j = 0; j < n; j++) {
+			b.position(c.playersAt + j * c.playerSize);
+			b.putInt(s.money[j]);
+			for (int i = 0; i < 4; i++) b.putInt(s.unitTotals[j * 4 + i]);
+			for (int i = 0; i < s.cardStride; i++) b.putInt(s.cards[j * s.cardStride + i]);
+
+			b.putInt(s.ownedCount[j]);
+			for (int k = 0; k < s.ownedCount[j]; k++) b.putInt(s.owned[j * t + k]);
+		}
+
+		// Territories
+		b.position(c.territoriesAt);
+
+		for (int id = 0; id < t; id++) {
+			b.putInt(s.defOwner[id]).putInt(s.atkOwner[id]);
+			for (int i = 0; i < 4; i++) b.putInt(s.defOwner[id] < 0 ? 0 : s.defUnits[id * 4 + i]);
+			for (int i = 0; i < 4; i++) b.putInt(s.atkOwner[id] < 0 ? 0 : s.atkUnits[id * 4 + i]);
+			b.putInt(s.castle[id] ? 1 : 0);
+		}
+
+		// Written beside the old checkpoint, then moved over it in one step
+		Path target = Paths.get(path);
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			b.clear();
+			while (b.hasRemaining()) channel.write(b);
+			channel.force(true);
+		}
+
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void putString(int at, int slot, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > slot - 2) throw new IllegalArgumentException("\"" + s + "\" is too long to save");
+
+		file.putShort(at, (short) bytes.length);
+		file.put(at + 2, bytes);
+	}
+
+	/*
+		Loading
+	*/
+	// Maps a checkpoint and checks its header, nothing else is read until asked for
+	public static Checkpoint open(String path) throws IOException {
+		MappedByteBuffer map;
+
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) throw new IOException(path + " is not a checkpoint");
+		if (map.getInt(4) != VERSION) throw new IOException(path + " is checkpoint version " + map.getInt(4) + ", not " + VERSION);
+
+		Checkpoint c = new Checkpoint(map.getInt(8), map.getInt(12), map.getInt(16), map.getInt(20));
+		if (map.limit() != c.size) throw new IOException(path + " is cut short");
+
+		c.file = map;
+		return c;
+	}
+
+	// A new engine on board (or the saved board file if null) in the saved state
+	public GameEngine newEngine(Board board, DiceSource dice) {
+		if (board == null) board = new Board(getBoardPath());
+		if (board.getTerritoryCount() != territories) throw new IllegalArgumentException("The game was saved on another board");
+
+		GameEngine g = new GameEngine(getNames(), board, getDeck(), dice);
+		if (g.getTurnsPerRound() != file.getInt(36)) throw new IllegalArgumentException("The game has " + file.getInt(36) + " turns a round");
+
+		g.setStartAmt(file.getInt(24));
+		g.setWinCrownCount(file.getInt(28));
+		g.setMaxCastles(file.getInt(32));
+		g.setMaxUnits(new int[] {file.getInt(40), file.getInt(44), file.getInt(48), file.getInt(52)});
+
+		load(g);
+		return g;
+	}
+
+	// Puts the saved state into an engine of the same game
+	public void load(GameEngine g) {
+		GameState s = g.newState();
+		if (!s.fits(players, territories, cardStride)) throw new IllegalArgumentException("The engine is not for this game");
+
+		ByteBuffer b = file.duplicate();
+		b.position(engineAt);
+
+		s.phase = b.getInt();
+		s.step = b.getInt();
+		s.round = b.getInt();
+		s.turn = b.getInt();
+		s.startIndex = b.getInt();
+		s.current = b.getInt();
+		s.currentCard = b.getInt();
+		s.firstPlayer = b.getInt();
+		s.winner = b.getInt();
+		s.totalCastles = b.getInt();
+		s.lastTax = b.getInt();
+		s.lastFortify = b.getInt();
+		s.lastHits = b.getInt();
+		s.battleCount = b.getInt();
+
+		for (int i = 0; i < players; i++) s.order[i] = b.getInt();
+		for (int i = 0; i < players; i++) s.bids[i] = b.getInt();
+		for (int i = 0; i < players; i++) s.picked[i] = b.getInt() != 0;
+
+		for (int j = 0; j < players; j++) {
+			b.position(playersAt + j * playerSize);
+			s.money[j] = b.getInt();
+			for (int i = 0; i < 4; i++) s.unitTotals[j * 4 + i] = b.getInt();
+			for (int i = 0; i < cardStride; i++) s.cards[j * cardStride + i] = b.getInt();
+
+			s.ownedCount[j] = b.getInt();
+			for (int k = 0; k < s.ownedCount[j]; k++) s.owned[j * territories + k] = b.getInt();
+		}
+
+		b.position(territoriesAt);
+
+		for (int id = 0; id < territories; id++) {
+			s.defOwner[id] = b.getInt();
+			s.atkOwner[id] = b.getInt();
+			for (int i = 0; i < 4; i++) s.defUnits[id * 4 + i] = b.getInt();
+			for (int i = 0; i < 4; i++) s.atkUnits[id * 4 + i] = b.getInt();
+			s.castle[id] = b.getInt() != 0;
+		}
+
+		s.full = true;
+		s.touchedCount = 0;
+		g.restore(s);
+	}
+
+	private String getString(int at) {
+		byte[] bytes = new byte[file.getShort(at)];
+		file.get(at + 2, bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+		Getters, read straight from the file
+	*/
+	public String getBoardPath() {
+		return getString(HEADER_SIZE);
+	}
+
+	public String[] getNames() {
+		String[] out = new String[players];
+		for (int i = 0; i < players; i++) out[i] = getString(namesAt + i * NAME_SIZE);
+
+		return out;
+	}
+
+	public int[] getDeck() {
+		int[] out = new int[deckSize];
+		for (int i = 0; i < deckSize; i++) out[i] = file.getInt(deckAt + i * 4);
+
+		return out;
+	}
+
+	public int getPhase() {
+		return file.getInt(engineAt);
+	}
+
+	public int getRound() {
+		return file.getInt(engineAt + 8);
+	}
+
+	// Index of the first player in the order players were named, -1 before bidding is over
+	public int getFirstPlayerIndex() {
+		return file.getInt(engineAt + 28);
+	}
+
+	// Money of a player by the index they were named at
+	public int getMoney(int player) {
+		return file.getInt(playersAt + player * playerSize);
+	}
+
+	public int getPlayerCount() {
+		return players;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+	Records rolls from another source or replays previously recorded rolls
+
+	A game played with a recording log can be saved and then played again with a replaying log
+	to get exactly the same rolls, which makes any game reproducible for profiling and bug triage.
+	Rolls are stored one byte each.
+
+	File format: number of rolls (int) followed by one byte per roll
+*/
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class DiceLog implements DiceSource {
+	private DiceSource source;		// Null when replaying
+	private byte[] rolls;
+	private int count;				// Rolls recorded
+	private int next;				// Next roll to replay
+
+	/*
+		Constructors, use record() or replay()
+	*/
+	private DiceLog(DiceSource source, byte[] rolls, int count) {
+		this.source = source;
+		this.rolls = rolls;
+		this.count = count;
+	}
+
+	// Records every roll made by source
+	public static DiceLog record(DiceSource source) {
+		return new DiceLog(source, new byte[256], 0);
+	}
+
+	// Replays rolls in the order given
+	public static DiceLog replay(byte[] rolls, int count) {
+		return new DiceLog(null, rolls, count);
+	}
+
+	public int roll() {
+		if (source == null) {
+			if (next == count) {
+				throw new IllegalStateException("Dice log ran out after " + count + " rolls");
+			}
+
+			return rolls[next++];
+		}
+
+		int roll = source.roll();
+
+		if (count == rolls.length) {
+			byte[] grown = new byte[rolls.length * 2];
+			System.arraycopy(rolls, 0, grown, 0, count);
+			rolls = grown;
+		}
+
+		rolls[count++] = (byte) roll;
+		return roll;
+	}
+
+	public boolean isReplaying() {
+		return source == null;
+	}
+
+	// Total rolls in the log
+	public int getCount() {
+		return count;
+	}
+
+	// Rolls replayed so far
+	public int getPosition() {
+		return next;
+	}
+
+	// Returns a copy of the recorded rolls
+	public byte[] getRolls() {
+		byte[] out = new byte[count];
+		System.arraycopy(rolls, 0, out, 0, count);
+		return out;
+	}
+
+	/*
+		Saving and loading
+	*/
+	public void save(String path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			out.writeInt(count);
+			out.write(rolls, 0, count);
+		}
+	}
+
+	// Loads a saved log for replay
+	public static DiceLog load(String path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			int count = in.readInt();
+			byte[] rolls = new byte[count];
+			in.readFully(rolls);
+
+			return replay(rolls, count);
+		}
+	}
+}
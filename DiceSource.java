@@ -0,0 +1,11 @@
+/*
+	Source of die rolls for Game and Battle
+
+	Every roll in the game goes through one of these so a game can be seeded, split across
+	threads, or recorded and replayed roll for roll (see SeededDice, ThreadDice and DiceLog).
+*/
+
+public interface DiceSource {
+	// Returns a die roll from 1 to 6
+	int roll();
+}
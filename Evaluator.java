@@ -0,0 +1,133 @@
+/*
+	Scores how well a player is doing, used by bots to compare positions and moves
+
+	A position is worth
+		crowns * crownWeight
+		+ largest taxable supply chain * taxWeight
+		+ value of every army the player has on the board * armyWeight
+		+ money * moneyWeight
+		- exposure * exposureWeight
+	where a territory's exposure is how far the enemy armies next to it outweigh its defenders.
+
+	The weights are configurable so bots with different priorities can be played against each
+	other. The helpers below are also used to estimate what a single move changes.
+*/
+import java.util.List;
+
+public class Evaluator {
+	private double crownWeight;
+	private double taxWeight;
+	private double armyWeight;
+	private double moneyWeight;
+	private double exposureWeight;
+
+	/*
+		Constructors
+	*/
+	public Evaluator(double crownWeight, double taxWeight, double armyWeight, double moneyWeight, double exposureWeight) {
+		this.crownWeight = crownWeight;
+		this.taxWeight = taxWeight;
+		this.armyWeight = armyWeight;
+		this.moneyWeight = moneyWeight;
+		this.exposureWeight = exposureWeight;
+	}
+
+	public Evaluator() {
+		this(25, 1.5, 1.1, 1, 0.4);
+	}
+
+	/*
+		Scores a player's whole position
+	*/
+	public double evaluate(Player p) {
+		List<Territory> owned = p.getTerritories();
+		double army = 0, exposure = 0;
+
+		for (int i = 0; i < owned.size(); i++) {
+			Territory t = owned.get(i);
+
+			if (p.isDefending(t)) {
+				army += t.getDef().totalValue();
+				exposure += exposure(p, t, t.getDef().totalValue());
+			} else {
+				army += t.getAtk().totalValue();
+			}
+		}
+
+		return crownWeight * p.getCrowns() + taxWeight * p.getTaxValue() + armyWeight * army
+			+ moneyWeight * p.getMoney() - exposureWeight * exposure;
+	}
+
+	// What holding a territory is worth on its own
+	public double territoryValue(Territory t) {
+		return (t.hasCrown() ? crownWeight : 0) + taxWeight * t.getValue();
+	}
+
+	/*
+		Value of the enemy armies next to a territory (defenders and attackers that are not p)
+	*/
+	public int pressure(Player p, Territory t) {
+		int out = 0;
+
+		for (int i = 0; i < t.getConnectionCount(); i++) {
+			Territory n = t.getConnection(i);
+
+			if (n.getDef() != null && n.getDefPly() != p) out += n.getDef().totalValue();
+			if (n.getAtk() != null && n.getAtkPly() != p) out += n.getAtk().totalValue();
+		}
+
+		return out;
+	}
+
+	// How far the enemies next to a territory outweigh the given defence, castles count double
+	public double exposure(Player p, Territory t, int defence) {
+		int held = t.hasCastle() ? defence * 2 : defence;
+		return Math.max(0, pressure(p, t) - held);
+	}
+
+	/*
+		Getters
+	*/
+	public double getCrownWeight() {
+		return crownWeight;
+	}
+
+	public double getTaxWeight() {
+		return taxWeight;
+	}
+
+	public double getArmyWeight() {
+		return armyWeight;
+	}
+
+	public double getMoneyWeight() {
+		return moneyWeight;
+	}
+
+	public double getExposureWeight() {
+		return exposureWeight;
+	}
+
+	/*
+		Setters
+	*/
+	public void setCrownWeight(double crownWeight) {
+		this.crownWeight = crownWeight;
+	}
+
+	public void setTaxWeight(double taxWeight) {
+		this.taxWeight = taxWeight;
+	}
+
+	public void setArmyWeight(double armyWeight) {
+		this.armyWeight = armyWeight;
+	}
+
+	public void setMoneyWeight(double moneyWeight) {
+		this.moneyWeight = moneyWeight;
+	}
+
+	public void setExposureWeight(double exposureWeight) {
+		this.exposureWeight = exposureWeight;
+	}
+}
@@ -0,0 +1,419 @@
+/*
+	Append-only binary log of everything that changes a game, for crash recovery, audits and analytics
+
+	Attach one with GameEngine.setEventLog() before anyone bids. From then on the engine reports
+	each accepted action, the dice it rolled, how every dispute came out, and the start of each
+	round. Nothing is serialized from the object graph, a game is rebuilt by applying the actions
+	again (see EventReader).
+
+	Events are encoded into a direct buffer and only reach the FileChannel when the buffer is full,
+	at the start of every round, at the end of the game and on flush() or close(), so recording a
+	move costs a few hundred nanoseconds and no system call. A crash loses at most the round in
+	progress; EventReader stops cleanly at a torn last event.
+
+	Battles can be played on the console, where the defender decides on rerolls, so the dice alone
+	do not replay a dispute. Each DISPUTE event holds the outcome and the rolls of that battle only.
+
+	File format: magic, then events of tag (varint), payload length (varint), payload
+		GAME_START	version, board path, territory count, player names, cards, start money,
+					crowns to win, castles, turns per round, unit limits x4
+		ACTION		player index, action type, then by type:
+						BID			amount
+						PICK		first card, second card
+						START		territory
+						TAX			-
+						SPEND		0 done | 1 buy | 2 buy with a castle, territory, units x4
+						EXPAND		0 pass | 1 move | 2 split, from, to, units x4 [, split to, units x4]
+						MANEUVER	0 pass | 1 move, from, to, units x4
+						FORTIFY		territory + 1 (0 passes)
+						SIEGE		from + 1 (0 passes), to
+		ROLLS		count, rolls two to a byte (low half first), made by the action before it
+		DISPUTE		territory, winner (BattleResolver codes), attacker and defender units left,
+					then its rolls like ROLLS
+		ROUND		round that started
+		GAME_END	winner index
+		UNDO		the last action was taken back
+
+	Numbers are unsigned LEB128 varints, territories are ids and players are their index in
+	the order they were named. Unknown tags can be skipped by their length.
+*/
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class EventLog implements Closeable {
+	public static final int MAGIC = 0x52474C47;			// "RGLG"
+	public static final int VERSION = 1;
+
+	// Event tags
+	public static final int GAME_START = 0;
+	public static final int ACTION = 1;
+	public static final int ROLLS = 2;
+	public static final int DISPUTE = 3;
+	public static final int ROUND = 4;
+	public static final int GAME_END = 5;
+	public static final int UNDO = 6;
+
+	private FileChannel channel;
+	private ByteBuffer out;						// Waiting to be written to the channel
+	private ByteBuffer event;					// Payload of the event being encoded
+	private ByteBuffer pending;					// Events of the action being applied, written after it
+
+	// Rolls made during the action being applied
+	private byte[] rolls = new byte[64];
+	private int rollCount;
+	private int actionRolls;					// Rolls before the first battle, -1 until one starts
+	private int battleFrom;						// First roll of the battle being fought
+
+	private String boardPath;
+	private boolean flushDue;					// A round or the game ended during the action
+	private long events;
+
+	public EventLog(String path, String boardPath) throws IOException {
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+		out = ByteBuffer.allocateDirect(1 << 16);
+		event = ByteBuffer.allocate(256);
+		pending = ByteBuffer.allocate(256);
+
+		this.boardPath = boardPath == null ? "" : boardPath;
+		out.putInt(MAGIC);
+	}
+
+	/*
+		Hooks called by GameEngine
+	*/
+	// Writes the header, the engine is attached before any bid
+	void start(GameEngine g) {
+		Player[] players = new Player[g.getPlayers().length];
+		for (int i = 0; i < players.length; i++) players[i] = g.getPlayer(i);
+
+		event.clear();
+		putVarint(VERSION);
+		putString(boardPath);
+		putVarint(g.getBoard().getTerritoryCount());
+
+		putVarint(players.length);
+		for (int i = 0; i < players.length; i++) putString(players[i].getName());
+
+		int[] cards = g.getDeck();
+		putVarint(cards.length);
+		for (int i = 0; i < cards.length; i++) putVarint(cards[i]);
+
+		putVarint(g.getStartAmt());
+		putVarint(g.getWinCrownCount());
+		putVarint(g.getMaxCastles());
+		putVarint(g.getTurnsPerRound());
+		for (int i = 0; i < 4; i++) putVarint(g.getMaxUnits(i));
+
+		write(GAME_START);
+	}
+
+	// Records every roll made through the returned source
+	DiceSource watch(DiceSource dice) {
+		return () -> {
+			int roll = dice.roll();
+
+			if (rollCount == rolls.length) {
+				byte[] grown = new byte[rolls.length * 2];
+				System.arraycopy(rolls, 0, grown, 0, rollCount);
+				rolls = grown;
+			}
+
+			rolls[rollCount++] = (byte) roll;
+			return roll;
+		};
+	}
+
+	// An action is about to be applied, anything left from a rejected one is dropped
+	void begin() {
+		pending.clear();
+		rollCount = 0;
+		actionRolls = -1;
+	}
+
+	// A battle is about to be fought
+	void battle() {
+		if (actionRolls < 0) actionRolls = rollCount;
+		battleFrom = rollCount;
+	}
+
+	void dispute(int id, int winner, int attackerLeft, int defenderLeft) {
+		event.clear();
+		putVarint(id);
+		putVarint(winner);
+		putVarint(attackerLeft);
+		putVarint(defenderLeft);
+		putRolls(battleFrom, rollCount);
+
+		writePending(DISPUTE);
+	}
+
+	void round(int round) {
+		event.clear();
+		putVarint(round);
+
+		writePending(ROUND);
+		flushDue = true;
+	}
+
+	void gameEnd(int winner) {
+		event.clear();
+		putVarint(winner);
+
+		writePending(GAME_END);
+		flushDue = true;
+	}
+
+	void undo() {
+		event.clear();
+		write(UNDO);
+	}
+
+	// The action was accepted, writes it with its rolls and what it caused
+	void action(GameEngine g, Action a) {
+		event.clear();
+		putVarint(g.getPlayerIndex(a.getPlayer()));
+		putVarint(a.getType());
+		putAction(a);
+		write(ACTION);
+
+		int before = actionRolls < 0 ? rollCount : actionRolls;
+
+		if (before > 0) {
+			event.clear();
+			putRolls(0, before);
+			write(ROLLS);
+		}
+
+		pending.flip();
+		reserve(pending.remaining());
+		out.put(pending);
+		pending.clear();
+
+		if (flushDue) {
+			flushDue = false;
+
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private void putAction(Action a) {
+		switch (a.getType()) {
+			case Action.BID:
+				putVarint(((BidAction) a).getAmount());
+				break;
+
+			case Action.PICK:
+				PickCards pick = (PickCards) a;
+				putVarint(pick.getFirst());
+				putVarint(pick.getSecond());
+				break;
+
+			case Action.START:
+				putVarint(((StartAction) a).getLocation().getId());
+				break;
+
+			case Action.SPEND:
+				SpendAction spend = (SpendAction) a;
+
+				if (spend.isDone()) {
+					putVarint(0);
+				} else {
+					putVarint(spend.hasCastle() ? 2 : 1);
+					putVarint(spend.getLocation().getId());
+					putUnits(spend.getUnits());
+				}
+				break;
+
+			case Action.EXPAND:
+				ExpandAction expand = (ExpandAction) a;
+
+				if (expand.isPass()) {
+					putVarint(0);
+				} else {
+					putVarint(expand.isSplit() ? 2 : 1);
+					putVarint(expand.getFrom().getId());
+					putVarint(expand.getTo().getId());
+					putUnits(expand.getUnits());
+
+					if (expand.isSplit()) {
+						putVarint(expand.getSplitTo().getId());
+						putUnits(expand.getSplitUnits());
+					}
+				}
+				break;
+
+			case Action.MANEUVER:
+				ManeuverAction maneuver = (ManeuverAction) a;
+
+				if (maneuver.isPass()) {
+					putVarint(0);
+				} else {
+					putVarint(1);
+					putVarint(maneuver.getFrom().getId());
+					putVarint(maneuver.getTo().getId());
+					putUnits(maneuver.getUnits());
+				}
+				break;
+
+			case Action.FORTIFY:
+				FortifyAction fortify = (FortifyAction) a;
+				putVarint(fortify.isPass() ? 0 : fortify.getLocation().getId() + 1);
+				break;
+
+			case Action.SIEGE:
+				SiegeAction siege = (SiegeAction) a;
+
+				if (siege.isPass()) {
+					putVarint(0);
+				} else {
+					putVarint(siege.getFrom().getId() + 1);
+					putVarint(siege.getTo().getId());
+				}
+				break;
+
+			default:
+				// Tax has nothing more
+		}
+	}
+
+	/*
+		Writing
+	*/
+	// Writes everything buffered to the file
+	public void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) channel.write(out);
+		out.clear();
+	}
+
+	public void close() throws IOException {
+		if (!channel.isOpen()) return;
+
+		flush();
+		channel.close();
+	}
+
+	// Events written so far
+	public long getEventCount() {
+		return events;
+	}
+
+	// Appends the event being encoded to the output
+	private void write(int tag) {
+		event.flip();
+		reserve(event.remaining() + 10);
+
+		putVarint(out, tag);
+		putVarint(out, event.remaining());
+		out.put(event);
+		events++;
+	}
+
+	// Holds the event being encoded until the action that caused it is written
+	private void writePending(int tag) {
+		event.flip();
+
+		if (pending.remaining() < event.remaining() + 10) {
+			ByteBuffer grown = ByteBuffer.allocate((pending.capacity() + event.remaining() + 10) * 2);
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+
+		putVarint(pending, tag);
+		putVarint(pending, event.remaining());
+		pending.put(event);
+		events++;
+	}
+
+	// Makes room in the output, writing it out or growing it if one event is larger than it
+	private void reserve(int bytes) {
+		if (out.remaining() >= bytes) return;
+
+		try {
+			flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (out.capacity() < bytes) out = ByteBuffer.allocateDirect(bytes * 2);
+	}
+
+	/*
+		Encoding
+	*/
+	private void putVarint(int v) {
+		ensure(5);
+		putVarint(event, v);
+	}
+
+	private void putUnits(int[] units) {
+		for (int i = 0; i < 4; i++) putVarint(units[i]);
+	}
+
+	private void putString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		putVarint(bytes.length);
+
+		ensure(bytes.length);
+		event.put(bytes);
+	}
+
+	private void putRolls(int from, int to) {
+		putVarint(to - from);
+		ensure((to - from + 1) / 2);
+
+		for (int i = from; i < to; i += 2) {
+			int high = i + 1 < to ? rolls[i + 1] : 0;
+			event.put((byte) (rolls[i] | high << 4));
+		}
+	}
+
+	// Grows the event buffer to take at least bytes more
+	private void ensure(int bytes) {
+		if (event.remaining() >= bytes) return;
+
+		ByteBuffer grown = ByteBuffer.allocate((event.capacity() + bytes) * 2);
+		event.flip();
+		grown.put(event);
+		event = grown;
+	}
+
+	// Seven bits a byte, low bits first, the top bit set on every byte but the last
+	static void putVarint(ByteBuffer b, int v) {
+		while ((v & ~0x7F) != 0) {
+			b.put((byte) (v & 0x7F | 0x80));
+			v >>>= 7;
+		}
+
+		b.put((byte) v);
+	}
+
+	// Returns -1 if the buffer ends inside the number
+	static int getVarint(ByteBuffer b) {
+		int v = 0;
+
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (!b.hasRemaining()) return -1;
+
+			int next = b.get();
+			v |= (next & 0x7F) << shift;
+
+			if (next >= 0) return v;
+		}
+
+		return -1;
+	}
+}
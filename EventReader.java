@@ -0,0 +1,304 @@
+/*
+	Reads an EventLog file back one event at a time
+
+	The file is memory mapped and decoded in place. The header (GAME_START) is read when the
+	reader opens, then next() steps through the events and the getters describe the current one.
+	A log cut off by a crash ends at its last whole event, isTorn() tells whether anything was
+	left over. newEngine() builds an engine with the logged players, cards and rules, and
+	toAction() turns an ACTION event back into an Action for it, so a game is rebuilt by
+	applying the actions in order while feeding the engine the logged rolls.
+*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class EventReader {
+	private MappedByteBuffer file;
+
+	// Header
+	private int version;
+	private String boardPath;
+	private int territoryCount;
+	private String[] names;
+	private int[] cards;
+	private int startAmt, winCrownCount, maxCastles, turnsPerRound;
+	private int[] maxUnits = new int[4];
+
+	// Current event
+	private int tag = -1;
+	private int position;						// Offset of the event in the file
+	private int[] values = new int[16];
+	private int valueCount;
+	private byte[] rolls = new byte[64];
+	private int rollCount;
+	private boolean torn;
+
+	public EventReader(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (file.remaining() < 4 || file.getInt() != EventLog.MAGIC) throw new IOException(path + " is not an event log");
+		if (!next() || tag != EventLog.GAME_START) throw new IOException(path + " has no game header");
+	}
+
+	/*
+		Moves to the next event, false at the end of the log
+	*/
+	public boolean next() {
+		position = file.position();
+
+		int t = EventLog.getVarint(file);
+		int length = t < 0 ? -1 : EventLog.getVarint(file);
+
+		if (length < 0 || length > file.remaining()) {
+			torn = position < file.limit();
+			file.position(position);
+			tag = -1;
+			return false;
+		}
+
+		ByteBuffer payload = file.slice(file.position(), length);
+		file.position(file.position() + length);
+
+		tag = t;
+		valueCount = 0;
+		rollCount = 0;
+
+		switch (tag) {
+			case EventLog.GAME_START:
+				readHeader(payload);
+				break;
+
+			case EventLog.ROLLS:
+				readRolls(payload);
+				break;
+
+			case EventLog.DISPUTE:
+				for (int i = 0; i < 4; i++) add(EventLog.getVarint(payload));
+				readRolls(payload);
+				break;
+
+			default:
+				// Actions, rounds and the game end are all varints
+				while (payload.hasRemaining()) add(EventLog.getVarint(payload));
+		}
+
+		return true;
+	}
+
+	// Goes back to an offset from getPosition(), the next call to next() reads that event
+	public void seek(int position) {
+		file.position(position);
+		tag = -1;
+	}
+
+	private void add(int v) {
+		if (valueCount == values.length) {
+			int[] grown = new int[values.length * 2];
+			System.arraycopy(values, 0, grown, 0, valueCount);
+			values = grown;
+		}
+
+		values[valueCount++] = v;
+	}
+
+	private void readRolls(ByteBuffer b) {
+		rollCount = EventLog.getVarint(b);
+		if (rolls.length < rollCount) rolls = new byte[rollCount * 2];
+
+		for (int i = 0; i < rollCount; i += 2) {
+			int pair = b.get();
+			rolls[i] = (byte) (pair & 0x0F);
+			if (i + 1 < rollCount) rolls[i + 1] = (byte) (pair >> 4 & 0x0F);
+		}
+	}
+
+	private void readHeader(ByteBuffer b) {
+		version = EventLog.getVarint(b);
+		boardPath = readString(b);
+		territoryCount = EventLog.getVarint(b);
+
+		names = new String[EventLog.getVarint(b)];
+		for (int i = 0; i < names.length; i++) names[i] = readString(b);
+
+		cards = new int[EventLog.getVarint(b)];
+		for (int i = 0; i < cards.length; i++) cards[i] = EventLog.getVarint(b);
+
+		startAmt = EventLog.getVarint(b);
+		winCrownCount = EventLog.getVarint(b);
+		maxCastles = EventLog.getVarint(b);
+		turnsPerRound = EventLog.getVarint(b);
+		for (int i = 0; i < 4; i++) maxUnits[i] = EventLog.getVarint(b);
+	}
+
+	private static String readString(ByteBuffer b) {
+		byte[] bytes = new byte[EventLog.getVarint(b)];
+		b.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+		Rebuilding the game
+	*/
+	// A new engine with the logged players, cards and rules on the given board
+	public GameEngine newEngine(Board board, DiceSource dice) {
+		if (board.getTerritoryCount() != territoryCount) throw new IllegalArgumentException("The log was played on another board");
+
+		GameEngine g = new GameEngine(names, board, cards, dice);
+		if (g.getTurnsPerRound() != turnsPerRound) throw new IllegalArgumentException("The log has " + turnsPerRound + " turns a round");
+
+		g.setStartAmt(startAmt);
+		g.setWinCrownCount(winCrownCount);
+		g.setMaxCastles(maxCastles);
+		g.setMaxUnits(maxUnits);
+
+		return g;
+	}
+
+	// The current ACTION event as an action in the given game
+	public Action toAction(GameEngine g) {
+		Player p = g.getPlayer(values[0]);
+		Board brd = g.getBoard();
+		int kind = valueCount > 2 ? values[2] : 0;
+
+		switch (values[1]) {
+			case Action.BID:
+				return new BidAction(p, values[2]);
+
+			case Action.PICK:
+				return new PickCards(p, values[2], values[3]);
+
+			case Action.START:
+				return new StartAction(p, brd.getTerritory(values[2]));
+
+			case Action.TAX:
+				return new TaxAction(p);
+
+			case Action.SPEND:
+				if (kind == 0) return new SpendAction(p);
+				return new SpendAction(p, brd.getTerritory(values[3]), units(4), kind == 2);
+
+			case Action.EXPAND:
+				if (kind == 0) return new ExpandAction(p);
+
+				if (kind == 2) {
+					return new ExpandAction(p, brd.getTerritory(values[3]), brd.getTerritory(values[4]), units(5),
+						brd.getTerritory(values[9]), units(10));
+				}
+
+				return new ExpandAction(p, brd.getTerritory(values[3]), brd.getTerritory(values[4]), units(5));
+
+			case Action.MANEUVER:
+				if (kind == 0) return new ManeuverAction(p);
+				return new ManeuverAction(p, brd.getTerritory(values[3]), brd.getTerritory(values[4]), units(5));
+
+			case Action.FORTIFY:
+				return new FortifyAction(p, kind == 0 ? null : brd.getTerritory(kind - 1));
+
+			case Action.SIEGE:
+				if (kind == 0) return new SiegeAction(p, null, null);
+				return new SiegeAction(p, brd.getTerritory(kind - 1), brd.getTerritory(values[3]));
+
+			default:
+				throw new IllegalStateException("Unknown action type " + values[1]);
+		}
+	}
+
+	private int[] units(int from) {
+		int[] out = new int[4];
+		System.arraycopy(values, from, out, 0, 4);
+		return out;
+	}
+
+	/*
+		Current event
+	*/
+	public int getTag() {
+		return tag;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	// Whether the log ends inside an event, as it does after a crash mid write
+	public boolean isTorn() {
+		return torn;
+	}
+
+	// ACTION
+	public int getPlayerIndex() {
+		return values[0];
+	}
+
+	public int getActionType() {
+		return values[1];
+	}
+
+	// ROLLS and DISPUTE
+	public int getRollCount() {
+		return rollCount;
+	}
+
+	public int getRoll(int i) {
+		return rolls[i];
+	}
+
+	// DISPUTE
+	public int getTerritory() {
+		return values[0];
+	}
+
+	// BattleResolver.NONE, ATTACKER or DEFENDER
+	public int getWinner() {
+		return values[1];
+	}
+
+	public int getAttackerLeft() {
+		return values[2];
+	}
+
+	public int getDefenderLeft() {
+		return values[3];
+	}
+
+	// ROUND
+	public int getRound() {
+		return values[0];
+	}
+
+	// GAME_END
+	public int getWinnerIndex() {
+		return values[0];
+	}
+
+	/*
+		Header
+	*/
+	public int getVersion() {
+		return version;
+	}
+
+	// Board file the game was played on, empty if it was not given
+	public String getBoardPath() {
+		return boardPath;
+	}
+
+	public int getTerritoryCount() {
+		return territoryCount;
+	}
+
+	public String[] getNames() {
+		return names.clone();
+	}
+
+	public int[] getCards() {
+		return cards.clone();
+	}
+}
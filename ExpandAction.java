@@ -0,0 +1,55 @@
+/*
+	Moves units from a territory the player defends into neighbouring territory they are not on
+	A split expand (SplitExpand card) sends a second group to a second neighbour
+	An ExpandAction without a source passes
+*/
+public class ExpandAction extends Action {
+	private Territory from, to, splitTo;
+	private int[] units, splitUnits;
+
+	public ExpandAction(Player player, Territory from, Territory to, int[] units, Territory splitTo, int[] splitUnits) {
+		super(player, EXPAND);
+		this.from = from;
+		this.to = to;
+		this.units = units;
+		this.splitTo = splitTo;
+		this.splitUnits = splitUnits;
+	}
+
+	public ExpandAction(Player player, Territory from, Territory to, int[] units) {
+		this(player, from, to, units, null, null);
+	}
+
+	// Pass
+	public ExpandAction(Player player) {
+		this(player, null, null, null, null, null);
+	}
+
+	public boolean isPass() {
+		return from == null;
+	}
+
+	public boolean isSplit() {
+		return splitTo != null;
+	}
+
+	public Territory getFrom() {
+		return from;
+	}
+
+	public Territory getTo() {
+		return to;
+	}
+
+	public int[] getUnits() {
+		return units;
+	}
+
+	public Territory getSplitTo() {
+		return splitTo;
+	}
+
+	public int[] getSplitUnits() {
+		return splitUnits;
+	}
+}
@@ -0,0 +1,19 @@
+/*
+	Adds footmen to a city or castle the player defends, a null territory passes
+*/
+public class FortifyAction extends Action {
+	private Territory location;
+
+	public FortifyAction(Player player, Territory location) {
+		super(player, FORTIFY);
+		this.location = location;
+	}
+
+	public boolean isPass() {
+		return location == null;
+	}
+
+	public Territory getLocation() {
+		return location;
+	}
+}
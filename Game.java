@@ -1,8 +1,12 @@
 /*
 	Game represents a game instance
 	Can only play one game
-	
-	Follows game procedure which is sumarized below.
+
+	Game is the console client of a GameEngine. It asks each player for their choices,
+	turns them into Actions and hands them to the engine, which holds the rules and state.
+	Seats can be given to Bots, which play within a time limit per move while the console
+	reports what they did. Bids and card picks are sealed, so the bots think about theirs at
+	the same time (see SealedMoves) while people enter their own.
 	Game setup is done in another class (naming players, choosing a board, rules?)
 
 	Before Start:
@@ -21,104 +25,111 @@
 		- Check for win, repeat otherwise
 */
 import java.util.Scanner;
-import java.util.Random;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.InputMismatchException;
+import java.io.IOException;
 
 public class Game {
 	private Board brd;						// Stores game board
-	private Player[] players;				// Stores players
-	private int[] cardPool;					// Stores what cards will be used
-
-	private Player firstPlayer;				// Stores player ref who is first
+	private GameEngine engine;				// Rules and game state
 	private boolean ready;					// Can the game be started?
-	private boolean gameOver;				// Game over flag, set in start()
 
 	private Scanner sc;						// Scanner for quick access
-	private Random rng;						// RNG for quick access
-
-	private int startAmt;					// Starting amount of money
-	private int[] maxUnits;					// Max units a player is allowed
-	private int turnsPerRound;				// Number of turns per round
-	private int roundCount;					// Tracks the round number
-	private int[] stArmyCnt;				// Starting unit count
-	private int maxCastles;					// Max number of castles allowed
-	private int totalCastles;				// Current number of castles
-	private int[] unitValue;				// What each unit is worth
-	private int winCrownCount;				// Amount of crowns to win
+
+	private Player[] seats;					// Players in the order they were named
+	private Bot[] bots;						// Bot for each seat, null for people
+	private long botTime;					// Time a bot has per move in nanoseconds
+	private SealedMoves sealed = new SealedMoves();		// Bots' bids and picks
+
+	private String boardPath;
+	private EventLog log;					// Null unless the game is recorded
+	private String checkpointPath;			// Null unless the game is saved every round
 
 	public Game(String[] playerNames, String boardPath, int[] cards) {
+		this(playerNames, boardPath, cards, new SeededDice());
+	}
+
+	// Seeded or recorded dice make a game reproducible
+	public Game(String[] playerNames, String boardPath, int[] cards, DiceSource dice) {
+		this(playerNames, boardPath, cards, dice, new Bot[playerNames.length]);
+	}
+
+	// Seats with a bot are played by the computer, null seats by people
+	public Game(String[] playerNames, String boardPath, int[] cards, DiceSource dice, Bot[] bots) {
 		sc = new Scanner(System.in);
-		rng = new Random();
 		brd = new Board(boardPath);
-		cardPool = cards;
-		
-		/* 
-			Game vars. Magic numbers are everywhere here. Ignore them as I intend
-			on implementing a way to handle custom game var values. 
-		*/
-		maxCastles = 8;
-		winCrownCount = 7;
-		startAmt = 5;
-		turnsPerRound = 2;
-		maxUnits = new int[4];
-		maxUnits[0] = 25;
-		maxUnits[1] = 12;
-		maxUnits[2] = 12;
-		maxUnits[3] = 4;
-
-		stArmyCnt = new int[4];
-		stArmyCnt[0] = 10; 		// The rest are zero
-
-		unitValue = new int[5];
-		unitValue[0] = 1;
-		unitValue[1] = 2;
-		unitValue[2] = 3;
-		unitValue[3] = 10;
-		unitValue[4] = 12; // Castle
-
-		// Create new player objects from their name, give them starting equipment
-		players = new Player[playerNames.length];
-		for (int i = 0; i < playerNames.length; i++) {
-			players[i] = new Player(playerNames[i], "ffa", startAmt);
-			players[i].giveCards(cardPool);
-		}
+		this.boardPath = boardPath;
+
+		// Rules live in the engine, battles are played out on the console
+		engine = new GameEngine(playerNames, brd, cards, dice);
+		engine.setInteractiveBattles(true);
+
+		seats = engine.getPlayers().clone();
+		this.bots = bots.clone();
+		botTime = 500000000L;
 
 		ready = true;
 	}
 
+	// Continues a game saved with Checkpoint, seats are in the order players were named
+	public Game(Checkpoint saved, DiceSource dice, Bot[] bots) {
+		sc = new Scanner(System.in);
+		boardPath = saved.getBoardPath();
+		brd = new Board(boardPath);
+
+		engine = saved.newEngine(brd, dice);
+		engine.setInteractiveBattles(true);
+
+		seats = new Player[bots.length];
+		for (int i = 0; i < seats.length; i++) seats[i] = engine.getPlayer(i);
+
+		this.bots = bots.clone();
+		botTime = 500000000L;
+
+		ready = true;
+	}
+
+	// Time a bot has to decide each move
+	public void setBotTime(long millis) {
+		botTime = millis * 1000000L;
+	}
+
+	// Records the game into an event log (see EventLog), before it starts
+	public void recordTo(String path) throws IOException {
+		log = new EventLog(path, boardPath);
+		engine.setEventLog(log);
+	}
+
+	// Saves the game to a checkpoint at the start of every round, to be continued after a crash
+	public void setCheckpoint(String path) {
+		checkpointPath = path;
+	}
+
 	/*
-		Starts the game
+		Starts the game, or continues it from where a checkpoint left off
 	*/
 	public void start() {
 		// Start only if ready
 		if (!ready) return;
-		gameOver = false;
-		roundCount = 0;
 
 		// Bidding sequence
-		bid();
-		assignOrder();
+		if (engine.getPhase() == GameEngine.BID) bid();
 		chooseStartingLocation();
 
 		// Main game loop
-		while (!gameOver) {
-			roundCount++;
+		while (!engine.isOver()) {
+			if (engine.getPhase() == GameEngine.PICK) saveCheckpoint();
 
 			// Display round start info
 			displayRoundInfo();
 
-			// Assign player order
-			assignOrder();
-
 			// Pick cards
-			pickingSequence();
+			if (engine.getPhase() == GameEngine.PICK) pickingSequence();
 
-			// Turn 1 & 2
-			for (int i = 0; i < turnsPerRound; i++) {
-				for (int j = 0; j < players.length; j++) {
-					takeTurn(players[j]);
-				}
+			// Turn 1 & 2, disputes are resolved by the engine after the last turn
+			while (engine.getPhase() == GameEngine.TURN) {
+				takeTurn(engine.getCurrentPlayer());
 			}
 
 			// Resolve disputes
@@ -127,6 +138,26 @@ public class Game {
 			// Check for win
 			checkForWin();
 		}
+
+		sealed.shutdown();
+
+		if (log != null) {
+			try {
+				log.close();
+			} catch (IOException e) {
+				System.out.println("The game log could not be saved: " + e.getMessage());
+			}
+		}
+	}
+
+	private void saveCheckpoint() {
+		if (checkpointPath == null) return;
+
+		try {
+			Checkpoint.save(engine, boardPath, checkpointPath);
+		} catch (IOException e) {
+			System.out.println("The game could not be saved: " + e.getMessage());
+		}
 	}
 
 	/*
@@ -134,20 +165,22 @@ public class Game {
 			Name CrownCount TerritoriesOwned ArmyValue
 	*/
 	private void displayRoundInfo() {
+		Player[] players = engine.getPlayers();
+
 		clearScreen();
-		System.out.println("Round #" + roundCount + "\n");
+		System.out.println("Round #" + engine.getRound() + "\n");
 
 		for (int i = 0; i < players.length; i++) {
-			Territory[] terrs = players[i].getTerritories();
+			List<Territory> terrs = players[i].getTerritories();
 			int terrCount = 0;
 			int armyValue = 0;
 
-			for (int j = 0 ; j < terrs.length; j++) {
-				if (players[i].isDefending(terrs[j])) {
+			for (int j = 0 ; j < terrs.size(); j++) {
+				if (players[i].isDefending(terrs.get(j))) {
 					terrCount++;
-					armyValue += terrs[j].getDef().totalValue();
+					armyValue += terrs.get(j).getDef().totalValue();
 				} else {
-					armyValue += terrs[j].getAtk().totalValue();
+					armyValue += terrs.get(j).getAtk().totalValue();
 				}
 			}
 			System.out.print(players[i].getName() + " | Crowns: " + players[i].getCrowns() + " | Territory Count: ");
@@ -162,96 +195,41 @@ public class Game {
 		Runs a bidding sequence to set the initial FP
 	*/
 	private void bid() {
-		int[] bids = new int[players.length];
+		Player[] players = engine.getPlayers();
 
 		clearScreen();
 		System.out.println("Bidding Time: ");
 
-		// Gets each player's bid
-		int b;
+		// Gets each player's bid, the engine settles ties once all are in
+		sealed.begin(engine, bots, botTime);
 
 		for (int i = 0; i < players.length; i++) {
+			if (engine.hasBid(players[i]) || botFor(players[i]) != null) continue;
+
 			System.out.print(players[i].getName() + "'s Bid: ");
-			b = getIntInput(0, players[i].getMoney());
-			bids[i] = b;
+			engine.apply(new BidAction(players[i], getIntInput(0, players[i].getMoney())));
 			clearScreen();
 		}
 
-		// Finds the largets bid's index
-		int largest = 0;
-
-		for (int i = 0; i < bids.length; i++) {
-			if (bids[i] > bids[largest]) {
-				largest = i;
-			}
-		}
-
-		/*
-			Rolls two dice for any duplicate (including the largest itself)
-			The index aligns with bids and players. 
-			The index of largest still corresponds to the first duplicate bid
-
-			Then finds the largest roll. Any ties are given to the highest
-			index player (why I chose two dice instead of one).
-		*/
-		int[] ties = new int[bids.length];
-
-		for (int i = 0; i < bids.length; i++) {
-			if (bids[largest] == bids[i]) {
-				ties[i] = (rng.nextInt(6) + 1) + (rng.nextInt(6) + 1);
-			}
-		}
-
-		for (int i = 0; i < ties.length; i++) {
-			if (ties[i] >= ties[largest]) {
-				largest = i;
-			}
-		}
+		collectSealed();
 
-		// The winner has been determined
-		players[largest].addMoney(-bids[largest]);
-		firstPlayer = players[largest];
-
-		System.out.println(firstPlayer.getName() + " is the winner of the bid!");
+		System.out.println(engine.getFirstPlayer().getName() + " is the winner of the bid!");
 		getConfirmation();
 	}
 
-	/*
-		Rotates the players array based on who is first
-	*/
-	private void assignOrder() {
-		// Find where the new FP is
-		int ind;
-		for (ind = 0; ind < players.length; ind++) {
-			if (players[ind].equals(firstPlayer)) {
-				break;
-			}
-		}
-
-		// Rotate leftwards if not already in first 
-		while (ind > 0) {
-			// Save first element
-			Player temp = players[0];
-
-			// Shift all others left
-			for (int i = 1; i < players.length; i++) {
-				players[i-1] = players[i];
-			}
-
-			// Replace unshifted last element
-			players[players.length-1] = temp;
-			ind--;
-		}
-	}
-
 	/*
 		Runs the card picking sequence for each player
 	*/
 	private void pickingSequence() {
+		Player[] players = engine.getPlayers();
+		sealed.begin(engine, bots, botTime);
+
 		for (int i = 0; i < players.length; i++) {
 			Player curr = players[i];
 			int[] currCards = curr.getCards();
 
+			if (engine.hasPicked(curr) || botFor(curr) != null) continue;
+
 			clearScreen();
 			System.out.println(curr.getName() + "'s turn to pick");
 			getConfirmation();
@@ -263,34 +241,150 @@ public class Game {
 				System.out.println(currCards[j] + " - " + getCardName(currCards[j]));
 
 			System.out.print("\nPlease pick the card you will use first (card id): ");
-			int card = getIntInput(1,255);
+			int first = getIntInput(1,255);
 
 			// While the card is invalid ask again
-			while (curr.pickCard(card) != 0) {
+			while (countCard(currCards, first) == 0) {
 				System.out.print("Invalid, try again: ");
-				card = getIntInput(1,255);
+				first = getIntInput(1,255);
 			}
 
 			System.out.print("\nPlease pick the second card: ");
-			card = getIntInput(1,255);
+			int second = getIntInput(1,255);
 
-			// While the card is invalid ask again
-			while (curr.pickCard(card) != 0) {
+			// The same card twice needs two copies
+			while (countCard(currCards, second) < (second == first ? 2 : 1)) {
 				System.out.print("Invalid, try again: ");
-				card = getIntInput(1,255);
+				second = getIntInput(1,255);
 			}
+
+			engine.apply(new PickCards(curr, first, second));
 		}
 
+		collectSealed();
 		clearScreen();
 		System.out.println("Everybody has picked cards!");
 	}
 
+	/*
+		Lets a bot act until the engine stops waiting on its player for this step
+		(its bid, its picks, its start, or its whole turn)
+	*/
+	private void playBot(Player p) {
+		Bot bot = botFor(p);
+		int phase = engine.getPhase(), round = engine.getRound(), turn = engine.getTurn();
+
+		// Bids and picks are a single sealed action
+		boolean sealed = phase == GameEngine.BID || phase == GameEngine.PICK;
+
+		do {
+			Action a = bot.choose(engine, p, System.nanoTime() + botTime);
+
+			if (!engine.apply(a)) {
+				throw new IllegalStateException(p.getName() + " made an illegal move: " + engine.getError());
+			}
+
+			System.out.println(describe(a));
+		} while (!sealed && engine.getPhase() == phase && engine.getRound() == round && engine.getTurn() == turn
+			&& engine.getCurrentPlayer() == p);
+	}
+
+	/*
+		Applies the bots' bids or picks started by sealed.begin(), once the people have made theirs
+	*/
+	private void collectSealed() {
+		for (int i = 0; i < seats.length; i++) {
+			if (bots[i] == null) continue;
+
+			int index = engine.getPlayerIndex(seats[i]);
+			if (engine.getPhase() == GameEngine.BID ? engine.hasBid(seats[i]) : engine.hasPicked(seats[i])) continue;
+
+			Action a = sealed.collect(index);
+
+			if (!engine.apply(a)) {
+				throw new IllegalStateException(seats[i].getName() + " made an illegal move: " + engine.getError());
+			}
+
+			if (sealed.isLate(index)) System.out.println(seats[i].getName() + " ran out of time.");
+			System.out.println(describe(a));
+		}
+	}
+
+	private Bot botFor(Player p) {
+		for (int i = 0; i < seats.length; i++) {
+			if (seats[i] == p) return bots[i];
+		}
+
+		return null;
+	}
+
+	// One line about a bot's move, sealed choices stay hidden
+	private String describe(Action a) {
+		String name = a.getPlayer().getName();
+
+		switch (a.getType()) {
+			case Action.BID:
+				return name + " has placed a bid.";
+			case Action.PICK:
+				return name + " has picked cards.";
+			case Action.START:
+				return name + " starts in " + ((StartAction) a).getLocation().getPrefName() + ".";
+			case Action.TAX:
+				return name + " taxes for " + engine.getLastTax() + " coins.";
+			case Action.SPEND:
+				SpendAction sp = (SpendAction) a;
+				if (sp.isDone()) return name + " is done spending.";
+				return name + " buys " + unitList(sp.getUnits()) + (sp.hasCastle() ? " and a castle" : "") + " for " + sp.getLocation().getPrefName() + ".";
+			case Action.EXPAND:
+				ExpandAction ex = (ExpandAction) a;
+				if (ex.isPass()) return name + " does not expand.";
+				return name + " expands from " + ex.getFrom().getPrefName() + " into " + ex.getTo().getPrefName()
+					+ (ex.isSplit() ? " and " + ex.getSplitTo().getPrefName() : "") + ".";
+			case Action.MANEUVER:
+				ManeuverAction mv = (ManeuverAction) a;
+				if (mv.isPass()) return name + " does not maneuver.";
+				return name + " maneuvers " + unitList(mv.getUnits()) + " from " + mv.getFrom().getPrefName() + " to " + mv.getTo().getPrefName() + ".";
+			case Action.FORTIFY:
+				FortifyAction fo = (FortifyAction) a;
+				if (fo.isPass()) return name + " does not fortify.";
+				return name + " fortifies " + fo.getLocation().getPrefName() + " with " + engine.getLastFortify() + " footsoldiers.";
+			default:
+				SiegeAction sg = (SiegeAction) a;
+				if (sg.isPass()) return name + " holds their siege weapons.";
+				return name + " fires on " + sg.getTo().getPrefName() + " and destroys " + engine.getLastHits() + " units.";
+		}
+	}
+
+	// Footmen: # | Archers: # | Cavalry: # | Siege: #
+	private String unitList(int[] units) {
+		return "Footmen: " + units[0] + " | Archers: " + units[1] + " | Cavalry: " + units[2] + " | Siege: " + units[3];
+	}
+
+	// Number of copies of a card in a hand
+	private int countCard(int[] cards, int id) {
+		int count = 0;
+
+		for (int i = 0; i < cards.length; i++) {
+			if (cards[i] == id) count++;
+		}
+
+		return count;
+	}
+
 	/*
 		Takes a turn for the given player.
 		Turns involve choosing an action from the activecard and then playing it
 	*/
 	private void takeTurn(Player p) {
-		int card = p.useCard();
+		int card = engine.getCurrentCard();
+
+		if (botFor(p) != null) {
+			clearScreen();
+			System.out.println(p.getName() + " plays " + getCardName(card));
+			playBot(p);
+			getConfirmation();
+			return;
+		}
 
 		clearScreen();
 		System.out.println(p.getName() + "'s Turn");
@@ -306,9 +400,16 @@ public class Game {
 
 	// Sets up player starting positions for each player
 	private void chooseStartingLocation() {
-		for (int i = 0; i < players.length; i++) {
-			Player p = players[i];
-			Territory[] terrs = brd.getTerritories(); 
+		while (engine.getPhase() == GameEngine.START) {
+			Player p = engine.getCurrentPlayer();
+			Territory[] terrs = brd.getTerritories();
+
+			if (botFor(p) != null) {
+				clearScreen();
+				playBot(p);
+				getConfirmation();
+				continue;
+			}
 
 			clearScreen();
 			System.out.println(p.getName() + "'s turn to choose a starting location");
@@ -318,36 +419,23 @@ public class Game {
 			// Display possible starting locations, cities
 			System.out.println("Starting Locations: ");
 			for (int j = 0; j < terrs.length; j++) {
-				if (terrs[j].canStart() && terrs[j].getDef() == null) {
+				if (engine.canStartAt(terrs[j])) {
 					System.out.println(terrs[j].getCrownName());
 				}
 			}
 
 			// Get input
 			System.out.print("\nPlease type the name of your starting location: ");
-			String choice = getStringInput();
-			Territory chosenTerritory = brd.getTerritory(choice);
+			Territory chosenTerritory = brd.getTerritory(getStringInput());
 
 			// Check for bad input, either a nonexistent territory or a non-start territory
-			while (chosenTerritory == null || !chosenTerritory.canStart() || chosenTerritory.getDef() != null) {
+			while (!engine.apply(new StartAction(p, chosenTerritory))) {
 				System.out.print("Invalid name, try again: ");
-				choice = getStringInput();
-				chosenTerritory = brd.getTerritory(choice);
+				chosenTerritory = brd.getTerritory(getStringInput());
 			}
 
 			clearScreen();
 
-			// Create a unit for the capital and assign it to the player
-			Army capUnit = new Army(stArmyCnt[0], stArmyCnt[1], stArmyCnt[2], stArmyCnt[3], p);
-
-			chosenTerritory.setDef(capUnit);
-			chosenTerritory.setCastle(true);
-			totalCastles++;
-
-			p.addTerr(chosenTerritory);
-			p.addMoney(chosenTerritory.getValue());
-			p.addTotalUnits(stArmyCnt[0], stArmyCnt[1], stArmyCnt[2], stArmyCnt[3]);
-
 			System.out.println("Your Kingdom's foundation has been established!");
 			System.out.println("You gain a castle, starting army, and " + chosenTerritory.getValue() + " coins!");
 			System.out.println("Now it is time to expand into other lands!");
@@ -358,43 +446,12 @@ public class Game {
 	}
 
 	/*
-		Initiates a battle for each disputed territory
-		Sets owner of territory after battle
+		Reports on the battles the engine fought after the last turn
 	*/
 	private void resolveDisputes() {
 		clearScreen();
 
-		Territory[] terrs = brd.getTerritories();
-		int battleCount = 0;
-
-		for (int i = 0; i < terrs.length; i++) {
-			if (terrs[i].isDisputed()) {
-
-				// Display battle info
-				System.out.println("Battle #" + (++battleCount));
-
-				// Perform battle
-				Battle btl = new Battle(terrs[i]);
-				Army winner = btl.startBattle();
-
-				// Assign winner as the new owner
-				if (winner == null) {
-					// Nobody wins, territory unclaimed
-					terrs[i].removeAtk();
-					terrs[i].removeDef();
-				} else if (terrs[i].getDef() == winner) {
-					// Remove attacking unit
-					terrs[i].removeAtk();
-				} else {
-					// Overwrite defender ref, remove old attacker ref
-					terrs[i].removeDef();
-				}
-
-				clearScreen();
-			}
-		}
-
-		if (battleCount == 0) {
+		if (engine.getBattleCount() == 0) {
 			System.out.println("There were no disputed territories, may the world remain at peace.");
 		} else {
 			System.out.println("May the lands be at peace after settling such violent disputes.");
@@ -403,53 +460,21 @@ public class Game {
 	}
 
 	/*
-		Checks for a winner
+		Shows the crown counts and the winner if there is one
 	*/
 	private void checkForWin() {
+		Player[] players = engine.getPlayers();
+
 		clearScreen();
 		System.out.println("End of Round Results: ");
-		System.out.println("To Win: " + winCrownCount);
+		System.out.println("To Win: " + engine.getWinCrownCount());
 		System.out.println("\nCrown Count: ");
 
-		// Keep track of ties and who has the highest count
-		ArrayList<Player> ties = new ArrayList<Player>();
-		Player winner = null;
-		int highestCrownCount = winCrownCount;
-
 		for (int i = 0; i < players.length; i++) {
-			int count = players[i].getCrowns();
-
-			if (count > highestCrownCount) {
-				// New winner, scrap old ties
-				winner = players[i];
-				highestCrownCount = count;
-				ties = new ArrayList<Player>();
-			} else if (count == highestCrownCount) {
-				if (winner == null) {
-					// In case a winner was not found before
-					winner = players[i];
-				} else {
-					// Must be a tie
-					ties.add(players[i]);
-				}
-			}
-
-			System.out.println(" " + players[i].getName() + " - " + count);
+			System.out.println(" " + players[i].getName() + " - " + players[i].getCrowns());
 		}
 
-		// Settle tie w/ highest money count
-		if (ties.size() > 0) {
-			int largestMoney = 0;
-
-			for (Player p : ties) {
-				int money = p.getMoney() + ((firstPlayer == p) ? 10 : 0);
-
-				if (money > largestMoney) {
-					winner = p;
-					largestMoney = money;
-				}
-			}
-		}
+		Player winner = engine.getWinner();
 
 		// If there is no winner
 		if (winner == null) {
@@ -457,7 +482,6 @@ public class Game {
 			getConfirmation();
 		} else {
 			System.out.println("\nWith " + winner.getCrowns() + " crowns and " + winner.getMoney() + " coins, " + winner.getName() + " is the winner!");
-			gameOver = true;
 		}
 	}
 
@@ -495,69 +519,38 @@ public class Game {
 	// Interprets the card id to perform an action
 	private void interpretCard(int id, int action, Player p) {
 		switch (id) {
-			case 0:					// Null card id case
-				System.out.println("Something really went wrong");
-				break;
 			case 1:					// Tax Spend
-				if (action == 1) tax(p); 
-				else spend(p);
-				break;
 			case 2:					// Tax Spend (King Me)
-				if (action == 1) tax(p); 
+				if (action == 1) tax(p);
 				else spend(p);
-				firstPlayer = p;
 				break;
 			case 3:					// Expand Maneuver (Fortify)
-				if (action == 1) expand(p, false, false); 
-				else maneuver(p);
-				fortify(p);
-				break;
 			case 4:					// Expand Maneuver (Siege Assault)
-				if (action == 1) expand(p, false, false); 
-				else maneuver(p);
-				siegeAssault(p);
-				break;
 			case 5:					// SplitExpand Maneuver
-				if (action == 1) expand(p, false, true); 
+				if (action == 1) expand(p, false, id == 5);
 				else maneuver(p);
 				break;
 			default:				// Default case
 				System.out.println("Invalid card id");
 				break;
 		}
+
+		// The engine asks for the card's follow up if there is one
+		if (engine.getStep() == GameEngine.FORTIFYING) {
+			fortify(p);
+		} else if (engine.getStep() == GameEngine.SIEGING) {
+			siegeAssault(p);
+		}
 	}
 
 	// Finds highest tax value supply chain owned by p, adds it to their money
 	private void tax(Player p) {
 		clearScreen();
 
-		// Get territories that have p's units stationed
-		Territory[] terrs = p.getTerritories();
-
-		// For each city compare its supply chain value to the largest
-		int largest = 0;
-
-		for (int i = 0; i < terrs.length; i++) {
-			if (terrs[i].hasCrown()) {
-				Territory[] supplyChain = p.getSupplyChain(terrs[i]);
-				int totalValue = 0;
+		engine.apply(new TaxAction(p));
 
-				for (int j = 0; j < supplyChain.length; j++) {
-					if (supplyChain != null) {
-						totalValue += supplyChain[j].getValue();
-					}
-				}
-
-				if (totalValue > largest) {
-					largest = totalValue;
-				}
-			}
-		}
-		
-		// Add the largest value to the player's money
-		p.addMoney(largest);
 		System.out.println("Tax:\n");
-		System.out.println("Taxing the largest supply chain yields " + largest + " coins");
+		System.out.println("Taxing the largest supply chain yields " + engine.getLastTax() + " coins");
 		System.out.println("May your empire prosper");
 		getConfirmation();
 	}
@@ -565,12 +558,29 @@ public class Game {
 	// Move units into undisputed territory (unowned)
 	// Must keep one, or the same as the attackers if moving from disputed
 	private void expand(Player p, boolean isSetup, boolean isSplit) {
-		Territory[] owned = p.getTerritories();
-		Territory[] fromAdj;
+		List<Territory> owned = p.getTerritories();
+		ArrayList<Territory> destinations = new ArrayList<Territory>();
 		Territory from = null, to = null, splitTo = null;
 		String input;
 		boolean isFinal = false;
 
+		// Nothing can move, the expand is passed
+		if (!canMoveAny(p, false)) {
+			clearScreen();
+			System.out.println("You have no territory with enough units to expand from.");
+			engine.apply(new ExpandAction(p));
+			getConfirmation();
+			return;
+		}
+
+		// A split leaves two units behind, without the units for one the expand goes one way
+		if (isSplit && !canMoveAny(p, true)) {
+			clearScreen();
+			System.out.println("You have no territory with enough units to split, you will expand one way.");
+			getConfirmation();
+			isSplit = false;
+		}
+
 		// Repeat until the user finalizes their decision
 		while (!isFinal) {
 			clearScreen();
@@ -578,48 +588,29 @@ public class Game {
 
 			// Display owned territories
 			System.out.println("\nYour Territories: ");
-			for (int i = 0; i < owned.length; i++) {
-				if (owned[i].getDef().totalValue() > 1) {
-					owned[i].display();
+			for (int i = 0; i < owned.size(); i++) {
+				if (isSplit ? engine.canSplitFrom(p, owned.get(i)) : engine.canMoveFrom(p, owned.get(i))) {
+					owned.get(i).display();
 				}
 			}
 
 			// Get input from the player
 			System.out.print("\nSelect where you want to expand from: ");
-		
-			while (true) {
-				input = getStringInput();
-				from = brd.getTerritory(input);
-
-				if (from == null) {
-					System.out.print("Territory does not exist: ");
-				} else if (!p.isOn(from)) {
-					System.out.print("You do not own that: ");
-				} else if (from.getDef().totalValue() <= 1) {
-					System.out.print("There must be more than one unit: ");
-				} else {
-					break;
-				}
-			}
+			from = getSource(p, isSplit);
 
 			// Determine valid expand destinations
-			fromAdj = from.getConnections();
-			for (int i = 0; i < fromAdj.length; i++) {
-				// Check if there is a castle and no seige weapon
-				if (fromAdj[i].hasCastle() && from.getDef().getSiege() == 0) {
-					fromAdj[i] = null;
-				} else if (fromAdj[i].isDisputed() || p.isOn(fromAdj[i]) || (isSetup && fromAdj[i].getDef() != null)) {
-					fromAdj[i] = null;
+			destinations.clear();
+			for (int i = 0; i < from.getConnectionCount(); i++) {
+				if (engine.canExpandTo(p, from, from.getConnection(i), isSetup)) {
+					destinations.add(from.getConnection(i));
 				}
 			}
 
 			// Display the destinations
 			System.out.println("\nDestinations: ");
 
-			for (int i = 0; i < fromAdj.length; i++) {
-				if (fromAdj[i] != null) {
-					fromAdj[i].display();
-				}
+			for (Territory t : destinations) {
+				t.display();
 			}
 
 			// Get user input
@@ -639,14 +630,12 @@ public class Game {
 				temp = brd.getTerritory(input);
 
 				// Checks if the chosen territory is valid
-				for (int i = 0; i < fromAdj.length; i++) {
-					if (fromAdj[i] != null && fromAdj[i].equals(temp)) {
-						if (isSplit && splitTo == null) {
-							splitTo = temp;
-							fromAdj[i] = null;
-						} else {
-							to = temp;
-						}
+				if (destinations.contains(temp)) {
+					if (isSplit && splitTo == null) {
+						splitTo = temp;
+						destinations.remove(temp);
+					} else {
+						to = temp;
 					}
 				}
 
@@ -664,44 +653,78 @@ public class Game {
 					isFinal = true;
 				}
 			}
-		}
 
-		// Repeat if this is a split expand
-		int bound = isSplit ? 2 : 1;
+			if (!isFinal) continue;
+
+			// Get the units for each destination, the first group leaves room for the second
+			int[] units, splitUnits = null;
+			boolean wasEmpty = to.getDef() == null, splitWasEmpty = false;
+
+			if (isSplit) {
+				splitWasEmpty = splitTo.getDef() == null;
+				splitUnits = getUnitInput(from, splitTo, engine.minRemaining(from, true) + 1, null);
+				units = getUnitInput(from, to, engine.minRemaining(from, true), splitUnits);
+			} else {
+				units = getUnitInput(from, to, engine.minRemaining(from), null);
+			}
 
-		for (int i = 0; i < bound; i++) {
-			int[] temp = getUnitInput(from, to, bound);
 			clearScreen();
 
-			// Split the unit using the input values
-			Army leaving = from.getDef().split(temp[0], temp[1], temp[2], temp[3]);
-			
-			// Links new split unit to player
-			p.addTerr(to);
+			if (!engine.apply(new ExpandAction(p, from, to, units, splitTo, splitUnits))) {
+				System.out.println(engine.getError() + ", try again.");
+				getConfirmation();
+				isFinal = false;
+				continue;
+			}
 
-			// Move new unit
-			if (to.getDef() != null) {
-				// Occupied
-				to.setAtk(leaving);
-				System.out.println("Units were placed successfully, good luck in battle!");
-			} else {
-				// Unoccupied
-				to.setDef(leaving);
-				System.out.println("Units were placed successfully, " + to.getPrefName() + " is yours!");
+			placed(p, to, wasEmpty);
+			if (isSplit) placed(p, splitTo, splitWasEmpty);
+		}
+	}
 
-				// Check if a crown
-				if (to.hasCrown()) {
-					// Give crown and money
-					p.addMoney(to.getValue());
+	// Reports where expanding units ended up
+	private void placed(Player p, Territory to, boolean wasEmpty) {
+		if (!wasEmpty) {
+			System.out.println("Units were placed successfully, good luck in battle!");
+		} else {
+			System.out.println("Units were placed successfully, " + to.getPrefName() + " is yours!");
 
-					System.out.println("Since this is a city you gain an additional crown and collect " + to.getValue() + " coins!");
-				}
+			// Check if a crown
+			if (to.hasCrown()) {
+				System.out.println("Since this is a city you gain an additional crown and collect " + to.getValue() + " coins!");
 			}
+		}
 
-			// In case the loop repeats, set "to" equal to splitTo
-			// This would have no effect if the loop did not repeat.
-			to = splitTo;
-			getConfirmation();
+		getConfirmation();
+	}
+
+	// True if any of the player's territories can send units, in two groups if split
+	private boolean canMoveAny(Player p, boolean split) {
+		List<Territory> owned = p.getTerritories();
+
+		for (int i = 0; i < owned.size(); i++) {
+			if (split ? engine.canSplitFrom(p, owned.get(i)) : engine.canMoveFrom(p, owned.get(i))) return true;
+		}
+
+		return false;
+	}
+
+	// Asks for a territory the player can move units out of, in two groups if split
+	private Territory getSource(Player p, boolean split) {
+		while (true) {
+			Territory from = brd.getTerritory(getStringInput());
+
+			if (from == null) {
+				System.out.print("Territory does not exist: ");
+			} else if (!p.isOn(from)) {
+				System.out.print("You do not own that: ");
+			} else if (!engine.canMoveFrom(p, from)) {
+				System.out.print("There must be more than one unit: ");
+			} else if (split && !engine.canSplitFrom(p, from)) {
+				System.out.print("There are not enough units to split: ");
+			} else {
+				return from;
+			}
 		}
 	}
 
@@ -709,10 +732,20 @@ public class Game {
 	// Up to two spaces away in a supply chain
 	private void maneuver(Player p) {
 		Territory from = null, to = null;
-		Territory[] owned = p.getTerritories();
+		List<Territory> owned = p.getTerritories();
+		ArrayList<Territory> maneuverable = new ArrayList<Territory>();
 		boolean isFinal = false;
 		String input;
-		
+
+		// Nothing can move, the maneuver is passed
+		if (!canMoveAny(p, false)) {
+			clearScreen();
+			System.out.println("You have no territory with enough units to maneuver from.");
+			engine.apply(new ManeuverAction(p));
+			getConfirmation();
+			return;
+		}
+
 		// Repeat until the user finalizes their decision
 		while (!isFinal) {
 
@@ -721,49 +754,25 @@ public class Game {
 
 			// Display owned territories
 			System.out.println("\nYour Territories: ");
-			for (int i = 0; i < owned.length; i++) {
-				if (owned[i].getDef().totalValue() > 1) {
-					owned[i].display();
+			for (int i = 0; i < owned.size(); i++) {
+				if (engine.canMoveFrom(p, owned.get(i))) {
+					owned.get(i).display();
 				}
 			}
 
 			// Get input from the player
 			System.out.print("\nSelect where you want to maneuver from: ");
-		
-			while (true) {
-				input = getStringInput();
-				from = brd.getTerritory(input);
-
-				if (from == null) {
-					System.out.print("Territory does not exist: ");
-				} else if (!p.isOn(from)) {
-					System.out.print("You do not own that: ");
-				} else if (from.getDef().totalValue() <= 1) {
-					System.out.print("There must be more than one unit: ");
-				} else {
-					break;
-				}
-			}
+			from = getSource(p, false);
 
 			// Generate list of maneuverable territories
-			ArrayList<Territory> maneuverable = new ArrayList<Territory>();
-			Territory[] fromConn = from.getConnections();
-
-			for (int i = 0; i < fromConn.length; i++) {
-				Territory[] subConn = fromConn[i].getConnections();
-				if (p.isOn(fromConn[i]) && !maneuverable.contains(fromConn[i])) {
-					maneuverable.add(fromConn[i]);
-				}
+			maneuverable.clear();
 
-				for (int j = 0; j < subConn.length; j++) {
-					if (p.isOn(subConn[j]) && !maneuverable.contains(subConn[j])) {
-						maneuverable.add(subConn[j]);
-					}
+			for (int i = 0; i < owned.size(); i++) {
+				if (engine.canManeuver(p, from, owned.get(i))) {
+					maneuverable.add(owned.get(i));
 				}
 			}
 
-			maneuverable.remove(from);
-
 			// Display valid territories
 			System.out.println("\nDestinations: ");
 
@@ -776,7 +785,7 @@ public class Game {
 			boolean val = false;
 			while (!val) {
 				input = getStringInput();
-				
+
 				// Checks for retry
 				if (input.equalsIgnoreCase("retry")) {
 					// Exits loop prematurely preventing isFinal from being set
@@ -799,35 +808,37 @@ public class Game {
 					isFinal = true;
 				}
 			}
-		}
 
-		// Get number of units to send
-		int[] temp = getUnitInput(from, to, 1);
-		clearScreen();
+			if (!isFinal) continue;
 
-		// Moves units over
-		Army moving = from.getDef().split(temp[0], temp[1], temp[2], temp[3]);
+			// Get number of units to send
+			int[] temp = getUnitInput(from, to, engine.minRemaining(from), null);
+			clearScreen();
+
+			if (!engine.apply(new ManeuverAction(p, from, to, temp))) {
+				System.out.println(engine.getError() + ", try again.");
+				getConfirmation();
+				isFinal = false;
+			}
+		}
 
 		// Check if the player is the owner
-		if (p.equals(to.getDef().getOwner())) {
-			to.getDef().combine(moving);
+		if (p.isDefending(to)) {
 			System.out.println("Units were placed successfully!");
 		}  else {
 			// Must be the attacker
-			to.getAtk().combine(moving);
 			System.out.println("Units were placed successfully, may your reinforcements lead to victory!");
 		}
 
-		moving = null;
 		getConfirmation();
 	}
 
-	// 
+	//
 	private void spend(Player p) {
+		int turn = engine.getTurn();
 		boolean stillSpending = true, installCastle = false;
 		int[] sending = new int[4], deployable = new int[4];
-		Territory[] owned;
-		String input;
+		List<Territory> owned = p.getTerritories();
 		Territory selectedTerr;
 
 		while (stillSpending) {
@@ -835,10 +846,10 @@ public class Game {
 			System.out.println("Spend:");
 
 			// Determine the number of recruitable units
-			deployable[0] = maxUnits[0] - p.getTotalFoot();
-			deployable[1] = maxUnits[1] - p.getTotalArch();
-			deployable[2] = maxUnits[2] - p.getTotalCav();
-			deployable[3] = maxUnits[3] - p.getTotalSiege();
+			deployable[0] = engine.getMaxUnits(0) - p.getTotalFoot();
+			deployable[1] = engine.getMaxUnits(1) - p.getTotalArch();
+			deployable[2] = engine.getMaxUnits(2) - p.getTotalCav();
+			deployable[3] = engine.getMaxUnits(3) - p.getTotalSiege();
 
 			// Check if out of funds
 			if (p.getMoney() == 0) {
@@ -853,26 +864,31 @@ public class Game {
 
 			// Display all deployable territories
 			System.out.println("\nDeploy Locations:");
-			owned = p.getTerritories();
+			int locations = 0;
 
-			for (int i = 0; i < owned.length; i++) {
-				if (!owned[i].isDisputed() && owned[i].hasCrown() || owned[i].hasCastle()) {
-					owned[i].display();
+			for (int i = 0; i < owned.size(); i++) {
+				if (engine.canDeploy(p, owned.get(i))) {
+					owned.get(i).display();
+					locations++;
 				}
 			}
 
+			if (locations == 0) {
+				System.out.println("\nYou hold no city or castle to deploy to!");
+				break;
+			}
+
 			// Get input from the player
 			System.out.print("\nSelect where you want to deploy units: ");
-		
+
 			while (true) {
-				input = getStringInput();
-				selectedTerr = brd.getTerritory(input);
+				selectedTerr = brd.getTerritory(getStringInput());
 
 				if (selectedTerr == null) {
 					System.out.print("Territory does not exist: ");
 				} else if (!p.isDefending(selectedTerr)) {
 					System.out.print("You do not own that: ");
-				} else if (!selectedTerr.hasCrown() && !selectedTerr.hasCastle()) {
+				} else if (!engine.canDeploy(p, selectedTerr)) {
 					System.out.print("Territory must be a city or castle: ");
 				} else {
 					break;
@@ -886,7 +902,7 @@ public class Game {
 
 			int tempFunds = p.getMoney();
 			for (int i = 0; i < deployable.length; i++) {
-				if (tempFunds > 0 && deployable[i] > 0 && tempFunds >= unitValue[i]) {
+				if (tempFunds > 0 && deployable[i] > 0 && tempFunds >= engine.getUnitValue(i)) {
 					System.out.print("Funds: £" + tempFunds + "  ");
 					while (true) {
 						switch (i) {
@@ -900,13 +916,13 @@ public class Game {
 						sending[i] = getIntInput(0, deployable[i]);
 
 						// Check if there are enough funds left
-						if (sending[i] * unitValue[i] > tempFunds) {
+						if (sending[i] * engine.getUnitValue(i) > tempFunds) {
 							System.out.println("Not enough funds, try again.");
 							continue;
 						}
-							
+
 						// Remove funds
-						tempFunds -= sending[i] * unitValue[i];
+						tempFunds -= sending[i] * engine.getUnitValue(i);
 						break;
 					}
 				} else {
@@ -916,17 +932,17 @@ public class Game {
 			}
 
 			// Check if the user wants a castle
-			if (tempFunds < unitValue[4] && totalCastles < maxCastles && !selectedTerr.hasCastle()) {
+			installCastle = false;
+
+			if (tempFunds >= engine.getUnitValue(4) && engine.getTotalCastles() < engine.getMaxCastles() && !selectedTerr.hasCastle()) {
 				clearScreen();
 				System.out.println("Would you like to deploy a castle (1 or 0): ");
 
 				if (getIntInput(0,1) == 1) {
 					// Player wants a castle
-					tempFunds -= unitValue[4];
-
+					tempFunds -= engine.getUnitValue(4);
+					installCastle = true;
 				}
-			} else {
-				installCastle = false;
 			}
 
 			// Determine if the user is alright with these units
@@ -945,14 +961,13 @@ public class Game {
 				clearScreen();
 
 				// Place stuff, deduct money
-				p.setMoney(tempFunds);
-				p.addTotalUnits(sending[0], sending[1], sending[2], sending[3]);
-
-				Army temp = new Army(sending[0], sending[1], sending[2], sending[3]);
-				selectedTerr.getDef().combine(temp);
+				if (!engine.apply(new SpendAction(p, selectedTerr, sending.clone(), installCastle))) {
+					System.out.println(engine.getError() + ", try again.");
+					getConfirmation();
+					continue;
+				}
 
 				if (installCastle) {
-					selectedTerr.setCastle(true);
 					System.out.println("Castle installed!");
 				}
 
@@ -964,12 +979,19 @@ public class Game {
 					if (getIntInput(0,1) == 0) {
 						stillSpending = false;
 					}
+				} else {
+					stillSpending = false;
 				}
 			}
 
 			clearScreen();
 		}
 
+		// Spending ends on its own when the money runs out
+		if (engine.getPhase() == GameEngine.TURN && engine.getTurn() == turn) {
+			engine.apply(new SpendAction(p));
+		}
+
 		System.out.println("Transaction complete!");
 		getConfirmation();
 	}
@@ -982,49 +1004,45 @@ public class Game {
 		// Display owned cities and castle territories
 		System.out.println("\nFortifiable Territories:");
 
-		Territory[] owned = p.getTerritories();
-		for (int i = 0; i < owned.length; i++) {
-			if (p.isDefending(owned[i]) && (owned[i].hasCastle() || owned[i].hasCrown())) {
-				owned[i].display();
+		List<Territory> owned = p.getTerritories();
+		int options = 0;
+
+		for (int i = 0; i < owned.size(); i++) {
+			if (engine.canDeploy(p, owned.get(i))) {
+				owned.get(i).display();
+				options++;
 			}
 		}
 
+		if (options == 0) {
+			System.out.println("\nYou hold no city or castle to fortify!");
+			engine.apply(new FortifyAction(p, null));
+			getConfirmation();
+			return;
+		}
+
 		// Get input from the player
 		System.out.print("\nSelect where you would like to fortify: ");
-	
+
 		Territory chosen;
-		String input;
 		while (true) {
-			input = getStringInput();
-			chosen = brd.getTerritory(input);
-			
+			chosen = brd.getTerritory(getStringInput());
+
 			if (chosen == null) {
 				System.out.print("Territory does not exist: ");
 			} else if (!p.isOn(chosen)) {
 				System.out.print("You do not own that: ");
 			} else if (!chosen.hasCrown() && !chosen.hasCastle()) {
 				System.out.print("Territory must be a city or castle: ");
-			} else if (!p.isDefending(chosen)){
+			} else if (!engine.apply(new FortifyAction(p, chosen))) {
 				System.out.print("You must be defending: ");
 			} else {
 				break;
 			}
 		}
 
-		// Determine number of units
-		int numOfUnits = chosen.hasCastle() ? 4 : 3;
-
-		if (p.getTotalFoot() + numOfUnits > maxUnits[0]) {
-			// Will exceed max units, get remainder
-			numOfUnits = maxUnits[0] - p.getTotalFoot();
-		}
-
-		// Add units to space
-		chosen.getDef().combine(new Army(numOfUnits,0,0,0, p));
-		p.addTotalUnits(numOfUnits,0,0,0);
-
 		clearScreen();
-		System.out.println(numOfUnits + " footsoldiers were added to " + chosen.getPrefName() + "!");
+		System.out.println(engine.getLastFortify() + " footsoldiers were added to " + chosen.getPrefName() + "!");
 		getConfirmation();
 	}
 
@@ -1036,34 +1054,36 @@ public class Game {
 		// Player has no siege weapons
 		if (p.getTotalSiege() == 0) {
 			System.out.println("\nYou must have a siege weapon to perform this!");
+			engine.apply(new SiegeAction(p, null, null));
 			getConfirmation();
 			return;
 		}
 
 		// Display possible targets
-		// There must be a siege weapon adjacent to an undisputed owned territory from another player 
+		// There must be a siege weapon adjacent to an undisputed owned territory from another player
 		System.out.println("\nSiege Options:");
 
-		Territory[] owned = p.getTerritories();
+		List<Territory> owned = p.getTerritories();
 		ArrayList<Territory> validTerritories = new ArrayList<Territory>();
 
-		for (int i = 0; i < owned.length; i++) {
-			if (!owned[i].isDisputed() && owned[i].getDef().getSiege() > 0) {
-				// Territory is not disputed and has siege weapon, valid
+		for (int i = 0; i < owned.size(); i++) {
+			if (engine.canSiegeFrom(p, owned.get(i))) {
 				// Check if the territory has a non-disputed adjacent territory owned by another player
-				Territory[] adj = owned[i].getConnections();
-				
-				for (int j = 0; j < adj.length; j++) {
-					if (!adj[j].isDisputed() && !p.isOn(adj[j]) && adj[j].getDef() != null) {
+				int ownedId = owned.get(i).getId();
+
+				for (int j = 0; j < brd.getDegree(ownedId); j++) {
+					Territory adj = brd.getNeighbourTerritory(ownedId, j);
+
+					if (engine.canSiege(p, owned.get(i), adj)) {
 						// Add to list
-						validTerritories.add(owned[i]);
-						validTerritories.add(adj[j]);
+						validTerritories.add(owned.get(i));
+						validTerritories.add(adj);
 
 						// Display information
 						System.out.print("From: ");
-						owned[i].display();
+						owned.get(i).display();
 						System.out.print("To: ");
-						adj[j].display();
+						adj.display();
 						System.out.println();
 					}
 				}
@@ -1073,6 +1093,7 @@ public class Game {
 		// Check if there was nothing added, exit if so
 		if (validTerritories.isEmpty()) {
 			System.out.println("\nYou have no siege weapons positioned to fire at an enemy!");
+			engine.apply(new SiegeAction(p, null, null));
 			getConfirmation();
 			return;
 		}
@@ -1100,50 +1121,39 @@ public class Game {
 			}
 		}
 
-		valid = false;
 		System.out.print("\nNow choose a territory to fire at: ");
-		while (!valid) {
+		while (true) {
 			to = brd.getTerritory(getStringInput());
 
 			// Check if adjacent to from, occupied, and not disputed
-			if (validTerritories.contains(to) && !p.isOn(to) && from.isAdjacent(to)) {
-				valid =true;
-			} else if (from == null) {
+			if (to == null) {
 				System.out.print("Territory does not exist: ");
-			} else {
+			} else if (!engine.apply(new SiegeAction(p, from, to))) {
 				System.out.print("Invalid: ");
+			} else {
+				break;
 			}
 		}
 
 		// Display results
 		clearScreen();
 
-		// Roll two dice for each siege weapon and count hits
+		int[] rolls = engine.getLastRolls();
+		int hits = engine.getLastHits();
+
 		System.out.print("Roll: [");
 
-		int hits = 0;
-		for (int i = 0; i < from.getDef().getSiege() * 2; i++) {
-			int roll = rng.nextInt(6) + 1;
-			
+		for (int i = 0; i < rolls.length; i++) {
 			if (i == 0) {
-				System.out.print("" + roll);
+				System.out.print("" + rolls[i]);
 			} else {
-				System.out.print(", " + roll);
-			}
-
-			if (roll >= 3) {
-				hits++;
+				System.out.print(", " + rolls[i]);
 			}
 		}
 
 		System.out.println("]");
 
-		// Removes the units from target
-		to.getDef().destroyUnits(hits);
-
-		if (to.getDef().totalValue() == 0) {
-			to.removeDef();
-
+		if (to.getDef() == null) {
 			System.out.println("Egads! The entire army was eliminated!");
 		}
 
@@ -1158,6 +1168,7 @@ public class Game {
 		getConfirmation();
 	}
 
+
 	// Clear output
 	private void clearScreen() {
 		try {
@@ -1227,21 +1238,30 @@ public class Game {
 		String out = "";
 		out += brd.toString() + "\n\n";
 
+		Player[] players = engine.getPlayers();
 		for (int i = 0; i < players.length; i++) {
 			out += players[i].toString() + "\n\n";
 		}
 
 		out += "\n\n";
-		out += firstPlayer.getName() + "\n";
+		out += (engine.getFirstPlayer() == null ? "" : engine.getFirstPlayer().getName()) + "\n";
 
 		return out;
 	}
 
-	// Gets the number of units to send from the player
-	private int[] getUnitInput(Territory from, Territory to, int minUnits) {
+	/*
+		Gets the number of units to send from the player
+		reserved holds units already sent elsewhere from the same army, or null
+	*/
+	private int[] getUnitInput(Territory from, Territory to, int minUnits, int[] reserved) {
 		int ft, ar, cv, sg;
 		Army fromUnit = from.getDef();
 
+		if (reserved != null) {
+			fromUnit = new Army(fromUnit.getFoot() - reserved[0], fromUnit.getArcher() - reserved[1],
+				fromUnit.getCavalry() - reserved[2], fromUnit.getSiege() - reserved[3]);
+		}
+
 		while (true) {
 			clearScreen();
 
@@ -1285,12 +1305,7 @@ public class Game {
 				continue;
 			} else {
 				// Not enough units remaning
-				if (from.isDisputed() && (remaining >= from.getAtk().getTotal())) {
-					System.out.println("\nRemaning units must match or exceed the number of attackers: ");
-					getConfirmation();
-					clearScreen();
-					continue;
-				} else if (remaining < minUnits) {
+				if (remaining < minUnits) {
 					System.out.println("\nAt least " + minUnits + " unit" + (minUnits > 1 ? "s" : "") + " must remain, try again.");
 					getConfirmation();
 					clearScreen();
@@ -0,0 +1,1508 @@
+/*
+	GameEngine holds the rules of a game and the state of play
+	Clients (the console Game, bots, simulations) drive it by handing it Actions
+
+	apply() checks an action against the rules and either carries it out or rejects it,
+	leaving the game untouched. getError() says why the last action was rejected.
+	The engine never reads input and only prints when interactive battles are turned on.
+
+	Phases:
+		BID		- Every player sends a sealed BidAction, in any order
+		START	- In turn order each player sends a StartAction then a setup ExpandAction
+		PICK	- Every player sends PickCards, in any order
+		TURN	- In turn order each player plays their next card:
+					Tax Spend cards take a TaxAction or SpendActions (ended by a done SpendAction)
+					Expand Maneuver cards take an ExpandAction or ManeuverAction, followed by
+					a FortifyAction or SiegeAction depending on the card
+				  After the last turn disputes are resolved and the winner is checked
+		OVER	- getWinner() is set, nothing more is accepted
+
+	The can...() checks are public so clients can offer only legal choices.
+
+	snapshot() saves the whole state into a flat GameState and restore() puts it back, which is
+	how search rewinds to a position.
+
+	getHash() is a Zobrist hash of the position (see Zobrist): armies, owners and castles per
+	territory, money and card piles per player, turn order, the first player and whose move it is.
+	Territory hashes are kept per territory and only those an action touched are rehashed; the
+	players and turn state are a handful of ints and are rehashed after every action. The order of
+	cards in a pile and the way units came together into armies do not count, so positions
+	reached in different ways hash the same. With setUndo() on, every accepted action also keeps an
+	undo record of the engine, the players and only the territories it touched, and undo()
+	takes the last action back.
+
+	setEventLog() records every accepted action, the rolls it made and the disputes it settled
+	into an EventLog as the game is played. setBattleOutcomes() settles disputes with results
+	from elsewhere instead of fighting them, which is how Replay plays a log back.
+*/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GameEngine {
+	// Phases
+	public static final int BID = 0;
+	public static final int START = 1;
+	public static final int PICK = 2;
+	public static final int TURN = 3;
+	public static final int OVER = 4;
+
+	// Steps within START and TURN
+	public static final int LOCATE = 0;			// Waiting on a StartAction
+	public static final int SETUP = 1;			// Waiting on the setup expand
+	public static final int CHOOSE = 2;			// Waiting on the card's main action
+	public static final int SPENDING = 3;		// Spending, more SpendActions may follow
+	public static final int FORTIFYING = 4;		// Waiting on a FortifyAction
+	public static final int SIEGING = 5;		// Waiting on a SiegeAction
+
+	/*
+		Results for battles the engine does not fight itself (see setBattleOutcomes)
+	*/
+	public interface BattleOutcomes {
+		// Puts the winner (BattleResolver codes), attacker units left and defender units left in out
+		void next(Territory t, int[] out);
+	}
+
+	private Board brd;
+	private Player[] players;					// In turn order once bidding is over
+	private DiceSource dice;
+
+	private int phase, step;
+	private int round;							// Round number, starts at 1
+	private int turn;							// Turns played this round
+	private int startIndex;						// Player choosing a start location
+	private Player current;						// Player expected to act in START and TURN
+	private int currentCard;					// Card being played this turn
+	private Player firstPlayer;
+	private Player winner;
+
+	private int[] bids;							// Sealed bids by original player index, -1 if none
+	private Player[] bidOrder;					// Players in the order they were given
+	private boolean[] picked;					// By position in players
+
+	private boolean interactiveBattles;
+	private String error;
+
+	// Undo records, reused, the first undoDepth are in use
+	private boolean undoOn;
+	private ArrayList<GameState> undoStack = new ArrayList<GameState>();
+	private int undoDepth;
+	private GameState recording;				// Record of the action being applied
+
+	private EventLog log;						// Null when the game is not recorded
+	private BattleOutcomes outcomes;			// Null when battles are fought
+	private int[] outcome = new int[3];
+
+	// Territories the action being applied touched
+	private int[] touchStamp;					// By id, touchGen when touched
+	private int touchGen;
+	private int[] touched;
+	private int touchedCount;
+
+	// Zobrist hashes
+	private long hash, boardHash;
+	private long[] terrHash;					// By id, XORed together into boardHash
+	private int[] cardScratch = new int[0];
+
+	// Results of the last action, for clients to report
+	private int lastTax, lastFortify, lastHits, battleCount;
+	private int[] lastRolls = new int[0];
+
+	// Rules
+	private int startAmt;						// Starting amount of money
+	private int[] maxUnits;						// Max units a player is allowed
+	private int turnsPerRound;					// Number of turns per round
+	private int[] stArmyCnt;					// Starting unit count
+	private int maxCastles;						// Max number of castles allowed
+	private int totalCastles;					// Current number of castles
+	private int[] unitValue;					// What each unit is worth
+	private int winCrownCount;					// Amount of crowns to win
+	private int[] deck;							// Cards each player was given
+
+	public GameEngine(String[] playerNames, Board brd, int[] cards, DiceSource dice) {
+		this.brd = brd;
+		this.dice = dice;
+
+		maxCastles = 8;
+		winCrownCount = 7;
+		startAmt = 5;
+		turnsPerRound = 2;
+
+		maxUnits = new int[4];
+		maxUnits[0] = 25;
+		maxUnits[1] = 12;
+		maxUnits[2] = 12;
+		maxUnits[3] = 4;
+
+		stArmyCnt = new int[4];
+		stArmyCnt[0] = 10;		// The rest are zero
+
+		unitValue = new int[5];
+		unitValue[0] = 1;
+		unitValue[1] = 2;
+		unitValue[2] = 3;
+		unitValue[3] = 10;
+		unitValue[4] = 12;		// Castle
+
+		deck = cards.clone();
+
+		// Create new player objects from their name, give them starting equipment
+		players = new Player[playerNames.length];
+		for (int i = 0; i < playerNames.length; i++) {
+			players[i] = new Player(playerNames[i], "ffa", startAmt);
+			players[i].giveCards(cards);
+		}
+
+		bidOrder = players.clone();
+		bids = new int[players.length];
+		Arrays.fill(bids, -1);
+		picked = new boolean[players.length];
+
+		phase = BID;
+		startHashing();
+	}
+
+	/*
+		Copies another engine onto a copy of its board with copies of its players
+		Sealed bids and picks of everyone but the viewer are taken back (viewer null keeps them)
+	*/
+	private GameEngine(GameEngine other, DiceSource dice, Player viewer) {
+		brd = other.brd.copy();
+		this.dice = dice;
+
+		phase = other.phase;
+		step = other.step;
+		round = other.round;
+		turn = other.turn;
+		startIndex = other.startIndex;
+		currentCard = other.currentCard;
+
+		startAmt = other.startAmt;
+		maxUnits = other.maxUnits;
+		turnsPerRound = other.turnsPerRound;
+		stArmyCnt = other.stArmyCnt;
+		maxCastles = other.maxCastles;
+		totalCastles = other.totalCastles;
+		unitValue = other.unitValue;
+		winCrownCount = other.winCrownCount;
+		deck = other.deck;
+
+		// Players keep their index in both orders
+		bidOrder = new Player[other.bidOrder.length];
+		for (int i = 0; i < bidOrder.length; i++) bidOrder[i] = new Player(other.bidOrder[i]);
+
+		players = new Player[other.players.length];
+		for (int i = 0; i < players.length; i++) players[i] = bidOrder[indexOf(other.bidOrder, other.players[i])];
+
+		current = other.mapPlayer(other.current, bidOrder);
+		firstPlayer = other.mapPlayer(other.firstPlayer, bidOrder);
+		winner = other.mapPlayer(other.winner, bidOrder);
+
+		bids = other.bids.clone();
+		picked = other.picked.clone();
+
+		// Armies, then each player's territories in the same order as the original
+		Territory[] from = other.brd.getTerritories(), to = brd.getTerritories();
+
+		for (int i = 0; i < from.length; i++) {
+			Army def = from[i].getDef(), atk = from[i].getAtk();
+
+			if (def != null) to[i].setDef(new Army(def.getFoot(), def.getArcher(), def.getCavalry(), def.getSiege(), other.mapPlayer(def.getOwner(), bidOrder)));
+			if (atk != null) to[i].setAtk(new Army(atk.getFoot(), atk.getArcher(), atk.getCavalry(), atk.getSiege(), other.mapPlayer(atk.getOwner(), bidOrder)));
+		}
+
+		for (int i = 0; i < bidOrder.length; i++) {
+			List<Territory> owned = other.bidOrder[i].getTerritories();
+
+			for (int j = 0; j < owned.size(); j++) {
+				bidOrder[i].addTerr(to[owned.get(j).getId()]);
+			}
+		}
+
+		startHashing();
+		if (viewer == null) return;
+
+		for (int i = 0; i < players.length; i++) {
+			if (other.players[i] == viewer) continue;
+
+			if (phase == BID) bids[indexOf(bidOrder, players[i])] = -1;
+
+			if (phase == PICK && picked[i]) {
+				players[i].returnPicks();
+				picked[i] = false;
+			}
+		}
+
+		hash = boardHash ^ headHash();
+	}
+
+	/*
+		Returns an independent copy of the game for lookahead, rolling with the given dice
+		Players and territories keep their indices and ids, so moves can be carried between copies
+		Sealed bids and picks of everyone but the viewer are hidden from the copy (null hides nothing)
+	*/
+	public GameEngine copy(DiceSource dice, Player viewer) {
+		return new GameEngine(this, dice, viewer);
+	}
+
+	// The player in out at the same index as p in bidOrder
+	private Player mapPlayer(Player p, Player[] out) {
+		return p == null ? null : out[indexOf(bidOrder, p)];
+	}
+
+	/*
+		Carries out an action if it is legal right now
+		Returns false and sets getError() otherwise
+	*/
+	public boolean apply(Action a) {
+		error = null;
+
+		touchGen++;
+		touchedCount = 0;
+
+		if (undoOn) startRecord();
+		if (log != null) log.begin();
+
+		boolean done = carryOut(a);
+		if (done && log != null) log.action(this, a);
+
+		if (recording != null) {
+			if (done) undoDepth++;
+			recording = null;
+		}
+
+		rehash(touched, touchedCount);
+		return done;
+	}
+
+	private boolean carryOut(Action a) {
+		if (a == null || a.getPlayer() == null) return reject("No action was given");
+		Player p = a.getPlayer();
+
+		switch (phase) {
+			case BID:
+				if (a.getType() != Action.BID) return reject("Waiting on bids");
+				return bid((BidAction) a);
+
+			case PICK:
+				if (a.getType() != Action.PICK) return reject("Waiting on card picks");
+				return pick((PickCards) a);
+
+			case START:
+				if (p != current) return reject("It is " + current.getName() + "'s turn");
+
+				if (step == LOCATE) {
+					if (a.getType() != Action.START) return reject("Choose a starting location");
+					return start((StartAction) a);
+				}
+
+				if (a.getType() != Action.EXPAND) return reject("Expand from your starting location");
+				return expand((ExpandAction) a, true);
+
+			case TURN:
+				if (p != current) return reject("It is " + current.getName() + "'s turn");
+				return turn(a);
+
+			default:
+				return reject("The game is over");
+		}
+	}
+
+	// Actions during a turn
+	private boolean turn(Action a) {
+		switch (step) {
+			case CHOOSE:
+				if (currentCard <= 2) {
+					if (a.getType() == Action.TAX) return tax((TaxAction) a);
+					if (a.getType() == Action.SPEND) return spend((SpendAction) a);
+					return reject("This card can only tax or spend");
+				}
+
+				if (a.getType() == Action.EXPAND) return expand((ExpandAction) a, false);
+				if (a.getType() == Action.MANEUVER) return maneuver((ManeuverAction) a);
+				return reject("This card can only expand or maneuver");
+
+			case SPENDING:
+				if (a.getType() != Action.SPEND) return reject("Finish spending first");
+				return spend((SpendAction) a);
+
+			case FORTIFYING:
+				if (a.getType() != Action.FORTIFY) return reject("Fortify or pass");
+				return fortify((FortifyAction) a);
+
+			default:
+				if (a.getType() != Action.SIEGE) return reject("Siege or pass");
+				return siege((SiegeAction) a);
+		}
+	}
+
+	/*
+		Bidding, once every bid is in the highest wins
+		Tied bids roll two dice each, the highest roll wins (ties to the later player)
+	*/
+	private boolean bid(BidAction a) {
+		int i = indexOf(bidOrder, a.getPlayer());
+
+		if (i < 0) return reject("Not a player in this game");
+		if (bids[i] >= 0) return reject(a.getPlayer().getName() + " has already bid");
+		if (a.getAmount() < 0 || a.getAmount() > a.getPlayer().getMoney()) return reject("Bids must be between 0 and " + a.getPlayer().getMoney());
+
+		bids[i] = a.getAmount();
+
+		for (int j = 0; j < bids.length; j++) {
+			if (bids[j] < 0) return true;
+		}
+
+		// Every bid is in, find the largest
+		int largest = 0;
+
+		for (int j = 0; j < bids.length; j++) {
+			if (bids[j] > bids[largest]) {
+				largest = j;
+			}
+		}
+
+		int[] ties = new int[bids.length];
+
+		for (int j = 0; j < bids.length; j++) {
+			if (bids[largest] == bids[j]) {
+				ties[j] = dice.roll() + dice.roll();
+			}
+		}
+
+		for (int j = 0; j < ties.length; j++) {
+			if (ties[j] >= ties[largest]) {
+				largest = j;
+			}
+		}
+
+		// The winner has been determined
+		bidOrder[largest].addMoney(-bids[largest]);
+		firstPlayer = bidOrder[largest];
+		assignOrder();
+
+		phase = START;
+		step = LOCATE;
+		startIndex = 0;
+		current = players[0];
+
+		return true;
+	}
+
+	/*
+		Starting location, gets a castle, the starting army and its value in coins
+	*/
+	private boolean start(StartAction a) {
+		Player p = a.getPlayer();
+		Territory t = a.getLocation();
+
+		if (!canStartAt(t)) return reject("Not an open starting location");
+
+		Army capUnit = new Army(stArmyCnt[0], stArmyCnt[1], stArmyCnt[2], stArmyCnt[3], p);
+		touch(t);
+
+		t.setDef(capUnit);
+		t.setCastle(true);
+		totalCastles++;
+
+		p.addTerr(t);
+		p.addMoney(t.getValue());
+		p.addTotalUnits(stArmyCnt[0], stArmyCnt[1], stArmyCnt[2], stArmyCnt[3]);
+
+		step = SETUP;
+		return true;
+	}
+
+	/*
+		Card picks, turns start once every player has picked
+	*/
+	private boolean pick(PickCards a) {
+		Player p = a.getPlayer();
+		int i = indexOf(players, p);
+
+		if (i < 0) return reject("Not a player in this game");
+		if (picked[i]) return reject(p.getName() + " has already picked");
+
+		// Both cards must be in the draw pile, twice if they are the same card
+		int[] cards = p.getCards();
+		int first = 0, second = 0;
+
+		for (int j = 0; j < cards.length; j++) {
+			if (cards[j] == a.getFirst()) first++;
+			if (cards[j] == a.getSecond()) second++;
+		}
+
+		if (first == 0 || second == 0 || (a.getFirst() == a.getSecond() && first < 2)) {
+			return reject("Those cards are not available");
+		}
+
+		p.pickCard(a.getFirst());
+		p.pickCard(a.getSecond());
+		picked[i] = true;
+
+		for (int j = 0; j < picked.length; j++) {
+			if (!picked[j]) return true;
+		}
+
+		phase = TURN;
+		turn = 0;
+		startTurn();
+
+		return true;
+	}
+
+	// Finds the largest supply chain, adds it to the player's money
+	private boolean tax(TaxAction a) {
+		lastTax = a.getPlayer().getTaxValue();
+		a.getPlayer().addMoney(lastTax);
+
+		endAction();
+		return true;
+	}
+
+	/*
+		Buys units for a city or castle, spending continues until a done action or no money is left
+	*/
+	private boolean spend(SpendAction a) {
+		Player p = a.getPlayer();
+
+		if (a.isDone()) {
+			endAction();
+			return true;
+		}
+
+		Territory t = a.getLocation();
+		int[] units = a.getUnits();
+
+		if (!canDeploy(p, t)) return reject("Units can only be placed on a city or castle you defend");
+		if (units == null || units.length != 4) return reject("Give a count for each unit type");
+
+		int[] totals = {p.getTotalFoot(), p.getTotalArch(), p.getTotalCav(), p.getTotalSiege()};
+		int cost = 0, count = 0;
+
+		for (int i = 0; i < 4; i++) {
+			if (units[i] < 0) return reject("Unit counts cannot be negative");
+			if (totals[i] + units[i] > maxUnits[i]) return reject("That would exceed the unit limit");
+
+			cost += units[i] * unitValue[i];
+			count += units[i];
+		}
+
+		if (a.hasCastle()) {
+			if (t.hasCastle()) return reject("There is already a castle there");
+			if (totalCastles >= maxCastles) return reject("There are no castles left");
+
+			cost += unitValue[4];
+		} else if (count == 0) {
+			return reject("Nothing was bought");
+		}
+
+		if (cost > p.getMoney()) return reject("Not enough funds");
+
+		// Place stuff, deduct money
+		touch(t);
+		p.addMoney(-cost);
+		p.addTotalUnits(units[0], units[1], units[2], units[3]);
+		t.getDef().combine(new Army(units[0], units[1], units[2], units[3]));
+
+		if (a.hasCastle()) {
+			t.setCastle(true);
+			totalCastles++;
+		}
+
+		if (p.getMoney() == 0) {
+			endAction();
+		} else {
+			step = SPENDING;
+		}
+
+		return true;
+	}
+
+	/*
+		Moves units into territory the player is not on
+		A setup expand may only enter empty territory, only the SplitExpand card can split
+	*/
+	private boolean expand(ExpandAction a, boolean isSetup) {
+		Player p = a.getPlayer();
+
+		if (a.isPass()) {
+			finishExpand(isSetup);
+			return true;
+		}
+
+		Territory from = a.getFrom();
+
+		if (!canMoveFrom(p, from)) return reject("You cannot move units out of there");
+		if (!canExpandTo(p, from, a.getTo(), isSetup)) return reject("You cannot expand there");
+
+		int[] units = a.getUnits(), splitUnits = a.getSplitUnits();
+
+		if (a.isSplit()) {
+			if (isSetup || currentCard != 5) return reject("Only the SplitExpand card can split");
+			if (a.getSplitTo() == a.getTo() || !canExpandTo(p, from, a.getSplitTo(), false)) return reject("You cannot expand there");
+		}
+
+		String bad = checkUnits(from, units, splitUnits);
+		if (bad != null) return reject(bad);
+
+		moveInto(p, from, a.getTo(), units);
+		if (a.isSplit()) moveInto(p, from, a.getSplitTo(), splitUnits);
+
+		finishExpand(isSetup);
+		return true;
+	}
+
+	// Places units split from one territory into another
+	private void moveInto(Player p, Territory from, Territory to, int[] units) {
+		touch(from);
+		touch(to);
+
+		Army leaving = from.getDef().split(units[0], units[1], units[2], units[3]);
+
+		// Links new split unit to player
+		p.addTerr(to);
+
+		if (to.getDef() != null) {
+			// Occupied
+			to.setAtk(leaving);
+		} else {
+			// Unoccupied, cities pay out when taken
+			to.setDef(leaving);
+
+			if (to.hasCrown()) {
+				p.addMoney(to.getValue());
+			}
+		}
+	}
+
+	private void finishExpand(boolean isSetup) {
+		if (!isSetup) {
+			endAction();
+			return;
+		}
+
+		// Next player picks a start, rounds begin after the last
+		startIndex++;
+
+		if (startIndex == players.length) {
+			startRound();
+		} else {
+			step = LOCATE;
+			current = players[startIndex];
+		}
+	}
+
+	/*
+		Moves units between territories the player is on, up to two spaces apart
+	*/
+	private boolean maneuver(ManeuverAction a) {
+		Player p = a.getPlayer();
+
+		if (a.isPass()) {
+			endAction();
+			return true;
+		}
+
+		Territory from = a.getFrom(), to = a.getTo();
+
+		if (!canMoveFrom(p, from)) return reject("You cannot move units out of there");
+		if (!canManeuver(p, from, to)) return reject("You cannot maneuver there");
+
+		String bad = checkUnits(from, a.getUnits(), null);
+		if (bad != null) return reject(bad);
+
+		int[] units = a.getUnits();
+		touch(from);
+		touch(to);
+
+		Army moving = from.getDef().split(units[0], units[1], units[2], units[3]);
+
+		if (p.isDefending(to)) {
+			to.getDef().combine(moving);
+		} else {
+			// Must be the attacker
+			to.getAtk().combine(moving);
+		}
+
+		endAction();
+		return true;
+	}
+
+	/*
+		Adds three footsoldiers on a city, four on a castle, up to the unit limit
+	*/
+	private boolean fortify(FortifyAction a) {
+		Player p = a.getPlayer();
+		lastFortify = 0;
+
+		if (!a.isPass()) {
+			Territory t = a.getLocation();
+			if (!canDeploy(p, t)) return reject("Fortify a city or castle you defend");
+
+			lastFortify = Math.min(t.hasCastle() ? 4 : 3, maxUnits[0] - p.getTotalFoot());
+			touch(t);
+
+			t.getDef().combine(new Army(lastFortify, 0, 0, 0, p));
+			p.addTotalUnits(lastFortify, 0, 0, 0);
+		}
+
+		endTurn();
+		return true;
+	}
+
+	/*
+		Rolls two dice for each siege weapon, every 3 or higher destroys a unit
+	*/
+	private boolean siege(SiegeAction a) {
+		Player p = a.getPlayer();
+		lastHits = 0;
+		lastRolls = new int[0];
+
+		if (!a.isPass()) {
+			Territory from = a.getFrom(), to = a.getTo();
+			if (!canSiege(p, from, to)) return reject("You cannot fire on that");
+
+			lastRolls = new int[from.getDef().getSiege() * 2];
+			touch(to);
+
+			for (int i = 0; i < lastRolls.length; i++) {
+				lastRolls[i] = dice.roll();
+
+				if (lastRolls[i] >= 3) {
+					lastHits++;
+				}
+			}
+
+			to.getDef().destroyUnits(lastHits);
+
+			if (to.getDef().getTotal() == 0) {
+				to.removeDef();
+			}
+		}
+
+		endTurn();
+		return true;
+	}
+
+	/*
+		Turn flow
+	*/
+	// The card's main action is done
+	private void endAction() {
+		if (currentCard == 2) {
+			// King Me
+			firstPlayer = current;
+		}
+
+		if (currentCard == 3) {
+			step = FORTIFYING;
+		} else if (currentCard == 4) {
+			step = SIEGING;
+		} else {
+			endTurn();
+		}
+	}
+
+	private void startTurn() {
+		current = players[turn % players.length];
+		currentCard = current.useCard();
+		step = CHOOSE;
+	}
+
+	private void endTurn() {
+		turn++;
+
+		if (turn < turnsPerRound * players.length) {
+			startTurn();
+			return;
+		}
+
+		resolveDisputes();
+		checkForWin();
+
+		if (winner != null) {
+			phase = OVER;
+			current = null;
+
+			if (log != null) log.gameEnd(indexOf(bidOrder, winner));
+		} else {
+			startRound();
+		}
+	}
+
+	private void startRound() {
+		round++;
+		assignOrder();
+		Arrays.fill(picked, false);
+
+		phase = PICK;
+		current = null;
+
+		if (log != null) log.round(round);
+	}
+
+	/*
+		Fights a battle on every disputed territory and sets the owner afterwards
+	*/
+	private void resolveDisputes() {
+		Territory[] terrs = brd.getTerritories();
+		battleCount = 0;
+
+		for (int i = 0; i < terrs.length; i++) {
+			if (terrs[i].isDisputed()) {
+				battleCount++;
+				touch(terrs[i]);
+
+				Army atk = terrs[i].getAtk(), def = terrs[i].getDef();
+				if (log != null) log.battle();
+
+				Battle btl = new Battle(terrs[i], dice);
+				Army won;
+
+				if (outcomes != null) {
+					outcomes.next(terrs[i], outcome);
+					won = btl.settle(outcome[0], outcome[1], outcome[2]);
+				} else {
+					won = interactiveBattles ? btl.startBattle() : btl.resolve();
+				}
+
+				if (log != null) {
+					int code = won == null ? BattleResolver.NONE : won == def ? BattleResolver.DEFENDER : BattleResolver.ATTACKER;
+					log.dispute(terrs[i].getId(), code, atk.getTotal(), def.getTotal());
+				}
+
+				if (won == null) {
+					// Nobody wins, territory unclaimed
+					terrs[i].removeAtk();
+					terrs[i].removeDef();
+				} else if (terrs[i].getDef() == won) {
+					// Remove attacking unit
+					terrs[i].removeAtk();
+				} else {
+					// Overwrite defender ref, remove old attacker ref
+					terrs[i].removeDef();
+				}
+			}
+		}
+	}
+
+	/*
+		The player with the most crowns wins once they have at least winCrownCount
+		Ties go to the most money, the first player counts as having 10 more
+	*/
+	private void checkForWin() {
+		int best = winCrownCount, bestMoney = -1;
+
+		for (int i = 0; i < players.length; i++) {
+			int count = players[i].getCrowns();
+			int money = players[i].getMoney() + (players[i] == firstPlayer ? 10 : 0);
+
+			if (count > best || (count == best && money > bestMoney)) {
+				winner = players[i];
+				best = count;
+				bestMoney = money;
+			}
+		}
+	}
+
+	/*
+		Rotates the players array so the first player leads
+	*/
+	private void assignOrder() {
+		int ind = indexOf(players, firstPlayer);
+
+		if (ind > 0) {
+			Player[] rotated = new Player[players.length];
+
+			for (int i = 0; i < players.length; i++) {
+				rotated[i] = players[(ind + i) % players.length];
+			}
+
+			players = rotated;
+		}
+	}
+
+	/*
+		Saving and restoring state
+	*/
+	// A state sized for this game
+	public GameState newState() {
+		int stride = 0;
+
+		for (int i = 0; i < bidOrder.length; i++) {
+			stride = Math.max(stride, bidOrder[i].getCardStateSize());
+		}
+
+		return new GameState(bidOrder.length, brd.getTerritoryCount(), stride);
+	}
+
+	public GameState snapshot() {
+		GameState out = newState();
+		snapshot(out);
+		return out;
+	}
+
+	// Saves the whole game into out, which must come from newState() of this game or a copy of it
+	public void snapshot(GameState out) {
+		saveHead(out);
+
+		for (int id = 0; id < brd.getTerritoryCount(); id++) {
+			saveTerritory(out, id);
+		}
+
+		out.full = true;
+		out.touchedCount = 0;
+	}
+
+	/*
+		Puts a saved state back, only territories that differ are changed
+		Undo records are dropped since they no longer lead back from here
+	*/
+	public void restore(GameState s) {
+		if (!s.full) throw new IllegalArgumentException("Only a snapshot can be restored");
+		if (log != null) throw new IllegalStateException("A recorded game cannot jump to a snapshot");
+
+		load(s);
+		undoDepth = 0;
+	}
+
+	/*
+		Undo
+	*/
+	// Keeps an undo record for every accepted action, turning it off drops them
+	public void setUndo(boolean on) {
+		undoOn = on;
+		undoDepth = 0;
+	}
+
+	// Takes the last accepted action back, false if there is nothing to undo
+	public boolean undo() {
+		if (undoDepth == 0) return false;
+
+		load(undoStack.get(--undoDepth));
+		error = null;
+
+		if (log != null) log.undo();
+
+		return true;
+	}
+
+	public int getUndoDepth() {
+		return undoDepth;
+	}
+
+	private void startRecord() {
+		if (undoDepth == undoStack.size()) undoStack.add(newState());
+
+		recording = undoStack.get(undoDepth);
+		saveHead(recording);
+		recording.full = false;
+		recording.touchedCount = 0;
+	}
+
+	// Called before an action changes a territory, to rehash it and save it into the undo record
+	private void touch(Territory t) {
+		int id = t.getId();
+		if (touchStamp[id] == touchGen) return;
+
+		touchStamp[id] = touchGen;
+		touched[touchedCount++] = id;
+
+		if (recording != null) {
+			saveTerritory(recording, id);
+			recording.touched[recording.touchedCount++] = id;
+		}
+	}
+
+	private void saveHead(GameState s) {
+		s.phase = phase;
+		s.step = step;
+		s.round = round;
+		s.turn = turn;
+		s.startIndex = startIndex;
+		s.current = indexOf(bidOrder, current);
+		s.currentCard = currentCard;
+		s.firstPlayer = indexOf(bidOrder, firstPlayer);
+		s.winner = indexOf(bidOrder, winner);
+		s.totalCastles = totalCastles;
+		s.lastTax = lastTax;
+		s.lastFortify = lastFortify;
+		s.lastHits = lastHits;
+		s.battleCount = battleCount;
+
+		for (int i = 0; i < players.length; i++) {
+			s.order[i] = indexOf(bidOrder, players[i]);
+			s.bids[i] = bids[i];
+			s.picked[i] = picked[i];
+		}
+
+		int n = brd.getTerritoryCount();
+
+		for (int j = 0; j < bidOrder.length; j++) {
+			Player p = bidOrder[j];
+
+			s.money[j] = p.getMoney();
+			s.unitTotals[j * 4] = p.getTotalFoot();
+			s.unitTotals[j * 4 + 1] = p.getTotalArch();
+			s.unitTotals[j * 4 + 2] = p.getTotalCav();
+			s.unitTotals[j * 4 + 3] = p.getTotalSiege();
+			p.getCardState(s.cards, j * s.cardStride);
+
+			List<Territory> owned = p.getTerritories();
+			s.ownedCount[j] = owned.size();
+
+			for (int k = 0; k < owned.size(); k++) {
+				s.owned[j * n + k] = owned.get(k).getId();
+			}
+		}
+	}
+
+	private void saveTerritory(GameState s, int id) {
+		Territory t = brd.getTerritory(id);
+
+		s.defOwner[id] = saveArmy(t.getDef(), s.defUnits, id);
+		s.atkOwner[id] = saveArmy(t.getAtk(), s.atkUnits, id);
+		s.castle[id] = t.hasCastle();
+	}
+
+	// Writes an army's units, returns its owner's index or -1 for none
+	private int saveArmy(Army army, int[] units, int id) {
+		if (army == null) return -1;
+
+		units[id * 4] = army.getFoot();
+		units[id * 4 + 1] = army.getArcher();
+		units[id * 4 + 2] = army.getCavalry();
+		units[id * 4 + 3] = army.getSiege();
+
+		return indexOf(bidOrder, army.getOwner());
+	}
+
+	// Loads a snapshot or the territories of an undo record, then the engine and players
+	private void load(GameState s) {
+		if (s.full) {
+			for (int id = 0; id < brd.getTerritoryCount(); id++) loadTerritory(s, id);
+		} else {
+			for (int i = 0; i < s.touchedCount; i++) loadTerritory(s, s.touched[i]);
+		}
+
+		phase = s.phase;
+		step = s.step;
+		round = s.round;
+		turn = s.turn;
+		startIndex = s.startIndex;
+		current = s.current < 0 ? null : bidOrder[s.current];
+		currentCard = s.currentCard;
+		firstPlayer = s.firstPlayer < 0 ? null : bidOrder[s.firstPlayer];
+		winner = s.winner < 0 ? null : bidOrder[s.winner];
+		totalCastles = s.totalCastles;
+		lastTax = s.lastTax;
+		lastFortify = s.lastFortify;
+		lastHits = s.lastHits;
+		battleCount = s.battleCount;
+
+		// A new array if the order changed, like assignOrder()
+		for (int i = 0; i < players.length; i++) {
+			if (players[i] != bidOrder[s.order[i]]) {
+				players = new Player[players.length];
+				for (int j = 0; j < players.length; j++) players[j] = bidOrder[s.order[j]];
+				break;
+			}
+		}
+
+		for (int i = 0; i < players.length; i++) {
+			bids[i] = s.bids[i];
+			picked[i] = s.picked[i];
+		}
+
+		int n = brd.getTerritoryCount();
+
+		for (int j = 0; j < bidOrder.length; j++) {
+			Player p = bidOrder[j];
+
+			p.setMoney(s.money[j]);
+			p.setFoot(s.unitTotals[j * 4]);
+			p.setArch(s.unitTotals[j * 4 + 1]);
+			p.setCav(s.unitTotals[j * 4 + 2]);
+			p.setSiege(s.unitTotals[j * 4 + 3]);
+			p.setCardState(s.cards, j * s.cardStride);
+
+			p.clearTerritories();
+
+			for (int k = 0; k < s.ownedCount[j]; k++) {
+				p.addTerr(brd.getTerritory(s.owned[j * n + k]));
+			}
+		}
+
+		if (s.full) {
+			rehashAll();
+		} else {
+			rehash(s.touched, s.touchedCount);
+		}
+	}
+
+	/*
+		Hashing
+	*/
+	private void startHashing() {
+		int n = brd.getTerritoryCount();
+
+		touchStamp = new int[n];
+		touched = new int[n];
+		terrHash = new long[n];
+
+		rehashAll();
+	}
+
+	private void rehashAll() {
+		boardHash = 0;
+
+		for (int id = 0; id < terrHash.length; id++) {
+			terrHash[id] = territoryHash(id);
+			boardHash ^= terrHash[id];
+		}
+
+		hash = boardHash ^ headHash();
+	}
+
+	// Rehashes the given territories and the players and turn state
+	private void rehash(int[] ids, int count) {
+		for (int i = 0; i < count; i++) {
+			int id = ids[i];
+
+			boardHash ^= terrHash[id];
+			terrHash[id] = territoryHash(id);
+			boardHash ^= terrHash[id];
+		}
+
+		hash = boardHash ^ headHash();
+	}
+
+	private long territoryHash(int id) {
+		Territory t = brd.getTerritory(id);
+		long h = t.hasCastle() ? Zobrist.key(Zobrist.CASTLE, id) : 0;
+
+		h ^= armyHash(t.getDef(), id, Zobrist.DEFENDER, Zobrist.DEF_UNITS);
+		h ^= armyHash(t.getAtk(), id, Zobrist.ATTACKER, Zobrist.ATK_UNITS);
+
+		return h;
+	}
+
+	private long armyHash(Army army, int id, int ownerKind, int unitKind) {
+		if (army == null) return 0;
+
+		return Zobrist.key(ownerKind, id, indexOf(bidOrder, army.getOwner()))
+			^ Zobrist.key(unitKind, id, 0, army.getFoot())
+			^ Zobrist.key(unitKind, id, 1, army.getArcher())
+			^ Zobrist.key(unitKind, id, 2, army.getCavalry())
+			^ Zobrist.key(unitKind, id, 3, army.getSiege());
+	}
+
+	// Players, turn order and whose move it is
+	private long headHash() {
+		long h = Zobrist.key(Zobrist.STATE, phase, step, turn) ^ Zobrist.key(Zobrist.CARD, currentCard);
+
+		if (current != null) h ^= Zobrist.key(Zobrist.CURRENT, indexOf(bidOrder, current));
+		if (firstPlayer != null) h ^= Zobrist.key(Zobrist.FIRST, indexOf(bidOrder, firstPlayer));
+
+		for (int i = 0; i < players.length; i++) {
+			h ^= Zobrist.key(Zobrist.ORDER, i, indexOf(bidOrder, players[i]));
+		}
+
+		for (int j = 0; j < bidOrder.length; j++) {
+			Player p = bidOrder[j];
+			h ^= Zobrist.key(Zobrist.MONEY, j, p.getMoney());
+
+			if (bids[j] >= 0) h ^= Zobrist.key(Zobrist.BID, j, bids[j]);
+
+			// Draw pile, discard pile, active cards, discard index
+			int size = p.getCardStateSize();
+			if (size == 0) continue;
+
+			if (cardScratch.length < size) cardScratch = new int[size];
+			p.getCardState(cardScratch, 0);
+
+			int pile = (size - 3) / 2;
+			long draw = 0, discard = 0;
+
+			for (int i = 0; i < pile; i++) {
+				if (cardScratch[i] != 0) draw += Zobrist.key(Zobrist.DRAW, j, cardScratch[i]);
+				if (cardScratch[pile + i] != 0) discard += Zobrist.key(Zobrist.DISCARD, j, cardScratch[pile + i]);
+			}
+
+			h ^= draw ^ Long.rotateLeft(discard, 17);
+			h ^= Zobrist.key(Zobrist.ACTIVE, j, 0, cardScratch[2 * pile]) ^ Zobrist.key(Zobrist.ACTIVE, j, 1, cardScratch[2 * pile + 1]);
+		}
+
+		return h;
+	}
+
+	// Zobrist hash of the position, kept up to date as actions are applied
+	public long getHash() {
+		return hash;
+	}
+
+	// Hashes the position from scratch, for checking getHash()
+	public long computeHash() {
+		long h = 0;
+
+		for (int id = 0; id < brd.getTerritoryCount(); id++) {
+			h ^= territoryHash(id);
+		}
+
+		return h ^ headHash();
+	}
+
+	private void loadTerritory(GameState s, int id) {
+		Territory t = brd.getTerritory(id);
+
+		// Attackers first so a territory is never left with an attacker and no defender
+		if (s.atkOwner[id] < 0 && t.getAtk() != null) t.setAtk(null);
+
+		Army def = loadArmy(t.getDef(), s.defOwner[id], s.defUnits, id);
+		if (def != t.getDef()) t.setDef(def);
+
+		Army atk = loadArmy(t.getAtk(), s.atkOwner[id], s.atkUnits, id);
+		if (atk != t.getAtk()) t.setAtk(atk);
+
+		t.setCastle(s.castle[id]);
+	}
+
+	// The army to place, the current one with its units reset if the owner is the same
+	private Army loadArmy(Army army, int owner, int[] units, int id) {
+		if (owner < 0) return null;
+
+		int f = units[id * 4], a = units[id * 4 + 1], c = units[id * 4 + 2], sg = units[id * 4 + 3];
+
+		if (army != null && army.getOwner() == bidOrder[owner]) {
+			army.setUnits(f, a, c, sg);
+			return army;
+		}
+
+		return new Army(f, a, c, sg, bidOrder[owner]);
+	}
+
+	/*
+		Rule checks
+	*/
+	public boolean canStartAt(Territory t) {
+		return t != null && t.canStart() && t.getDef() == null;
+	}
+
+	// Units can leave a territory the player defends if enough stay behind
+	public boolean canMoveFrom(Player p, Territory from) {
+		return from != null && p.isDefending(from) && from.getDef().getTotal() > minRemaining(from);
+	}
+
+	// Expands go to a neighbour the player is not on, castles need a siege weapon
+	public boolean canExpandTo(Player p, Territory from, Territory to, boolean isSetup) {
+		if (to == null || !from.isAdjacent(to)) return false;
+		if (to.isDisputed() || p.isOn(to) || (isSetup && to.getDef() != null)) return false;
+
+		return !to.hasCastle() || from.getDef().getSiege() > 0;
+	}
+
+	// Maneuvers go to a territory the player is on, at most two spaces away
+	public boolean canManeuver(Player p, Territory from, Territory to) {
+		if (to == null || to == from || !p.isOn(to)) return false;
+		if (from.isAdjacent(to)) return true;
+
+		int fromId = from.getId();
+
+		for (int i = 0; i < brd.getDegree(fromId); i++) {
+			if (brd.isAdjacent(brd.getNeighbour(fromId, i), to.getId())) return true;
+		}
+
+		return false;
+	}
+
+	// Spending and fortifying happen on cities and castles the player defends
+	public boolean canDeploy(Player p, Territory t) {
+		return t != null && p.isDefending(t) && (t.hasCrown() || t.hasCastle());
+	}
+
+	public boolean canSiegeFrom(Player p, Territory from) {
+		return from != null && p.isDefending(from) && !from.isDisputed() && from.getDef().getSiege() > 0;
+	}
+
+	// Siege fire needs both territories undisputed and the target held by someone else
+	public boolean canSiege(Player p, Territory from, Territory to) {
+		if (!canSiegeFrom(p, from) || to == null) return false;
+		return from.isAdjacent(to) && !to.isDisputed() && !p.isOn(to) && to.getDef() != null;
+	}
+
+	// Units that must stay behind, as many as the attackers if the territory is disputed
+	public int minRemaining(Territory from) {
+		return from.isDisputed() ? Math.max(1, from.getAtk().getTotal()) : 1;
+	}
+
+	// A split expand leaves at least two units behind
+	public int minRemaining(Territory from, boolean split) {
+		return split ? Math.max(2, minRemaining(from)) : minRemaining(from);
+	}
+
+	// Units can go two ways if each group has one and enough stay behind
+	public boolean canSplitFrom(Player p, Territory from) {
+		return from != null && p.isDefending(from) && from.getDef().getTotal() >= minRemaining(from, true) + 2;
+	}
+
+	/*
+		Checks the units leaving a territory (one or two groups)
+		Returns why they cannot leave or null if they can
+	*/
+	private String checkUnits(Territory from, int[] units, int[] more) {
+		Army army = from.getDef();
+		int[] have = {army.getFoot(), army.getArcher(), army.getCavalry(), army.getSiege()};
+		int leaving = 0;
+
+		for (int g = 0; g < 2; g++) {
+			int[] group = (g == 0) ? units : more;
+			if (group == null && g == 1) break;
+			if (group == null || group.length != 4) return "Give a count for each unit type";
+
+			int count = 0;
+
+			for (int i = 0; i < 4; i++) {
+				if (group[i] < 0) return "Unit counts cannot be negative";
+
+				have[i] -= group[i];
+				if (have[i] < 0) return "There are not that many units";
+
+				count += group[i];
+			}
+
+			if (count == 0) return "At least one unit must be sent";
+			leaving += count;
+		}
+
+		int min = minRemaining(from, more != null);
+		if (army.getTotal() - leaving < min) {
+			return "At least " + min + " unit" + (min > 1 ? "s" : "") + " must remain";
+		}
+
+		return null;
+	}
+
+	private boolean reject(String reason) {
+		error = reason;
+		return false;
+	}
+
+	private static int indexOf(Player[] arr, Player p) {
+		for (int i = 0; i < arr.length; i++) {
+			if (arr[i] == p) return i;
+		}
+
+		return -1;
+	}
+
+	/*
+		Setters
+	*/
+	// Battles print and ask the defender about rerolls on the console
+	public void setInteractiveBattles(boolean interactiveBattles) {
+		this.interactiveBattles = interactiveBattles;
+	}
+
+	/*
+		Records the game from here on (see EventLog), before anyone has bid
+		The log watches the dice so every roll is kept with the action or battle that made it
+	*/
+	public void setEventLog(EventLog log) {
+		for (int i = 0; i < bids.length; i++) {
+			if (phase != BID || bids[i] >= 0) throw new IllegalStateException("A game is recorded from before bidding");
+		}
+
+		this.log = log;
+		dice = log.watch(dice);
+		log.start(this);
+	}
+
+	// Disputes take their results from outcomes instead of being fought, null fights them again
+	public void setBattleOutcomes(BattleOutcomes outcomes) {
+		this.outcomes = outcomes;
+	}
+
+	/*
+		Rules, the defaults are in the constructor
+	*/
+	public void setWinCrownCount(int winCrownCount) {
+		this.winCrownCount = winCrownCount;
+	}
+
+	public void setMaxCastles(int maxCastles) {
+		this.maxCastles = maxCastles;
+	}
+
+	// Limits per unit type: foot, archer, cavalry, siege
+	public void setMaxUnits(int[] maxUnits) {
+		if (maxUnits.length != 4) throw new IllegalArgumentException("Give a limit for each unit type");
+
+		// Copies share the old array, so replace it rather than writing into it
+		this.maxUnits = maxUnits.clone();
+	}
+
+	// Gives every player the new starting money, only before anyone has bid
+	public void setStartAmt(int startAmt) {
+		for (int i = 0; i < bids.length; i++) {
+			if (phase != BID || bids[i] >= 0) throw new IllegalStateException("The starting money is set before bidding");
+		}
+
+		this.startAmt = startAmt;
+
+		for (int i = 0; i < bidOrder.length; i++) {
+			bidOrder[i].setMoney(startAmt);
+		}
+
+		rehash(touched, 0);
+	}
+
+	/*
+		Getters
+	*/
+	public String getError() {
+		return error;
+	}
+
+	public int getPhase() {
+		return phase;
+	}
+
+	public int getStep() {
+		return step;
+	}
+
+	public boolean isOver() {
+		return phase == OVER;
+	}
+
+	public int getRound() {
+		return round;
+	}
+
+	// Turns played this round
+	public int getTurn() {
+		return turn;
+	}
+
+	// Player expected to act, null while bids or picks are open
+	public Player getCurrentPlayer() {
+		return current;
+	}
+
+	public int getCurrentCard() {
+		return currentCard;
+	}
+
+	/*
+		Player the engine is waiting on
+		During bids and picks the first player (in turn order) who has not sent theirs, null once over
+	*/
+	public Player getActingPlayer() {
+		if (phase == BID || phase == PICK) {
+			for (int i = 0; i < players.length; i++) {
+				if (phase == BID ? !hasBid(players[i]) : !picked[i]) return players[i];
+			}
+
+			return null;
+		}
+
+		return current;
+	}
+
+	public Player getFirstPlayer() {
+		return firstPlayer;
+	}
+
+	public Player getWinner() {
+		return winner;
+	}
+
+	// Player by the index they were named at, which does not change with the turn order
+	public Player getPlayer(int index) {
+		return bidOrder[index];
+	}
+
+	// Index a player was named at, -1 if they are not in this game
+	public int getPlayerIndex(Player p) {
+		return indexOf(bidOrder, p);
+	}
+
+	// Players in turn order, do not modify
+	public Player[] getPlayers() {
+		return players;
+	}
+
+	public boolean hasBid(Player p) {
+		int i = indexOf(bidOrder, p);
+		return i >= 0 && bids[i] >= 0;
+	}
+
+	public boolean hasPicked(Player p) {
+		int i = indexOf(players, p);
+		return i >= 0 && picked[i];
+	}
+
+	public Board getBoard() {
+		return brd;
+	}
+
+	public DiceSource getDice() {
+		return dice;
+	}
+
+	public int getLastTax() {
+		return lastTax;
+	}
+
+	public int getLastFortify() {
+		return lastFortify;
+	}
+
+	public int getLastHits() {
+		return lastHits;
+	}
+
+	public int[] getLastRolls() {
+		return lastRolls;
+	}
+
+	// Battles fought at the end of the last round
+	public int getBattleCount() {
+		return battleCount;
+	}
+
+	public int getMaxUnits(int type) {
+		return maxUnits[type];
+	}
+
+	// Unit costs, index 4 is a castle
+	public int getUnitValue(int type) {
+		return unitValue[type];
+	}
+
+	// Cards each player was given at the start
+	public int[] getDeck() {
+		return deck.clone();
+	}
+
+	public int getStartAmt() {
+		return startAmt;
+	}
+
+	public int getWinCrownCount() {
+		return winCrownCount;
+	}
+
+	public int getMaxCastles() {
+		return maxCastles;
+	}
+
+	public int getTotalCastles() {
+		return totalCastles;
+	}
+
+	public int getTurnsPerRound() {
+		return turnsPerRound;
+	}
+}
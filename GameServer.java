@@ -0,0 +1,838 @@
+/*
+	Hosts many games over TCP with a line based text protocol
+
+	Usage: java GameServer [-port N] [-board path] [-sealed ms]
+
+	One thread runs a non-blocking Selector over every connection and every game lives in a Room
+	with its own GameEngine, so an idle game costs only its memory and the server never blocks on a
+	slow player. Engines are only touched by the selector thread. The board is loaded once and
+	each room plays on a copy of it. Lines sent during one pass of the loop are written together
+	at the end of it, one write per connection.
+
+	Bids and card picks are sealed, every seat is asked at once and may answer in any order. With
+	-sealed each of these phases has a deadline, and a seat that has not moved by then (or is not
+	connected) is given SealedMoves.defaultMove(), so a round waits on its slowest player at most
+	that long. Every deadline is the same time after its phase began, so they come due in the order
+	they were set and a plain queue keeps them sorted.
+
+	Client to server, one command per line (territories by id or by name):
+		ROOMS									Lists rooms, ended by END
+		CREATE room seats [crowns to win]		Makes a room for 2 to 6 players
+		JOIN room name							Takes a seat, or takes back a seat left with that name
+		SHOW									Players, your cards and every army, ended by END
+		QUIT
+		BID amount
+		PICK card card
+		START territory
+		TAX
+		SPEND DONE | SPEND territory foot archer cavalry siege [CASTLE]
+		EXPAND PASS | EXPAND from to foot archer cavalry siege [split-to foot archer cavalry siege]
+		MANEUVER PASS | MANEUVER from to foot archer cavalry siege
+		FORTIFY PASS | FORTIFY territory
+		SIEGE PASS | SIEGE from to
+
+	Server to client:
+		HELLO version
+		OK | ERROR reason
+		SEATED seat								Your seat in the room
+		JOINED seat name | LEFT seat
+		GAME name name ...						The room is full and the game has begun
+		MOVE BID money | MOVE PICK cards... | MOVE START ids... | MOVE SETUP
+		MOVE CARD card | MOVE SPEND money | MOVE FORTIFY | MOVE SIEGE
+												Your move, what it is waiting on
+		DID seat command						A move was made, in the commands above with ids
+												(sealed bids and picks without their values)
+		ROUND round battles						A round began, after the battles that ended the last
+		OVER seat name							The game is over
+		TIMEOUT seat							The seat ran out of time for a bid or pick, the
+												DID that follows is the move made for it
+*/
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+public class GameServer implements Runnable {
+	public static final int VERSION = 1;
+	private static final int MAX_LINE = 1024;
+
+	private Board board;
+	private int[] cards = {1,1,2,3,3,4,5,5};
+	private Selector selector;
+	private ServerSocketChannel server;
+	private volatile boolean running;
+
+	private HashMap<String, Room> rooms = new HashMap<String, Room>();
+	private ArrayList<Connection> dirty = new ArrayList<Connection>();		// Have lines to write
+	private int connections;
+
+	private long sealedTime;								// Nanoseconds for a bid or pick, 0 waits forever
+	private ArrayDeque<Timer> timers = new ArrayDeque<Timer>();		// By deadline, some out of date
+
+	public static void main(String[] args) throws IOException {
+		int port = 7777;
+		String boardPath = "risk_eu_board.txt";
+		long sealed = 0;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "-port": port = Integer.parseInt(args[i + 1]); break;
+				case "-board": boardPath = args[i + 1]; break;
+				case "-sealed": sealed = Long.parseLong(args[i + 1]); break;
+				default:
+					System.out.println("Usage: java GameServer [-port N] [-board path] [-sealed ms]");
+					return;
+			}
+		}
+
+		GameServer s = new GameServer(port, new Board(boardPath));
+		s.setSealedTime(sealed);
+		System.out.println("Listening on port " + s.getPort());
+		s.run();
+	}
+
+	// Binds the port (0 picks a free one), run() then serves until stop()
+	public GameServer(int port, Board board) throws IOException {
+		this.board = board;
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port), 4096);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	// Time every seat has for a bid or for picking cards, 0 (the default) waits for them however long
+	public void setSealedTime(long millis) {
+		sealedTime = millis * 1000000L;
+	}
+
+	// Stops the selector loop from any thread
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/*
+		Selector loop
+	*/
+	public void run() {
+		try {
+			while (running) {
+				// Wakes for the next deadline
+				if (timers.isEmpty()) {
+					selector.select();
+				} else {
+					selector.select(Math.max(1, (timers.peek().at - System.nanoTime() + 999999) / 1000000));
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					try {
+						if (!key.isValid()) continue;
+
+						if (key.isAcceptable()) accept();
+						if (key.isValid() && key.isReadable()) read(key);
+						if (key.isValid() && key.isWritable()) write(key);
+					} catch (IOException e) {
+						close((Connection) key.attachment());
+					}
+				}
+
+				expire();
+
+				for (int i = 0; i < dirty.size(); i++) {
+					Connection c = dirty.get(i);
+					c.dirty = false;
+
+					try {
+						if (c.ch.isOpen()) flush(c);
+					} catch (IOException e) {
+						close(c);
+					}
+				}
+
+				dirty.clear();
+			}
+		} catch (IOException e) {
+			System.out.println("The server stopped: " + e.getMessage());
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				} catch (IOException e) {
+					// Closing anyway
+				}
+			}
+
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// Closing anyway
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel ch;
+
+		while ((ch = server.accept()) != null) {
+			ch.configureBlocking(false);
+			ch.socket().setTcpNoDelay(true);
+
+			Connection c = new Connection(ch);
+			c.key = ch.register(selector, SelectionKey.OP_READ, c);
+			connections++;
+
+			send(c, "HELLO " + VERSION);
+		}
+	}
+
+	// Reads what has arrived and handles every whole line in it
+	private void read(SelectionKey key) throws IOException {
+		Connection c = (Connection) key.attachment();
+
+		if (c.ch.read(c.in) < 0) {
+			close(c);
+			return;
+		}
+
+		int start = 0;
+		byte[] buf = c.in.array();
+
+		for (int i = 0; i < c.in.position(); i++) {
+			if (buf[i] != '\n') continue;
+
+			int end = i > start && buf[i - 1] == '\r' ? i - 1 : i;
+			handle(c, new String(buf, start, end - start, StandardCharsets.UTF_8));
+			start = i + 1;
+
+			if (!c.ch.isOpen()) return;
+		}
+
+		// Keep the unfinished line
+		c.in.flip();
+		c.in.position(start);
+		c.in.compact();
+
+		if (!c.in.hasRemaining()) {
+			send(c, "ERROR Line too long");
+			flush(c);
+			close(c);
+		}
+	}
+
+	private void write(SelectionKey key) throws IOException {
+		Connection c = (Connection) key.attachment();
+		flush(c);
+	}
+
+	// Writes what the socket takes now, the selector is asked to wait for room for the rest
+	private void flush(Connection c) throws IOException {
+		c.out.flip();
+		c.ch.write(c.out);
+		c.out.compact();
+
+		int ops = c.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (c.key.interestOps() != ops) c.key.interestOps(ops);
+	}
+
+	private void send(Connection c, String line) {
+		if (!c.ch.isOpen()) return;
+
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+
+		if (c.out.remaining() < bytes.length) {
+			ByteBuffer grown = ByteBuffer.allocate((c.out.capacity() + bytes.length) * 2);
+			c.out.flip();
+			grown.put(c.out);
+			c.out = grown;
+		}
+
+		c.out.put(bytes);
+
+		if (!c.dirty) {
+			c.dirty = true;
+			dirty.add(c);
+		}
+	}
+
+	private void close(Connection c) {
+		if (c == null || !c.ch.isOpen()) return;
+
+		try {
+			c.ch.close();
+		} catch (IOException e) {
+			// Closed anyway
+		}
+
+		connections--;
+		leave(c);
+	}
+
+	/*
+		Commands
+	*/
+	private void handle(Connection c, String line) {
+		String[] words = line.trim().split("\\s+");
+		if (words[0].isEmpty()) return;
+
+		String command = words[0].toUpperCase();
+
+		switch (command) {
+			case "ROOMS":
+				for (Room r : rooms.values()) {
+					send(c, "ROOM " + r.name + " " + r.seated() + "/" + r.names.length + (r.engine != null ? " playing" : " waiting"));
+				}
+				send(c, "END");
+				return;
+
+			case "CREATE":
+				create(c, words);
+				return;
+
+			case "JOIN":
+				join(c, words);
+				return;
+
+			case "SHOW":
+				show(c);
+				return;
+
+			case "QUIT":
+				close(c);
+				return;
+
+			default:
+				move(c, words);
+		}
+	}
+
+	private void create(Connection c, String[] words) {
+		try {
+			if (words.length < 3) throw new IllegalArgumentException("CREATE room seats [crowns to win]");
+			if (rooms.containsKey(words[1])) throw new IllegalArgumentException("There is already a room called " + words[1]);
+
+			int seats = Integer.parseInt(words[2]);
+			int win = words.length > 3 ? Integer.parseInt(words[3]) : -1;
+
+			if (seats < 2 || seats > 6) throw new IllegalArgumentException("Rooms have 2 to 6 seats");
+			if (words.length > 3 && win < 1) throw new IllegalArgumentException("At least one crown is needed to win");
+
+			rooms.put(words[1], new Room(words[1], seats, win));
+			send(c, "OK");
+		} catch (NumberFormatException e) {
+			send(c, "ERROR Bad number");
+		} catch (IllegalArgumentException e) {
+			send(c, "ERROR " + e.getMessage());
+		}
+	}
+
+	private void join(Connection c, String[] words) {
+		if (words.length < 3) {
+			send(c, "ERROR JOIN room name");
+			return;
+		}
+
+		Room r = rooms.get(words[1]);
+		String name = words[2];
+
+		if (r == null) {
+			send(c, "ERROR There is no room called " + words[1]);
+			return;
+		}
+
+		if (c.room != null) {
+			send(c, "ERROR You already have a seat");
+			return;
+		}
+
+		// A seat left with this name is taken back, otherwise the first free one before the game
+		int seat = -1;
+
+		for (int i = 0; i < r.names.length && seat < 0; i++) {
+			if (r.conns[i] == null && name.equals(r.names[i])) seat = i;
+		}
+
+		for (int i = 0; i < r.names.length && seat < 0; i++) {
+			if (name.equals(r.names[i])) {
+				send(c, "ERROR " + name + " is taken");
+				return;
+			}
+
+			if (r.engine == null && r.names[i] == null) seat = i;
+		}
+
+		if (seat < 0) {
+			send(c, "ERROR The room is full");
+			return;
+		}
+
+		r.names[seat] = name;
+		r.conns[seat] = c;
+		c.room = r;
+		c.seat = seat;
+
+		send(c, "SEATED " + seat);
+		broadcast(r, "JOINED " + seat + " " + name);
+
+		if (r.engine != null) {
+			// Back in a game under way
+			send(c, gameLine(r));
+			prompt(r, seat);
+		} else if (r.seated() == r.names.length) {
+			begin(r);
+		}
+	}
+
+	// A connection is gone, its seat stays for the name to come back to once the game began
+	private void leave(Connection c) {
+		Room r = c.room;
+		if (r == null) return;
+
+		r.conns[c.seat] = null;
+		if (r.engine == null) r.names[c.seat] = null;
+
+		broadcast(r, "LEFT " + c.seat);
+		c.room = null;
+
+		boolean empty = true;
+		for (int i = 0; i < r.conns.length; i++) empty &= r.conns[i] == null;
+
+		if (empty && (r.engine == null || r.engine.isOver())) rooms.remove(r.name);
+	}
+
+	private void begin(Room r) {
+		r.engine = new GameEngine(r.names.clone(), board.copy(), cards, new SeededDice());
+		if (r.winCrownCount > 0) r.engine.setWinCrownCount(r.winCrownCount);
+
+		broadcast(r, gameLine(r));
+		prompt(r);
+	}
+
+	private static String gameLine(Room r) {
+		return "GAME " + String.join(" ", r.names);
+	}
+
+	// Players, the player's own cards and every army on the board
+	private void show(Connection c) {
+		Room r = c.room;
+
+		if (r == null || r.engine == null) {
+			send(c, "ERROR No game has begun");
+			return;
+		}
+
+		GameEngine g = r.engine;
+
+		for (int i = 0; i < r.names.length; i++) {
+			Player p = g.getPlayer(i);
+			send(c, "PLAYER " + i + " " + p.getName() + " money " + p.getMoney() + " crowns " + p.getCrowns());
+		}
+
+		send(c, "CARDS " + join(g.getPlayer(c.seat).getCards()));
+
+		Territory[] terrs = g.getBoard().getTerritories();
+
+		for (int i = 0; i < terrs.length; i++) {
+			if (terrs[i].getDef() == null) continue;
+
+			send(c, "TERRITORY " + i + " " + terrs[i].getName() + " castle " + (terrs[i].hasCastle() ? 1 : 0)
+				+ " defender " + army(g, terrs[i].getDef()) + " attacker " + army(g, terrs[i].getAtk()));
+		}
+
+		send(c, "END");
+	}
+
+	private static String army(GameEngine g, Army a) {
+		if (a == null) return "-1 0 0 0 0";
+		return g.getPlayerIndex(a.getOwner()) + " " + a.getFoot() + " " + a.getArcher() + " " + a.getCavalry() + " " + a.getSiege();
+	}
+
+	/*
+		Moves
+	*/
+	private void move(Connection c, String[] words) {
+		Room r = c.room;
+
+		if (r == null || r.engine == null) {
+			send(c, "ERROR No game has begun");
+			return;
+		}
+
+		GameEngine g = r.engine;
+		Action a;
+
+		try {
+			a = parse(g.getPlayer(c.seat), g.getBoard(), words);
+		} catch (NumberFormatException e) {
+			send(c, "ERROR Bad number");
+			return;
+		} catch (IllegalArgumentException e) {
+			send(c, "ERROR " + e.getMessage());
+			return;
+		}
+
+		int round = g.getRound();
+
+		if (!g.apply(a)) {
+			send(c, "ERROR " + g.getError());
+			return;
+		}
+
+		send(c, "OK");
+		moved(r, c.seat, a, round);
+	}
+
+	// Tells the room about a move made in round, then whoever it waits on next
+	private void moved(Room r, int seat, Action a, int round) {
+		GameEngine g = r.engine;
+		broadcast(r, "DID " + seat + " " + describe(a, true));
+
+		if (g.getRound() != round) broadcast(r, "ROUND " + g.getRound() + " " + (round == 0 ? 0 : g.getBattleCount()));
+
+		if (g.isOver()) {
+			broadcast(r, "OVER " + g.getPlayerIndex(g.getWinner()) + " " + g.getWinner().getName());
+		} else {
+			prompt(r);
+		}
+	}
+
+	/*
+		Deadlines
+	*/
+	// Makes the default move for every seat still to bid or pick in rooms whose deadline has passed
+	private void expire() {
+		long now = System.nanoTime();
+
+		while (!timers.isEmpty() && timers.peek().at - now <= 0) {
+			Timer t = timers.poll();
+			Room r = t.room;
+
+			// Out of date once the phase is over or a newer deadline was set
+			if (r.deadline != t.at || rooms.get(r.name) != r) continue;
+			r.deadline = 0;
+
+			GameEngine g = r.engine;
+			int round = g.getRound();
+
+			for (int seat = 0; seat < r.names.length && !g.isOver(); seat++) {
+				if (g.getPhase() != GameEngine.BID && g.getPhase() != GameEngine.PICK) break;
+
+				Player p = g.getPlayer(seat);
+				if (g.getPhase() == GameEngine.BID ? g.hasBid(p) : g.hasPicked(p)) continue;
+
+				Action a = SealedMoves.defaultMove(g, p);
+				if (!g.apply(a)) continue;
+
+				broadcast(r, "TIMEOUT " + seat);
+				moved(r, seat, a, round);
+				round = g.getRound();
+			}
+		}
+	}
+
+	/*
+		Turns a command into an action for the player
+		Throws IllegalArgumentException (or NumberFormatException) for commands that are not moves
+	*/
+	public static Action parse(Player p, Board brd, String[] words) {
+		String command = words[0].toUpperCase();
+		boolean pass = words.length > 1 && (words[1].equalsIgnoreCase("PASS") || words[1].equalsIgnoreCase("DONE"));
+
+		switch (command) {
+			case "BID":
+				need(words, 2);
+				return new BidAction(p, Integer.parseInt(words[1]));
+
+			case "PICK":
+				need(words, 3);
+				return new PickCards(p, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+
+			case "START":
+				need(words, 2);
+				return new StartAction(p, territory(brd, words[1]));
+
+			case "TAX":
+				return new TaxAction(p);
+
+			case "SPEND":
+				if (pass) return new SpendAction(p);
+
+				need(words, 6);
+				return new SpendAction(p, territory(brd, words[1]), units(words, 2), words.length > 6 && words[6].equalsIgnoreCase("CASTLE"));
+
+			case "EXPAND":
+				if (pass) return new ExpandAction(p);
+
+				need(words, 7);
+				if (words.length < 12) return new ExpandAction(p, territory(brd, words[1]), territory(brd, words[2]), units(words, 3));
+
+				return new ExpandAction(p, territory(brd, words[1]), territory(brd, words[2]), units(words, 3),
+					territory(brd, words[7]), units(words, 8));
+
+			case "MANEUVER":
+				if (pass) return new ManeuverAction(p);
+
+				need(words, 7);
+				return new ManeuverAction(p, territory(brd, words[1]), territory(brd, words[2]), units(words, 3));
+
+			case "FORTIFY":
+				if (pass) return new FortifyAction(p, null);
+
+				need(words, 2);
+				return new FortifyAction(p, territory(brd, words[1]));
+
+			case "SIEGE":
+				if (pass) return new SiegeAction(p, null, null);
+
+				need(words, 3);
+				return new SiegeAction(p, territory(brd, words[1]), territory(brd, words[2]));
+
+			default:
+				throw new IllegalArgumentException("Unknown command " + words[0]);
+		}
+	}
+
+	private static void need(String[] words, int count) {
+		if (words.length < count) throw new IllegalArgumentException(words[0].toUpperCase() + " needs " + (count - 1) + " values");
+	}
+
+	private static Territory territory(Board brd, String word) {
+		Territory t;
+
+		if (Character.isDigit(word.charAt(0))) {
+			int id = Integer.parseInt(word);
+			t = id < brd.getTerritoryCount() ? brd.getTerritory(id) : null;
+		} else {
+			t = brd.getTerritory(word);
+		}
+
+		if (t == null) throw new IllegalArgumentException("There is no territory " + word);
+		return t;
+	}
+
+	private static int[] units(String[] words, int from) {
+		int[] out = new int[4];
+		for (int i = 0; i < 4; i++) out[i] = Integer.parseInt(words[from + i]);
+
+		return out;
+	}
+
+	// An action as a command with territory ids, sealed values are left out unless asked for
+	public static String describe(Action a, boolean sealed) {
+		switch (a.getType()) {
+			case Action.BID:
+				return sealed ? "BID" : "BID " + ((BidAction) a).getAmount();
+
+			case Action.PICK:
+				PickCards pick = (PickCards) a;
+				return sealed ? "PICK" : "PICK " + pick.getFirst() + " " + pick.getSecond();
+
+			case Action.START:
+				return "START " + ((StartAction) a).getLocation().getId();
+
+			case Action.TAX:
+				return "TAX";
+
+			case Action.SPEND:
+				SpendAction spend = (SpendAction) a;
+				if (spend.isDone()) return "SPEND DONE";
+				return "SPEND " + spend.getLocation().getId() + " " + join(spend.getUnits()) + (spend.hasCastle() ? " CASTLE" : "");
+
+			case Action.EXPAND:
+				ExpandAction expand = (ExpandAction) a;
+				if (expand.isPass()) return "EXPAND PASS";
+
+				String out = "EXPAND " + expand.getFrom().getId() + " " + expand.getTo().getId() + " " + join(expand.getUnits());
+				if (expand.isSplit()) out += " " + expand.getSplitTo().getId() + " " + join(expand.getSplitUnits());
+				return out;
+
+			case Action.MANEUVER:
+				ManeuverAction maneuver = (ManeuverAction) a;
+				if (maneuver.isPass()) return "MANEUVER PASS";
+				return "MANEUVER " + maneuver.getFrom().getId() + " " + maneuver.getTo().getId() + " " + join(maneuver.getUnits());
+
+			case Action.FORTIFY:
+				FortifyAction fortify = (FortifyAction) a;
+				return fortify.isPass() ? "FORTIFY PASS" : "FORTIFY " + fortify.getLocation().getId();
+
+			default:
+				SiegeAction siege = (SiegeAction) a;
+				return siege.isPass() ? "SIEGE PASS" : "SIEGE " + siege.getFrom().getId() + " " + siege.getTo().getId();
+		}
+	}
+
+	private static String join(int[] values) {
+		StringBuilder out = new StringBuilder();
+
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) out.append(' ');
+			out.append(values[i]);
+		}
+
+		return out.toString();
+	}
+
+	/*
+		Prompts
+	*/
+	// Tells whoever the game now waits on, sealed phases are announced once to everyone
+	private void prompt(Room r) {
+		GameEngine g = r.engine;
+
+		if (g.getPhase() == GameEngine.BID || g.getPhase() == GameEngine.PICK) {
+			if (r.promptedPhase == g.getPhase() && r.promptedRound == g.getRound()) return;
+
+			r.promptedPhase = g.getPhase();
+			r.promptedRound = g.getRound();
+
+			if (sealedTime > 0) {
+				r.deadline = System.nanoTime() + sealedTime;
+				timers.add(new Timer(r, r.deadline));
+			}
+
+			for (int i = 0; i < r.names.length; i++) prompt(r, i);
+		} else if (g.getCurrentPlayer() != null) {
+			r.deadline = 0;
+			prompt(r, g.getPlayerIndex(g.getCurrentPlayer()));
+		}
+	}
+
+	private void prompt(Room r, int seat) {
+		Connection c = r.conns[seat];
+		GameEngine g = r.engine;
+		Player p = g.getPlayer(seat);
+
+		if (c == null || g.isOver()) return;
+
+		switch (g.getPhase()) {
+			case GameEngine.BID:
+				if (!g.hasBid(p)) send(c, "MOVE BID " + p.getMoney());
+				return;
+
+			case GameEngine.PICK:
+				if (!g.hasPicked(p)) send(c, "MOVE PICK " + join(p.getCards()));
+				return;
+
+			default:
+				if (g.getCurrentPlayer() != p) return;
+		}
+
+		if (g.getPhase() == GameEngine.START) {
+			if (g.getStep() == GameEngine.SETUP) {
+				send(c, "MOVE SETUP");
+				return;
+			}
+
+			StringBuilder open = new StringBuilder("MOVE START");
+			Territory[] terrs = g.getBoard().getTerritories();
+
+			for (int i = 0; i < terrs.length; i++) {
+				if (g.canStartAt(terrs[i])) open.append(' ').append(i);
+			}
+
+			send(c, open.toString());
+			return;
+		}
+
+		switch (g.getStep()) {
+			case GameEngine.SPENDING: send(c, "MOVE SPEND " + p.getMoney()); break;
+			case GameEngine.FORTIFYING: send(c, "MOVE FORTIFY"); break;
+			case GameEngine.SIEGING: send(c, "MOVE SIEGE"); break;
+			default: send(c, "MOVE CARD " + g.getCurrentCard());
+		}
+	}
+
+	private void broadcast(Room r, String line) {
+		for (int i = 0; i < r.conns.length; i++) {
+			if (r.conns[i] != null) send(r.conns[i], line);
+		}
+	}
+
+	/*
+		Getters
+	*/
+	public int getRoomCount() {
+		return rooms.size();
+	}
+
+	public int getConnectionCount() {
+		return connections;
+	}
+
+	/*
+		A client connection, its buffers and its seat
+	*/
+	private static class Connection {
+		SocketChannel ch;
+		SelectionKey key;
+		ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+		ByteBuffer out = ByteBuffer.allocate(256);		// Waiting to be written
+		Room room;
+		int seat = -1;
+		boolean dirty;
+
+		Connection(SocketChannel ch) {
+			this.ch = ch;
+		}
+	}
+
+	/*
+		A room's deadline as it was when set
+	*/
+	private static class Timer {
+		Room room;
+		long at;
+
+		Timer(Room room, long at) {
+			this.room = room;
+			this.at = at;
+		}
+	}
+
+	/*
+		A game and its seats, the engine is made once every seat is taken
+	*/
+	private static class Room {
+		String name;
+		String[] names;							// By seat, null for a free seat
+		Connection[] conns;						// By seat, null while nobody is connected there
+		GameEngine engine;
+		int winCrownCount;						// -1 keeps the engine's default
+		int promptedPhase = -1, promptedRound = -1;
+		long deadline;							// For the sealed phase under way, 0 for none
+
+		Room(String name, int seats, int winCrownCount) {
+			this.name = name;
+			this.winCrownCount = winCrownCount;
+			names = new String[seats];
+			conns = new Connection[seats];
+		}
+
+		int seated() {
+			int count = 0;
+			for (int i = 0; i < conns.length; i++) if (conns[i] != null) count++;
+
+			return count;
+		}
+	}
+}
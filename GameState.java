@@ -0,0 +1,98 @@
+/*
+	A flat copy of everything that changes during a game, in primitive arrays
+
+	Territories are indexed by id and players by their index in the order they were named, so a
+	state holds no references into the object graph and can be kept, reused and restored freely.
+	GameEngine.snapshot() fills one and GameEngine.restore() puts it back, both in O(board size).
+	Restoring only touches territories that differ, so going back to a nearby position is cheap.
+
+	The engine also uses partial states as undo records: the engine and players in full, and
+	only the territories an action touched (listed in touched).
+
+	Per territory:	defender and attacker (player index, -1 for none), their units, castle
+	Per player:		money, unit totals, draw / discard / active cards, the territories they are on in order
+	Engine:			phase, step, round, turn, whose move it is, the card in play, first player,
+					winner, turn order, sealed bids and picks, castles built, last action results
+	Dice are not part of the state.
+*/
+
+public class GameState {
+	// Engine
+	int phase, step, round, turn, startIndex, current, currentCard, firstPlayer, winner;
+	int totalCastles, lastTax, lastFortify, lastHits, battleCount;
+	int[] order;								// Turn order as player indices
+	int[] bids;
+	boolean[] picked;
+
+	// Players
+	int[] money;
+	int[] unitTotals;							// Four per player
+	int[] cards;								// cardStride per player, see Player.getCardState()
+	int cardStride;
+	int[] owned;								// Territory ids, territoryCount per player
+	int[] ownedCount;
+
+	// Territories
+	int[] defOwner, atkOwner;
+	int[] defUnits, atkUnits;					// Four per territory
+	boolean[] castle;
+
+	// Territories held by a partial state
+	boolean full;
+	int[] touched;
+	int touchedCount;
+
+	GameState(int playerCount, int territoryCount, int cardStride) {
+		order = new int[playerCount];
+		bids = new int[playerCount];
+		picked = new boolean[playerCount];
+
+		money = new int[playerCount];
+		unitTotals = new int[playerCount * 4];
+		this.cardStride = cardStride;
+		cards = new int[playerCount * cardStride];
+		owned = new int[playerCount * territoryCount];
+		ownedCount = new int[playerCount];
+
+		defOwner = new int[territoryCount];
+		atkOwner = new int[territoryCount];
+		defUnits = new int[territoryCount * 4];
+		atkUnits = new int[territoryCount * 4];
+		castle = new boolean[territoryCount];
+		touched = new int[territoryCount];
+	}
+
+	// Whether this state fits a game of the given size
+	boolean fits(int playerCount, int territoryCount, int cardStride) {
+		return order.length == playerCount && castle.length == territoryCount && this.cardStride == cardStride;
+	}
+
+	/*
+		Getters
+	*/
+	public int getPhase() {
+		return phase;
+	}
+
+	public int getRound() {
+		return round;
+	}
+
+	public int getTurn() {
+		return turn;
+	}
+
+	// Money of a player by the index they were named at
+	public int getMoney(int player) {
+		return money[player];
+	}
+
+	// Defender of a territory as a player index, -1 if nobody
+	public int getDefender(int id) {
+		return defOwner[id];
+	}
+
+	public int getAttacker(int id) {
+		return atkOwner[id];
+	}
+}
@@ -0,0 +1,308 @@
+/*
+	A greedy bot that plays whatever move its Evaluator expects to gain the most right now
+
+	Moves come from a coarse MoveGenerator and are scored one by one by estimating what they
+	change in the evaluation, without playing them:
+		- Expanding into empty land gains the territory, attacking weighs the territory and the
+		  enemy army against the units sent by the odds of winning: exact (BattleOdds) for small
+		  battles, looked up if an OddsTable is set, otherwise estimated from army values so one
+		  large battle cannot use up the budget
+		- Moving units away raises the exposure of the source, reinforcing lowers it
+		- Spending and fortifying turn money into army value where exposure is highest
+		- Siege fire is worth the units it is expected to destroy
+		- Cards are picked by the best thing each could do in the current position
+	Scoring stops at the deadline and the best move so far is played. Passes are generated
+	first, so there is always a legal move to fall back on.
+
+	An instance keeps scratch buffers and must not be shared across threads.
+*/
+import java.util.List;
+
+public class HeuristicBot implements Bot {
+	private Evaluator eval;
+	private double bidShare;				// Share of its money the bot bids for first player
+
+	private MoveGenerator gen;
+	private GameEngine genEngine;			// Engine the generator was made for
+	private BattleOdds odds = new BattleOdds();
+	private OddsTable table;				// Optional precomputed odds
+	private long deadline;
+
+	// Battles with more (attackers + 1) * (defenders + 1) than this are estimated
+	private static final int EXACT_LIMIT = 150;
+
+	private int[] att = new int[4], def = new int[4];
+
+	public HeuristicBot(Evaluator eval, double bidShare) {
+		this.eval = eval;
+		this.bidShare = bidShare;
+	}
+
+	public HeuristicBot() {
+		this(new Evaluator(), 0.4);
+	}
+
+	public Action choose(GameEngine engine, Player p, long deadline) {
+		this.deadline = deadline;
+
+		if (engine != genEngine) {
+			gen = new MoveGenerator(engine);
+			gen.setCoarse(true);
+			genEngine = engine;
+		}
+
+		gen.reset(p);
+
+		Action best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+
+		while (gen.next()) {
+			double score = score(engine, p);
+
+			if (best == null || score > bestScore) {
+				best = gen.toAction();
+				bestScore = score;
+			}
+
+			if (System.nanoTime() >= deadline) break;
+		}
+
+		return best;
+	}
+
+	/*
+		Estimated gain of the generator's current move
+	*/
+	private double score(GameEngine engine, Player p) {
+		switch (gen.getType()) {
+			case Action.BID:
+				// Closest to the share of money the bot is willing to pay
+				return -Math.abs(gen.getAmount() - bidShare * p.getMoney());
+
+			case Action.PICK:
+				return 1.01 * cardScore(engine, p, gen.getFirstCard()) + cardScore(engine, p, gen.getSecondCard());
+
+			case Action.START:
+				return startScore(p, gen.getTo());
+
+			case Action.TAX:
+				return eval.getMoneyWeight() * p.getTaxValue();
+
+			case Action.SPEND:
+				return gen.isPass() ? 0 : spendScore(engine, p);
+
+			case Action.EXPAND:
+				if (gen.isPass()) return 0;
+				return expandScore(p, gen.getTo(), gen.getUnits()) + expandScore(p, gen.getSplitTo(), gen.getSplitUnits())
+					- leaveCost(p, gen.getFrom(), value(gen.getUnits()) + (gen.getSplitTo() == null ? 0 : value(gen.getSplitUnits())));
+
+			case Action.MANEUVER:
+				return maneuverScore(p);
+
+			case Action.FORTIFY:
+				if (gen.isPass()) return 0;
+				int added = Math.min(gen.getTo().hasCastle() ? 4 : 3, engine.getMaxUnits(0) - p.getTotalFoot());
+				return reinforceScore(p, gen.getTo(), added);
+
+			default:
+				return gen.isPass() ? 0 : siegeScore(gen.getFrom(), gen.getTo());
+		}
+	}
+
+	// A start location is worth itself and half of the empty land around it
+	private double startScore(Player p, Territory t) {
+		double out = eval.territoryValue(t);
+
+		for (int i = 0; i < t.getConnectionCount(); i++) {
+			Territory n = t.getConnection(i);
+			if (n.getDef() == null) out += eval.territoryValue(n) / 2;
+		}
+
+		return out - eval.getExposureWeight() * eval.pressure(p, t);
+	}
+
+	/*
+		Expanding units into a territory
+	*/
+	private double expandScore(Player p, Territory to, int[] units) {
+		if (to == null) return 0;
+
+		int sent = value(units);
+
+		if (to.getDef() == null) {
+			// Empty, cities also pay their value on arrival
+			double gain = eval.territoryValue(to) + (to.hasCrown() ? eval.getMoneyWeight() * to.getValue() : 0);
+			return gain - eval.getExposureWeight() * eval.exposure(p, to, sent);
+		}
+
+		// Occupied, a battle at the end of the round
+		copy(units, att);
+		copy(to.getDef(), def);
+
+		double win = attackerWin(to.hasCastle());
+		return win * (eval.territoryValue(to) + eval.getArmyWeight() * to.getDef().totalValue())
+			- (1 - win) * eval.getArmyWeight() * sent;
+	}
+
+	// Extra exposure of a territory when units worth sent leave it
+	private double leaveCost(Player p, Territory from, int sent) {
+		int held = from.getDef().totalValue();
+		return eval.getExposureWeight() * (eval.exposure(p, from, held - sent) - eval.exposure(p, from, held));
+	}
+
+	/*
+		Maneuvering units between the player's territories
+	*/
+	private double maneuverScore(Player p) {
+		Territory from = gen.getFrom(), to = gen.getTo();
+		int sent = value(gen.getUnits());
+		double gain;
+
+		if (p.isDefending(to)) {
+			// Army value only moves, what changes is exposure
+			int held = to.getDef().totalValue();
+			gain = eval.getExposureWeight() * (eval.exposure(p, to, held) - eval.exposure(p, to, held + sent));
+		} else {
+			// Reinforcing an attack, worth the better odds
+			copy(to.getAtk(), att);
+			copy(to.getDef(), def);
+			double before = attackerWin(to.hasCastle());
+
+			for (int i = 0; i < 4; i++) att[i] += gen.getUnits()[i];
+
+			gain = (attackerWin(to.hasCastle()) - before) * (eval.territoryValue(to) + eval.getArmyWeight() * to.getDef().totalValue());
+		}
+
+		return gain - leaveCost(p, from, sent);
+	}
+
+	/*
+		Buying units, money becomes army where it lowers exposure the most
+	*/
+	private double spendScore(GameEngine engine, Player p) {
+		int[] units = gen.getUnits();
+		int bought = value(units), cost = 0;
+
+		for (int i = 0; i < 4; i++) cost += units[i] * engine.getUnitValue(i);
+
+		double out = reinforceScore(p, gen.getTo(), bought) - eval.getMoneyWeight() * cost;
+
+		if (gen.hasCastle()) {
+			// A castle doubles the defence against the enemies around it
+			Territory t = gen.getTo();
+			out += eval.getExposureWeight() * eval.pressure(p, t) / 2 - eval.getMoneyWeight() * engine.getUnitValue(4);
+		}
+
+		return out;
+	}
+
+	// Adding army value to a territory the player defends
+	private double reinforceScore(Player p, Territory t, int added) {
+		int held = t.getDef().totalValue();
+		return eval.getArmyWeight() * added + eval.getExposureWeight() * (eval.exposure(p, t, held) - eval.exposure(p, t, held + added));
+	}
+
+	// Siege fire, two dice per weapon hitting on 3 or more, footmen die first
+	private double siegeScore(Territory from, Territory to) {
+		double hits = from.getDef().getSiege() * 2 * 4 / 6.0;
+		double out = eval.getArmyWeight() * Math.min(hits, to.getDef().getTotal());
+
+		// Wiping the army out frees the territory
+		if (hits >= to.getDef().getTotal()) out += eval.territoryValue(to) / 2;
+
+		return out;
+	}
+
+	/*
+		What a card could do in the current position
+	*/
+	private double cardScore(GameEngine engine, Player p, int card) {
+		if (card <= 2) {
+			// Tax now or turn the money into army
+			double out = Math.max(eval.getMoneyWeight() * p.getTaxValue(), (eval.getArmyWeight() - eval.getMoneyWeight()) * p.getMoney());
+			return card == 2 ? out + 1 : out;
+		}
+
+		// Best empty land in reach, the two best for a split
+		double best = 0, second = 0;
+		List<Territory> owned = p.getTerritories();
+
+		for (int i = 0; i < owned.size(); i++) {
+			Territory from = owned.get(i);
+			if (!engine.canMoveFrom(p, from)) continue;
+
+			for (int j = 0; j < from.getConnectionCount(); j++) {
+				Territory to = from.getConnection(j);
+				if (to.getDef() != null || !engine.canExpandTo(p, from, to, false)) continue;
+
+				double v = eval.territoryValue(to);
+
+				if (v > best) {
+					second = best;
+					best = v;
+				} else if (v > second) {
+					second = v;
+				}
+			}
+		}
+
+		double out = best;
+
+		if (card == 3) out += eval.getArmyWeight() * 3;
+		if (card == 4 && p.getTotalSiege() > 0) out += eval.getArmyWeight() * 2;
+		if (card == 5) out += second;
+
+		return out;
+	}
+
+	/*
+		Odds that att beats def
+		Exact when the battle is small and there is time left, from the table if there is one,
+		otherwise estimated from army values (castles count the defence one and a half times)
+	*/
+	private double attackerWin(boolean hasCastle) {
+		int attTotal = att[0] + att[1] + att[2] + att[3];
+		int defTotal = def[0] + def[1] + def[2] + def[3];
+
+		if (table != null) {
+			return table.getAttackerWin(att, def, hasCastle);
+		}
+
+		if ((attTotal + 1) * (defTotal + 1) <= EXACT_LIMIT && System.nanoTime() < deadline) {
+			odds.compute(att, def, hasCastle);
+			return odds.getAttackerWin();
+		}
+
+		double attValue = value(att), defValue = value(def) * (hasCastle ? 1.5 : 1);
+		return 1 / (1 + Math.exp(-4 * (attValue - defValue) / (attValue + defValue + 1)));
+	}
+
+	/*
+		Helpers
+	*/
+	// Value of a unit group, the same weights as Army.totalValue()
+	private static int value(int[] units) {
+		if (units == null) return 0;
+		return units[0] + units[1] * 2 + units[2] * 3 + units[3] * 10;
+	}
+
+	private static void copy(int[] units, int[] out) {
+		for (int i = 0; i < 4; i++) out[i] = units[i];
+	}
+
+	private static void copy(Army army, int[] out) {
+		out[0] = army.getFoot();
+		out[1] = army.getArcher();
+		out[2] = army.getCavalry();
+		out[3] = army.getSiege();
+	}
+
+	// Looks battle odds up instead of computing them
+	public void setOddsTable(OddsTable table) {
+		this.table = table;
+	}
+
+	public Evaluator getEvaluator() {
+		return eval;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+	Moves units between two territories the player is on, up to two spaces apart
+	A ManeuverAction without a source passes
+*/
+public class ManeuverAction extends Action {
+	private Territory from, to;
+	private int[] units;
+
+	public ManeuverAction(Player player, Territory from, Territory to, int[] units) {
+		super(player, MANEUVER);
+		this.from = from;
+		this.to = to;
+		this.units = units;
+	}
+
+	// Pass
+	public ManeuverAction(Player player) {
+		this(player, null, null, null);
+	}
+
+	public boolean isPass() {
+		return from == null;
+	}
+
+	public Territory getFrom() {
+		return from;
+	}
+
+	public Territory getTo() {
+		return to;
+	}
+
+	public int[] getUnits() {
+		return units;
+	}
+}
@@ -0,0 +1,450 @@
+/*
+	A Monte Carlo tree search bot
+
+	Each call searches the bot's moves from the current position until just before the deadline:
+		- Root parallelism: every worker grows its own tree on its own copy of the game with its
+		  own dice, restoring the copy from a GameState snapshot after each iteration. Root visit
+		  counts are summed by move across workers and the most visited move is played
+		- Only the bot's own decisions (bids, card picks, and every action of its turns) are tree
+		  nodes. Opponents play the heuristic policy in between, their sealed bids and picks are
+		  hidden from the copy and made again by the policy
+		- Dice make chance nodes. When dice are rolled between two of the bot's decisions (siege
+		  fire, the battles at the end of a round) the next level is keyed by the outcome, the
+		  Zobrist hash of the resulting position. Outcomes are widened progressively, an outcome
+		  past the limit ends the descent and is played out from there
+		- Leaves are played out by the heuristic policy until the battles of the round have been
+		  fought, then scored by the Evaluator against the best opponent (a won game scores 1).
+		  Scores are cached by position hash in a TranspositionTable shared by the workers, since
+		  playouts keep reaching the same positions
+	Selection is UCT over moves from a coarse MoveGenerator.
+
+	Nodes live in a fixed pool of parallel arrays per worker, allocated once and reused by every
+	search, so the tree puts no pressure on the garbage collector. Once the pool is full the tree
+	stops growing and the rest of the time goes into more playouts. Workers are not shared, an
+	instance can only run one search at a time.
+*/
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MctsBot implements Bot {
+	// UCT exploration, rewards are between 0 and 1
+	private static final double EXPLORE = 0.7;
+
+	// Evaluation lead over the best opponent that scores about 0.73
+	private static final double SCALE = 40;
+
+	// Actions in one playout or opponent sequence, a safeguard against stalled games
+	private static final int MAX_ACTIONS = 1000;
+
+	// Time kept back to merge the trees
+	private static final long MARGIN = 1000000;
+
+	private static final int MAX_DEPTH = 512;
+
+	private Evaluator eval;
+	private Worker[] workers;
+	private ExecutorService pool;
+	private HeuristicBot fallback;				// Plays when there was no time to search
+	private TranspositionTable table;			// Playout scores by position and player
+
+	/*
+		Constructors
+	*/
+	public MctsBot(Evaluator eval, int threads, int nodes, long seed) {
+		this.eval = eval;
+		fallback = new HeuristicBot(eval, 0.4);
+		table = new TranspositionTable(1 << 16);
+
+		SeededDice dice = new SeededDice(seed);
+		workers = new Worker[threads];
+
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(nodes, dice.split());
+		}
+
+		if (threads > 1) {
+			pool = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "mcts");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	public MctsBot(int threads, int nodes, long seed) {
+		this(new Evaluator(), threads, nodes, seed);
+	}
+
+	public MctsBot() {
+		this(Runtime.getRuntime().availableProcessors(), 1 << 16, System.nanoTime());
+	}
+
+	public Action choose(GameEngine engine, Player p, long deadline) {
+		int seat = indexOf(engine.getPlayers(), p);
+		long stop = deadline - MARGIN;
+
+		if (pool == null) {
+			workers[0].search(engine, seat, stop);
+		} else {
+			Future<?>[] running = new Future<?>[workers.length];
+
+			for (int i = 0; i < workers.length; i++) {
+				Worker w = workers[i];
+				running[i] = pool.submit(() -> w.search(engine, seat, stop));
+			}
+
+			try {
+				for (int i = 0; i < running.length; i++) running[i].get();
+			} catch (Exception e) {
+				throw new IllegalStateException("Search failed", e);
+			}
+		}
+
+		// Sum the root visits by move, the first worker's moves are the list to vote on
+		Worker lead = workers[0];
+		long bestMove = 0, bestUnits = 0, bestVisits = 0;
+
+		for (int c = lead.firstChild[0]; c >= 0; c = lead.nextSibling[c]) {
+			long total = 0;
+
+			for (int i = 0; i < workers.length; i++) {
+				total += workers[i].rootVisits(lead.move[c], lead.units[c]);
+			}
+
+			if (total > bestVisits) {
+				bestVisits = total;
+				bestMove = lead.move[c];
+				bestUnits = lead.units[c];
+			}
+		}
+
+		if (bestVisits == 0) return fallback.choose(engine, p, deadline);
+
+		return MoveGenerator.unpack(bestMove, bestUnits, p, engine.getBoard());
+	}
+
+	// Shares a table of scores, only between bots with the same evaluator weights
+	public void setTranspositionTable(TranspositionTable table) {
+		this.table = table;
+	}
+
+	// Stops the worker threads
+	public void shutdown() {
+		if (pool != null) pool.shutdown();
+	}
+
+	/*
+		Getters for the last search
+	*/
+	// Playouts by every worker
+	public long getIterations() {
+		long out = 0;
+		for (int i = 0; i < workers.length; i++) out += workers[i].iterations;
+		return out;
+	}
+
+	// Playout scores found in the transposition table
+	public long getTableHits() {
+		long out = 0;
+		for (int i = 0; i < workers.length; i++) out += workers[i].tableHits;
+		return out;
+	}
+
+	public int getNodeCount() {
+		int out = 0;
+		for (int i = 0; i < workers.length; i++) out += workers[i].count;
+		return out;
+	}
+
+	public Evaluator getEvaluator() {
+		return eval;
+	}
+
+	/*
+		One search thread's tree, game copy and dice
+	*/
+	private class Worker {
+		// Node pool, node 0 is the root
+		private int capacity, count;
+		private long[] move, units;				// Packed move into the node (MoveGenerator.packMove)
+		private long[] outcome;					// Position hash of a chance node's child
+		private int[] firstChild, nextSibling;
+		private int[] visits;
+		private double[] reward;
+		private boolean[] expanded;
+		private boolean[] chance;				// Children are outcomes rather than moves
+
+		private int[] path = new int[MAX_DEPTH];
+		private int pathLength;
+
+		private CountingDice dice;
+		private MoveGenerator gen;				// Coarse moves on this search's copy
+		private HeuristicBot policy = new HeuristicBot(eval, 0.4);
+		private long iterations, tableHits;
+
+		Worker(int capacity, DiceSource dice) {
+			this.capacity = capacity;
+			this.dice = new CountingDice(dice);
+
+			move = new long[capacity];
+			units = new long[capacity];
+			outcome = new long[capacity];
+			firstChild = new int[capacity];
+			nextSibling = new int[capacity];
+			visits = new int[capacity];
+			reward = new double[capacity];
+			expanded = new boolean[capacity];
+			chance = new boolean[capacity];
+		}
+
+		/*
+			Runs iterations on one copy of the game until stop, restoring it to the root between them
+		*/
+		void search(GameEngine engine, int seat, long stop) {
+			GameEngine g = engine.copy(dice, engine.getPlayers()[seat]);
+			GameState root = g.snapshot();
+			Player me = g.getPlayers()[seat];
+
+			gen = new MoveGenerator(g);
+			gen.setCoarse(true);
+
+			count = 0;
+			iterations = tableHits = 0;
+			alloc();
+
+			while (System.nanoTime() < stop) {
+				if (iterate(g, me, stop)) iterations++;
+				g.restore(root);
+			}
+		}
+
+		/*
+			Selection, expansion, playout and backup on one copy
+			Returns false if the deadline cut the playout short, nothing is backed up then
+		*/
+		private boolean iterate(GameEngine g, Player me, long stop) {
+			if (!advance(g, me, stop)) return false;
+
+			int node = 0;
+			pathLength = 0;
+			path[pathLength++] = 0;
+
+			while (!g.isOver() && pathLength < MAX_DEPTH - 1) {
+				if (!expanded[node] && !expand(node, me)) break;
+
+				int child = select(node);
+				if (child < 0) break;
+
+				long rolls = dice.count;
+
+				// The position can differ from the one the move was made for after opponents' dice
+				if (!g.apply(MoveGenerator.unpack(move[child], units[child], me, g.getBoard()))) break;
+				if (!advance(g, me, stop)) return false;
+
+				boolean rolled = dice.count != rolls, fresh = visits[child] == 0;
+				path[pathLength++] = child;
+
+				if (fresh) chance[child] = rolled;
+				if (chance[child] != rolled) break;
+
+				if (rolled) {
+					int next = outcomeChild(child, g.getHash());
+					if (next < 0) break;
+
+					path[pathLength++] = next;
+					fresh = visits[next] == 0;
+					child = next;
+				}
+
+				node = child;
+				if (fresh) break;
+			}
+
+			double r = playout(g, me, stop);
+			if (r < 0) return false;
+
+			for (int i = 0; i < pathLength; i++) {
+				visits[path[i]]++;
+				reward[path[i]] += r;
+			}
+
+			return true;
+		}
+
+		// Opponents play until it is me to act or the game is over
+		private boolean advance(GameEngine g, Player me, long stop) {
+			for (int n = 0; n < MAX_ACTIONS; n++) {
+				Player acting = g.getActingPlayer();
+				if (acting == null || acting == me) return true;
+
+				if (!g.apply(policy.choose(g, acting, stop))) return false;
+				if (System.nanoTime() >= stop) return false;
+			}
+
+			return false;
+		}
+
+		/*
+			Every player plays the policy until the round after the current one starts
+			Returns the reward for me, or -1 if the deadline came first
+		*/
+		private double playout(GameEngine g, Player me, long stop) {
+			int endRound = Math.max(g.getRound(), 1);
+
+			for (int n = 0; n < MAX_ACTIONS && !g.isOver() && g.getRound() <= endRound; n++) {
+				Player acting = g.getActingPlayer();
+
+				if (!g.apply(policy.choose(g, acting, stop))) break;
+				if (System.nanoTime() >= stop) return -1;
+			}
+
+			if (g.isOver()) return g.getWinner() == me ? 1 : 0;
+
+			long key = g.getHash() ^ Zobrist.key(Zobrist.VIEWER, indexOf(g.getPlayers(), me));
+			double cached = table.get(key, -1);
+
+			if (cached >= 0) {
+				tableHits++;
+				return cached;
+			}
+
+			double mine = eval.evaluate(me), best = Double.NEGATIVE_INFINITY;
+			Player[] players = g.getPlayers();
+
+			for (int i = 0; i < players.length; i++) {
+				if (players[i] != me) best = Math.max(best, eval.evaluate(players[i]));
+			}
+
+			double r = 1 / (1 + Math.exp((best - mine) / SCALE));
+			table.put(key, r);
+
+			return r;
+		}
+
+		/*
+			Node pool
+		*/
+		private int alloc() {
+			int n = count++;
+
+			move[n] = units[n] = outcome[n] = 0;
+			firstChild[n] = nextSibling[n] = -1;
+			visits[n] = 0;
+			reward[n] = 0;
+			expanded[n] = chance[n] = false;
+
+			return n;
+		}
+
+		// Adds a child for every move, false if the pool cannot hold them
+		private boolean expand(int node, Player me) {
+			gen.reset(me);
+
+			int start = count, last = -1;
+
+			while (gen.next()) {
+				if (count == capacity) {
+					count = start;
+					firstChild[node] = -1;
+					return false;
+				}
+
+				int c = alloc();
+				move[c] = gen.packMove();
+				units[c] = gen.packUnits();
+
+				if (last < 0) {
+					firstChild[node] = c;
+				} else {
+					nextSibling[last] = c;
+				}
+
+				last = c;
+			}
+
+			expanded[node] = true;
+			return true;
+		}
+
+		// First unvisited child, otherwise the best upper confidence bound
+		private int select(int node) {
+			double logVisits = Math.log(Math.max(1, visits[node])), bestScore = Double.NEGATIVE_INFINITY;
+			int best = -1;
+
+			for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+				if (visits[c] == 0) return c;
+
+				double score = reward[c] / visits[c] + EXPLORE * Math.sqrt(logVisits / visits[c]);
+
+				if (score > bestScore) {
+					bestScore = score;
+					best = c;
+				}
+			}
+
+			return best;
+		}
+
+		// Child of a chance node for an outcome, at most 1 + sqrt(visits) of them, -1 past that
+		private int outcomeChild(int node, long key) {
+			int children = 0, last = -1;
+
+			for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+				if (outcome[c] == key) return c;
+
+				children++;
+				last = c;
+			}
+
+			if (children >= 1 + (int) Math.sqrt(visits[node]) || count == capacity) return -1;
+
+			int c = alloc();
+			outcome[c] = key;
+
+			if (last < 0) {
+				firstChild[node] = c;
+			} else {
+				nextSibling[last] = c;
+			}
+
+			return c;
+		}
+
+		// Visits of the root child with this move
+		long rootVisits(long m, long u) {
+			if (count == 0) return 0;
+
+			for (int c = firstChild[0]; c >= 0; c = nextSibling[c]) {
+				if (move[c] == m && units[c] == u) return visits[c];
+			}
+
+			return 0;
+		}
+	}
+
+	private static int indexOf(Player[] arr, Player p) {
+		for (int i = 0; i < arr.length; i++) {
+			if (arr[i] == p) return i;
+		}
+
+		return -1;
+	}
+
+	/*
+		Dice that count their rolls, so the search can tell when chance was involved
+	*/
+	private static class CountingDice implements DiceSource {
+		private DiceSource dice;
+		private long count;
+
+		CountingDice(DiceSource dice) {
+			this.dice = dice;
+		}
+
+		public int roll() {
+			count++;
+			return dice.roll();
+		}
+	}
+}
@@ -0,0 +1,818 @@
+/*
+	Steps through every legal move for a player in a GameEngine's current state
+
+	A cursor: reset() for a player, then each next() moves on to the next legal move and
+	returns false when there are none left. The move is read through the getters and only
+	turned into an Action (the one allocation) when toAction() is called. Moves are only valid
+	until the engine changes.
+
+	Legality comes from the engine's rule checks so the two never disagree:
+		- Expand targets with the castle / siege rule, split expands on the SplitExpand card
+		- Maneuver destinations within two spaces
+		- Spend purchases within the unit limits, unit values and funds, with or without a castle
+		- Fortify targets and siege assault pairs
+	Passes (and finishing a spend) come first in their stage.
+
+	By default every way of splitting units is generated, which grows quickly with army size.
+	Coarse mode keeps a few representative unit choices instead:
+		- Moves send everything that can leave (the cheapest units stay) or half of it,
+		  a split sends half to each destination
+		- Spending buys as many of one unit type as it can, or a castle alone
+*/
+import java.util.List;
+
+public class MoveGenerator {
+	// Stages, a state is made of one or two of these in order
+	private static final int BIDS = 0;
+	private static final int PICKS = 1;
+	private static final int STARTS = 2;
+	private static final int TAXES = 3;
+	private static final int SPENDS = 4;
+	private static final int EXPANDS = 5;
+	private static final int MANEUVERS = 6;
+	private static final int FORTIFIES = 7;
+	private static final int SIEGES = 8;
+
+	private GameEngine engine;
+	private Board brd;
+	private boolean coarse;
+
+	private Player p;
+	private List<Territory> owned;
+	private int[] plan = new int[2];
+	private int planLength, planIndex;
+	private boolean entering;					// Set when a stage has not started yet
+	private boolean setup, splitAllowed;
+
+	// Current move
+	private int type;
+	private boolean pass;
+	private Territory from, to, splitTo;
+	private int[] units = new int[4], splitUnits = new int[4];
+	private boolean castle;
+	private int amount, first, second;
+
+	// Cursors
+	private int index, k, k2, preset;
+	private int[] hand = new int[16];
+	private int handSize, i1, i2;
+
+	// Units that can leave the source, what must stay (after a split) and what the first group left behind
+	private int[] have = new int[4], rest = new int[4];
+	private int total, keep, splitKeep;
+	private boolean firstReady;
+
+	// Spending limits for the current location
+	private int[] buyMax = new int[4];
+
+	public MoveGenerator(GameEngine engine) {
+		this.engine = engine;
+		brd = engine.getBoard();
+	}
+
+	// Keeps a few unit choices per move instead of every one
+	public void setCoarse(boolean coarse) {
+		this.coarse = coarse;
+	}
+
+	/*
+		Starts over for the given player
+		During bids and picks any player who has not acted yet has moves, otherwise only the current player
+	*/
+	public void reset(Player p) {
+		this.p = p;
+		owned = p.getTerritories();
+		planLength = planIndex = 0;
+		entering = true;
+		setup = splitAllowed = false;
+
+		switch (engine.getPhase()) {
+			case GameEngine.BID:
+				if (!engine.hasBid(p)) plan[planLength++] = BIDS;
+				return;
+
+			case GameEngine.PICK:
+				if (!engine.hasPicked(p)) plan[planLength++] = PICKS;
+				return;
+
+			case GameEngine.START:
+				if (p != engine.getCurrentPlayer()) return;
+
+				if (engine.getStep() == GameEngine.LOCATE) {
+					plan[planLength++] = STARTS;
+				} else {
+					setup = true;
+					plan[planLength++] = EXPANDS;
+				}
+				return;
+
+			case GameEngine.TURN:
+				if (p != engine.getCurrentPlayer()) return;
+				break;
+
+			default:
+				return;
+		}
+
+		switch (engine.getStep()) {
+			case GameEngine.CHOOSE:
+				if (engine.getCurrentCard() <= 2) {
+					plan[planLength++] = TAXES;
+					plan[planLength++] = SPENDS;
+				} else {
+					splitAllowed = engine.getCurrentCard() == 5;
+					plan[planLength++] = EXPANDS;
+					plan[planLength++] = MANEUVERS;
+				}
+				break;
+
+			case GameEngine.SPENDING:
+				plan[planLength++] = SPENDS;
+				break;
+
+			case GameEngine.FORTIFYING:
+				plan[planLength++] = FORTIFIES;
+				break;
+
+			default:
+				plan[planLength++] = SIEGES;
+				break;
+		}
+	}
+
+	/*
+		Moves on to the next legal move, false when there are no more
+	*/
+	public boolean next() {
+		while (planIndex < planLength) {
+			if (advance(plan[planIndex])) return true;
+
+			planIndex++;
+			entering = true;
+		}
+
+		return false;
+	}
+
+	// Counts the moves left, the cursor ends up exhausted
+	public long count() {
+		long out = 0;
+		while (next()) out++;
+		return out;
+	}
+
+	private boolean advance(int stage) {
+		switch (stage) {
+			case BIDS:
+				return nextBid();
+			case PICKS:
+				return nextPick();
+			case STARTS:
+				return nextStart();
+			case TAXES:
+				if (!entering) return false;
+				entering = false;
+				return move(Action.TAX, false);
+			case SPENDS:
+				return nextSpend();
+			case EXPANDS:
+				return nextExpand();
+			case MANEUVERS:
+				return nextManeuver();
+			case FORTIFIES:
+				return nextFortify();
+			default:
+				return nextSiege();
+		}
+	}
+
+	// Sets the kind of the current move and clears its targets
+	private boolean move(int type, boolean pass) {
+		this.type = type;
+		this.pass = pass;
+
+		if (pass) {
+			from = to = splitTo = null;
+		}
+
+		return true;
+	}
+
+	/*
+		Bids, every amount the player can afford
+	*/
+	private boolean nextBid() {
+		if (entering) {
+			entering = false;
+			amount = -1;
+		}
+
+		if (++amount > p.getMoney()) return false;
+		return move(Action.BID, false);
+	}
+
+	/*
+		Card picks, every ordered pair of card ids the hand allows
+	*/
+	private boolean nextPick() {
+		if (entering) {
+			entering = false;
+			handSize = p.getCards(hand);
+
+			if (handSize > hand.length) {
+				hand = new int[handSize];
+				p.getCards(hand);
+			}
+
+			i1 = 0;
+			i2 = -1;
+		}
+
+		for (; i1 < handSize; i1++, i2 = -1) {
+			// Each card id once as the first pick
+			if (seenBefore(i1, -1)) continue;
+
+			while (++i2 < handSize) {
+				if (i2 != i1 && !seenBefore(i2, i1)) {
+					first = hand[i1];
+					second = hand[i2];
+					return move(Action.PICK, false);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	// True if the card at i already appeared earlier in the hand (ignoring skip)
+	private boolean seenBefore(int i, int skip) {
+		for (int j = 0; j < i; j++) {
+			if (j != skip && hand[j] == hand[i]) return true;
+		}
+
+		return false;
+	}
+
+	/*
+		Starting locations
+	*/
+	private boolean nextStart() {
+		if (entering) {
+			entering = false;
+			index = -1;
+		}
+
+		while (++index < brd.getTerritoryCount()) {
+			Territory t = brd.getTerritory(index);
+
+			if (engine.canStartAt(t)) {
+				to = t;
+				return move(Action.START, false);
+			}
+		}
+
+		return false;
+	}
+
+	/*
+		Spending, finishing first then every purchase at every city and castle
+	*/
+	private boolean nextSpend() {
+		if (entering) {
+			entering = false;
+			index = -1;
+			to = null;
+			return move(Action.SPEND, true);
+		}
+
+		while (true) {
+			if (to != null && nextPurchase()) return move(Action.SPEND, false);
+
+			// Next location
+			to = null;
+
+			while (++index < owned.size()) {
+				if (engine.canDeploy(p, owned.get(index))) {
+					to = owned.get(index);
+					break;
+				}
+			}
+
+			if (to == null) return false;
+
+			for (int i = 0; i < 4; i++) {
+				buyMax[i] = Math.min(engine.getMaxUnits(i) - totalUnits(i), p.getMoney() / engine.getUnitValue(i));
+				if (buyMax[i] < 0) buyMax[i] = 0;
+				units[i] = 0;
+			}
+
+			castle = false;
+			preset = -1;
+		}
+	}
+
+	private boolean nextPurchase() {
+		boolean castleAllowed = !to.hasCastle() && engine.getTotalCastles() < engine.getMaxCastles()
+			&& p.getMoney() >= engine.getUnitValue(4);
+
+		if (coarse) {
+			// As many of one type as possible, then a castle alone
+			while (++preset < 5) {
+				for (int i = 0; i < 4; i++) units[i] = 0;
+				castle = preset == 4;
+
+				if (castle && castleAllowed) return true;
+				if (!castle && buyMax[preset] > 0) {
+					units[preset] = buyMax[preset];
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		while (true) {
+			if (!step(units, buyMax)) {
+				// Every purchase without a castle is done, go again with one
+				if (castle || !castleAllowed) return false;
+				castle = true;
+				return cost() <= p.getMoney();
+			}
+
+			if (cost() <= p.getMoney()) return true;
+		}
+	}
+
+	// Units of a type the player has on the board
+	private int totalUnits(int type) {
+		switch (type) {
+			case 0: return p.getTotalFoot();
+			case 1: return p.getTotalArch();
+			case 2: return p.getTotalCav();
+			default: return p.getTotalSiege();
+		}
+	}
+
+	private int cost() {
+		int out = castle ? engine.getUnitValue(4) : 0;
+		for (int i = 0; i < 4; i++) out += units[i] * engine.getUnitValue(i);
+		return out;
+	}
+
+	/*
+		Expands, passing first then every source, destination (or two) and unit choice
+	*/
+	private boolean nextExpand() {
+		if (entering) {
+			entering = false;
+			index = -1;
+			from = to = splitTo = null;
+			return move(Action.EXPAND, true);
+		}
+
+		while (true) {
+			if (to != null && nextUnits()) return move(Action.EXPAND, false);
+			if (!nextExpandTarget()) return false;
+			resetUnits();
+		}
+	}
+
+	// Moves on to the next legal destination (and second destination when splitting)
+	private boolean nextExpandTarget() {
+		while (true) {
+			if (from == null && !nextSource()) return false;
+
+			int fromId = from.getId();
+
+			// Second destinations pair with a later first one so each split appears once
+			if (to != null && splitAllowed && engine.canSplitFrom(p, from)) {
+				while (++k2 < brd.getDegree(fromId)) {
+					Territory t = brd.getNeighbourTerritory(fromId, k2);
+
+					if (t.getId() > to.getId() && engine.canExpandTo(p, from, t, false)) {
+						splitTo = t;
+						return true;
+					}
+				}
+			}
+
+			splitTo = null;
+			k2 = -1;
+			to = null;
+
+			while (++k < brd.getDegree(fromId)) {
+				Territory t = brd.getNeighbourTerritory(fromId, k);
+
+				if (engine.canExpandTo(p, from, t, setup)) {
+					to = t;
+					return true;
+				}
+			}
+
+			from = null;
+		}
+	}
+
+	// Next territory units can leave
+	private boolean nextSource() {
+		while (++index < owned.size()) {
+			Territory t = owned.get(index);
+
+			if (engine.canMoveFrom(p, t)) {
+				from = t;
+				to = splitTo = null;
+				k = k2 = -1;
+
+				Army army = t.getDef();
+				have[0] = army.getFoot();
+				have[1] = army.getArcher();
+				have[2] = army.getCavalry();
+				have[3] = army.getSiege();
+				total = army.getTotal();
+				keep = engine.minRemaining(t);
+				splitKeep = engine.minRemaining(t, true);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+		Maneuvers, every source, destination within two spaces and unit choice
+	*/
+	private boolean nextManeuver() {
+		if (entering) {
+			entering = false;
+			index = -1;
+			from = to = splitTo = null;
+		}
+
+		while (true) {
+			if (to != null && nextUnits()) return move(Action.MANEUVER, false);
+
+			// Next destination for the same source
+			int j = (to == null) ? -1 : k;
+			to = null;
+
+			if (from != null) {
+				while (++j < owned.size()) {
+					if (engine.canManeuver(p, from, owned.get(j))) {
+						to = owned.get(j);
+						k = j;
+						break;
+					}
+				}
+			}
+
+			if (to == null) {
+				if (!nextSource()) return false;
+				k = -1;
+				continue;
+			}
+
+			resetUnits();
+		}
+	}
+
+	/*
+		Unit choices for the current source and destinations
+	*/
+	private void resetUnits() {
+		for (int i = 0; i < 4; i++) {
+			units[i] = 0;
+			splitUnits[i] = 0;
+		}
+
+		firstReady = false;
+		preset = -1;
+	}
+
+	private boolean nextUnits() {
+		if (coarse) return nextPreset();
+
+		if (splitTo == null) {
+			while (step(units, have)) {
+				if (total - sum(units) >= keep) return true;
+			}
+
+			return false;
+		}
+
+		// The second group comes out of what the first left behind
+		while (true) {
+			if (firstReady) {
+				while (step(splitUnits, rest)) {
+					if (total - sum(units) - sum(splitUnits) >= splitKeep) return true;
+				}
+			}
+
+			do {
+				if (!step(units, have)) return false;
+			} while (total - sum(units) - 1 < splitKeep);
+
+			for (int i = 0; i < 4; i++) {
+				rest[i] = have[i] - units[i];
+				splitUnits[i] = 0;
+			}
+
+			firstReady = true;
+		}
+	}
+
+	// Coarse unit choices, see the header
+	private boolean nextPreset() {
+		while (++preset < (splitTo == null ? 2 : 1)) {
+			// Everything that can leave, the cheapest units stay
+			int stay = splitTo == null ? keep : splitKeep;
+
+			for (int i = 0; i < 4; i++) {
+				int kept = Math.min(have[i], stay);
+				units[i] = have[i] - kept;
+				stay -= kept;
+			}
+
+			if (splitTo != null) {
+				// Half each way, rounded towards the first destination
+				for (int i = 0; i < 4; i++) {
+					splitUnits[i] = units[i] / 2;
+					units[i] -= splitUnits[i];
+				}
+
+				if (sum(splitUnits) == 0) {
+					for (int i = 0; i < 4 && sum(splitUnits) == 0; i++) {
+						if (units[i] > 0 && sum(units) > 1) {
+							units[i]--;
+							splitUnits[i]++;
+						}
+					}
+				}
+
+				if (sum(units) > 0 && sum(splitUnits) > 0) return true;
+				continue;
+			}
+
+			if (preset == 1) {
+				// Half of it, skipped when it is the same as everything
+				int all = sum(units);
+				for (int i = 0; i < 4; i++) units[i] /= 2;
+				if (sum(units) == all) continue;
+			}
+
+			if (sum(units) > 0) return true;
+		}
+
+		return false;
+	}
+
+	/*
+		Fortify, passing first then every city and castle
+	*/
+	private boolean nextFortify() {
+		if (entering) {
+			entering = false;
+			index = -1;
+			return move(Action.FORTIFY, true);
+		}
+
+		while (++index < owned.size()) {
+			if (engine.canDeploy(p, owned.get(index))) {
+				to = owned.get(index);
+				return move(Action.FORTIFY, false);
+			}
+		}
+
+		return false;
+	}
+
+	/*
+		Siege assault, passing first then every source and target
+	*/
+	private boolean nextSiege() {
+		if (entering) {
+			entering = false;
+			index = -1;
+			from = null;
+			return move(Action.SIEGE, true);
+		}
+
+		while (true) {
+			if (from != null) {
+				int fromId = from.getId();
+
+				while (++k < brd.getDegree(fromId)) {
+					Territory t = brd.getNeighbourTerritory(fromId, k);
+
+					if (engine.canSiege(p, from, t)) {
+						to = t;
+						return move(Action.SIEGE, false);
+					}
+				}
+			}
+
+			from = null;
+
+			while (++index < owned.size()) {
+				if (engine.canSiegeFrom(p, owned.get(index))) {
+					from = owned.get(index);
+					k = -1;
+					break;
+				}
+			}
+
+			if (from == null) return false;
+		}
+	}
+
+	/*
+		Steps an odometer of unit counts within limits, foot first
+		Returns false once it wraps back to all zeros
+	*/
+	private static boolean step(int[] counts, int[] limits) {
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] < limits[i]) {
+				counts[i]++;
+				return true;
+			}
+
+			counts[i] = 0;
+		}
+
+		return false;
+	}
+
+	private static int sum(int[] counts) {
+		return counts[0] + counts[1] + counts[2] + counts[3];
+	}
+
+	/*
+		Builds the Action for the current move
+	*/
+	public Action toAction() {
+		switch (type) {
+			case Action.BID:
+				return new BidAction(p, amount);
+			case Action.PICK:
+				return new PickCards(p, first, second);
+			case Action.START:
+				return new StartAction(p, to);
+			case Action.TAX:
+				return new TaxAction(p);
+			case Action.SPEND:
+				return pass ? new SpendAction(p) : new SpendAction(p, to, units.clone(), castle);
+			case Action.EXPAND:
+				if (pass) return new ExpandAction(p);
+				if (splitTo == null) return new ExpandAction(p, from, to, units.clone());
+				return new ExpandAction(p, from, to, units.clone(), splitTo, splitUnits.clone());
+			case Action.MANEUVER:
+				return new ManeuverAction(p, from, to, units.clone());
+			case Action.FORTIFY:
+				return new FortifyAction(p, pass ? null : to);
+			default:
+				return pass ? new SiegeAction(p, null, null) : new SiegeAction(p, from, to);
+		}
+	}
+
+	/*
+		Packs the current move into two longs so it can be kept without holding objects
+		unpack() rebuilds it for the same player on the engine or any copy of it (territories by id)
+			move	- type, pass, castle, from, to and splitTo ids (+1), then the bid or the two cards
+			units	- units then split units, 8 bits a count
+	*/
+	public long packMove() {
+		long out = type | (pass ? 1L << 4 : 0);
+		if (pass) return out;
+
+		switch (type) {
+			case Action.BID:
+				return out | (long) amount << 42;
+			case Action.PICK:
+				return out | (long) (first | second << 8) << 42;
+			case Action.TAX:
+				return out;
+			case Action.START:
+			case Action.FORTIFY:
+				return out | (long) idOf(to) << 18;
+			case Action.SPEND:
+				return out | (castle ? 1L << 5 : 0) | (long) idOf(to) << 18;
+			case Action.EXPAND:
+				return out | (long) idOf(from) << 6 | (long) idOf(to) << 18 | (long) idOf(splitTo) << 30;
+			default:
+				return out | (long) idOf(from) << 6 | (long) idOf(to) << 18;
+		}
+	}
+
+	public long packUnits() {
+		boolean moving = type == Action.SPEND || type == Action.EXPAND || type == Action.MANEUVER;
+		long out = 0;
+
+		if (pass || !moving) return 0;
+
+		for (int i = 0; i < 4; i++) {
+			out |= (long) units[i] << (i * 8);
+			if (splitTo != null) out |= (long) splitUnits[i] << (32 + i * 8);
+		}
+
+		return out;
+	}
+
+	public static Action unpack(long move, long units, Player p, Board brd) {
+		int type = (int) (move & 15);
+		boolean pass = (move & (1L << 4)) != 0, castle = (move & (1L << 5)) != 0;
+		Territory from = territory(brd, move >>> 6), to = territory(brd, move >>> 18), splitTo = territory(brd, move >>> 30);
+		int cards = (int) (move >>> 42);
+
+		int[] group = new int[4], split = new int[4];
+		for (int i = 0; i < 4; i++) {
+			group[i] = (int) (units >>> (i * 8)) & 255;
+			split[i] = (int) (units >>> (32 + i * 8)) & 255;
+		}
+
+		switch (type) {
+			case Action.BID:
+				return new BidAction(p, cards);
+			case Action.PICK:
+				return new PickCards(p, cards & 255, cards >>> 8);
+			case Action.START:
+				return new StartAction(p, to);
+			case Action.TAX:
+				return new TaxAction(p);
+			case Action.SPEND:
+				return pass ? new SpendAction(p) : new SpendAction(p, to, group, castle);
+			case Action.EXPAND:
+				if (pass) return new ExpandAction(p);
+				if (splitTo == null) return new ExpandAction(p, from, to, group);
+				return new ExpandAction(p, from, to, group, splitTo, split);
+			case Action.MANEUVER:
+				return new ManeuverAction(p, from, to, group);
+			case Action.FORTIFY:
+				return new FortifyAction(p, pass ? null : to);
+			default:
+				return pass ? new SiegeAction(p, null, null) : new SiegeAction(p, from, to);
+		}
+	}
+
+	private static int idOf(Territory t) {
+		return t == null ? 0 : t.getId() + 1;
+	}
+
+	private static Territory territory(Board brd, long field) {
+		int id = (int) (field & 4095) - 1;
+		return id < 0 ? null : brd.getTerritory(id);
+	}
+
+	/*
+		Getters for the current move
+		Arrays are reused between moves
+	*/
+	public int getType() {
+		return type;
+	}
+
+	// Passing, or finishing a spend
+	public boolean isPass() {
+		return pass;
+	}
+
+	public Player getPlayer() {
+		return p;
+	}
+
+	public Territory getFrom() {
+		return from;
+	}
+
+	// Destination, or the territory a start, spend or fortify is on
+	public Territory getTo() {
+		return to;
+	}
+
+	public Territory getSplitTo() {
+		return splitTo;
+	}
+
+	public int[] getUnits() {
+		return units;
+	}
+
+	public int[] getSplitUnits() {
+		return splitUnits;
+	}
+
+	public boolean hasCastle() {
+		return castle;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+
+	public int getFirstCard() {
+		return first;
+	}
+
+	public int getSecondCard() {
+		return second;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+	Lookup table of attacker win probabilities backed by a memory mapped file
+
+	Holds one byte for every attacker composition against every defender composition within the
+	unit limits (Game's maxUnits), with and without a castle. A byte of 0 means the entry has not
+	been computed yet, otherwise the probability is (byte - 1) / 254. Battles where a side has no
+	units are settled before any fighting and are never stored.
+
+	Entries are filled on demand from BattleOdds and written straight into the mapping, so the
+	table builds up incrementally across runs and opening it costs nothing but the mapping itself.
+	The file is sparse, pages that were never written take no disk space.
+
+	File format:
+		Header (64 bytes): magic, format version, maxUnits[4], unitValue[5], Army values[4], padding
+		Entries: [castle][attacker composition][defender composition]
+	A table whose header does not match the given limits and unit values is cleared and rebuilt.
+*/
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class OddsTable {
+	private static final int MAGIC = 0x524B4F54;	// "RKOT"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_INTS = 15;
+
+	private int[] maxUnits;
+	private int compositions;						// Compositions per side
+	private MappedByteBuffer table;
+
+	// Each thread computes misses with its own calculator
+	private ThreadLocal<BattleOdds> odds = ThreadLocal.withInitial(BattleOdds::new);
+
+	/*
+		Opens or creates the table at path
+		maxUnits and unitValue are the game's limits and unit costs (Game.maxUnits, Game.unitValue)
+	*/
+	public OddsTable(String path, int[] maxUnits, int[] unitValue) throws IOException {
+		this.maxUnits = maxUnits.clone();
+		compositions = (maxUnits[0] + 1) * (maxUnits[1] + 1) * (maxUnits[2] + 1) * (maxUnits[3] + 1);
+
+		long size = HEADER_SIZE + 2L * compositions * compositions;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Unit limits are too large for a single mapping");
+		}
+
+		int[] header = header(maxUnits, unitValue);
+
+		try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+			// Drop entries computed under different rules
+			if (file.length() != size || !matches(file, header)) {
+				file.setLength(0);
+				file.setLength(size);
+			}
+
+			table = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		for (int i = 0; i < header.length; i++) {
+			table.putInt(i * 4, header[i]);
+		}
+	}
+
+	/*
+		Returns the probability that the attacker wins, computing and storing it if needed
+		Compositions outside the unit limits are computed but not stored
+	*/
+	public double getAttackerWin(int[] attacker, int[] defender, boolean hasCastle) {
+		// An empty side has already lost, the attacker wins only against nobody
+		int attTotal = attacker[0] + attacker[1] + attacker[2] + attacker[3];
+		int defTotal = defender[0] + defender[1] + defender[2] + defender[3];
+		if (attTotal == 0 || defTotal == 0) return attTotal > 0 ? 1.0 : 0.0;
+
+		int att = index(attacker), def = index(defender);
+
+		if (att < 0 || def < 0) {
+			BattleOdds calc = odds.get();
+			calc.compute(attacker, defender, hasCastle);
+			return calc.getAttackerWin();
+		}
+
+		int pos = position(att, def, hasCastle);
+		int stored = table.get(pos) & 0xFF;
+
+		if (stored == 0) {
+			fill(attacker, defender, hasCastle);
+			stored = table.get(pos) & 0xFF;
+		}
+
+		return (stored - 1) / 254.0;
+	}
+
+	public double getAttackerWin(Army attacker, Army defender, boolean hasCastle) {
+		int[] att = {attacker.getFoot(), attacker.getArcher(), attacker.getCavalry(), attacker.getSiege()};
+		int[] def = {defender.getFoot(), defender.getArcher(), defender.getCavalry(), defender.getSiege()};
+		return getAttackerWin(att, def, hasCastle);
+	}
+
+	/*
+		Fills every entry where both armies have 1 to maxTotal units
+		Entries that are already filled are skipped, so an interrupted build can be resumed
+	*/
+	public void build(int maxTotal) {
+		int[] att = new int[4], def = new int[4];
+
+		for (int castle = 0; castle < 2; castle++) {
+			for (int a = 0; a < compositions; a++) {
+				int attTotal = decode(a, att);
+				if (attTotal == 0 || attTotal > maxTotal) continue;
+
+				for (int d = 0; d < compositions; d++) {
+					int defTotal = decode(d, def);
+					if (defTotal == 0 || defTotal > maxTotal) continue;
+
+					if (table.get(position(a, d, castle == 1)) == 0) {
+						fill(att, def, castle == 1);
+					}
+				}
+			}
+		}
+	}
+
+	// Writes the table to disk
+	public void flush() {
+		table.force();
+	}
+
+	/*
+		Computes a battle and stores it along with every battle it passes through
+		(each pair of compositions reached by losing units in order)
+	*/
+	private void fill(int[] attacker, int[] defender, boolean hasCastle) {
+		BattleOdds calc = odds.get();
+		calc.compute(attacker, defender, hasCastle);
+
+		int[] att = attacker.clone();
+		int attLeft = att[0] + att[1] + att[2] + att[3];
+		int defTotal = defender[0] + defender[1] + defender[2] + defender[3];
+
+		for (int attLost = 0; attLeft > 0; attLost++) {
+			int[] def = defender.clone();
+			int defLeft = defTotal;
+			int a = index(att);
+
+			for (int defLost = 0; defLeft > 0; defLost++) {
+				double p = calc.getAttackerWin(attLost, defLost);
+				table.put(position(a, index(def), hasCastle), (byte) (1 + Math.round(p * 254)));
+
+				defLeft = BattleResolver.destroyUnits(def, defLeft, 1);
+			}
+
+			attLeft = BattleResolver.destroyUnits(att, attLeft, 1);
+		}
+	}
+
+	private int position(int att, int def, boolean hasCastle) {
+		return HEADER_SIZE + ((hasCastle ? compositions : 0) + att) * compositions + def;
+	}
+
+	// Index of a composition, -1 if it is outside the unit limits
+	private int index(int[] units) {
+		int out = 0;
+
+		for (int i = 0; i < 4; i++) {
+			if (units[i] < 0 || units[i] > maxUnits[i]) return -1;
+			out = out * (maxUnits[i] + 1) + units[i];
+		}
+
+		return out;
+	}
+
+	// Turns an index back into a composition, returns the unit total
+	private int decode(int index, int[] units) {
+		int total = 0;
+
+		for (int i = 3; i >= 0; i--) {
+			units[i] = index % (maxUnits[i] + 1);
+			index /= maxUnits[i] + 1;
+			total += units[i];
+		}
+
+		return total;
+	}
+
+	/*
+		Header values the table was built under
+		Army values are read from Army.totalValue() so a change there invalidates the table
+	*/
+	private static int[] header(int[] maxUnits, int[] unitValue) {
+		int[] out = new int[HEADER_INTS];
+		out[0] = MAGIC;
+		out[1] = VERSION;
+
+		for (int i = 0; i < 4; i++) out[2 + i] = maxUnits[i];
+		for (int i = 0; i < 5; i++) out[6 + i] = unitValue[i];
+
+		out[11] = new Army(1, 0, 0, 0).totalValue();
+		out[12] = new Army(0, 1, 0, 0).totalValue();
+		out[13] = new Army(0, 0, 1, 0).totalValue();
+		out[14] = new Army(0, 0, 0, 1).totalValue();
+
+		return out;
+	}
+
+	private static boolean matches(RandomAccessFile file, int[] header) throws IOException {
+		if (file.length() < HEADER_SIZE) return false;
+
+		file.seek(0);
+		for (int i = 0; i < header.length; i++) {
+			if (file.readInt() != header[i]) return false;
+		}
+
+		return true;
+	}
+}
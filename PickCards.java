@@ -0,0 +1,21 @@
+/*
+	The two cards a player will play this round, in the order they are played
+	Picks are hidden from other players until turns begin
+*/
+public class PickCards extends Action {
+	private int first, second;
+
+	public PickCards(Player player, int first, int second) {
+		super(player, PICK);
+		this.first = first;
+		this.second = second;
+	}
+
+	public int getFirst() {
+		return first;
+	}
+
+	public int getSecond() {
+		return second;
+	}
+}
@@ -11,8 +11,24 @@
 	Draw pile represents cards that are picked from at the start of each round,
 		discard pile represents cards that have been played, active cards are the
 		cards that will be played each turn
+
+	Territories the player is on, defends and attacks are kept as bitsets over territory ids
+		- Membership and counts are word operations
+		- getTerritories() is a read only view of the occupied list, removal swaps with the last
+
+	Crowns held are counted as territoryChanged() reports crowned territories (with ids) changing hands
+		- Set the checkCrowns system property (or setCheckCrowns()) to compare every read
+		  of the count against a full scan
+
+	Supply chains are groups of connected territories the player holds without dispute.
+		- Kept up to date as Territory reports changes through territoryChanged()
+		- Gaining a territory joins chains, losing one or having it disputed marks the
+		  chains to be rebuilt in one pass on the next read
+		- Territories must belong to a Board (have an id) to be part of a chain
 */
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Player {
 	private String name;
@@ -21,12 +37,43 @@ public class Player {
 
 	private int[] totalActiveUnits; 				// [foot, arch, cav, siege]
 	private ArrayList<Territory> occupiedTerritories; 
+	private List<Territory> territoryView;			// Read only view of occupiedTerritories
+
+	// Bitsets over territory ids
+	private long[] occupied = new long[0];
+	private long[] defended = new long[0];
+	private long[] attacked = new long[0];
+	private int[] slot = new int[0];				// Index in occupiedTerritories by id
+
+	// Crowned territories this player defends
+	private long[] crowned = new long[0];
+	private int crownCount;
+	private static boolean checkCrowns = Boolean.getBoolean("checkCrowns");
 
 	private int[] drawPile;
 	private int[] discardPile;
 	private int[] activeCards;
 	private int discardIndex;
 
+	/*
+		Supply chains as a union find over territory ids
+		Members are territories this player defends without dispute
+	*/
+	private boolean[] member = new boolean[0];
+	private Territory[] members = new Territory[0];
+	private int[] memberValue = new int[0];
+	private int[] memberCrown = new int[0];
+	private int[] parent = new int[0];
+	private int[] chainValue = new int[0];		// Valid at roots
+	private int[] chainCrowns = new int[0];		// Valid at roots
+	private int taxValue;
+	private boolean chainsDirty;
+
+	// Search scratch for getSupplyChain()
+	private int[] visited = new int[0];
+	private int stamp;
+	private Territory[] queue = new Territory[0];
+
 	/*
 		Constructors
 	*/
@@ -40,12 +87,26 @@ public class Player {
 		this.faction = faction;
 		totalActiveUnits = new int[4];
 		occupiedTerritories = new ArrayList<Territory>();
+		territoryView = Collections.unmodifiableList(occupiedTerritories);
 	}
 
 	public Player() {
 		this("John Doe", "No Team");
 	}
 
+	// Copies money, unit totals and cards, territories join as the copy is placed on a board
+	public Player(Player other) {
+		this(other.name, other.faction, other.money);
+		totalActiveUnits = other.totalActiveUnits.clone();
+
+		if (other.drawPile != null) {
+			drawPile = other.drawPile.clone();
+			discardPile = other.discardPile.clone();
+			activeCards = other.activeCards.clone();
+			discardIndex = other.discardIndex;
+		}
+	}
+
 	/*
 		Give players their starting hand of any size
 		Should be an even number
@@ -95,6 +156,53 @@ public class Player {
 		return 0;
 	}
 
+	/*
+		Puts the active cards back into the draw pile, undoing the picks
+	*/
+	public void returnPicks() {
+		for (int c = 0; c < activeCards.length; c++) {
+			if (activeCards[c] == 0) continue;
+
+			for (int i = 0; i < drawPile.length; i++) {
+				if (drawPile[i] == 0) {
+					drawPile[i] = activeCards[c];
+					break;
+				}
+			}
+
+			activeCards[c] = 0;
+		}
+	}
+
+	/*
+		Card piles as flat ints for GameState: draw pile, discard pile, active cards, discard index
+	*/
+	public int getCardStateSize() {
+		return drawPile == null ? 0 : drawPile.length + discardPile.length + activeCards.length + 1;
+	}
+
+	public void getCardState(int[] out, int off) {
+		if (drawPile == null) return;
+
+		System.arraycopy(drawPile, 0, out, off, drawPile.length);
+		off += drawPile.length;
+		System.arraycopy(discardPile, 0, out, off, discardPile.length);
+		off += discardPile.length;
+		System.arraycopy(activeCards, 0, out, off, activeCards.length);
+		out[off + activeCards.length] = discardIndex;
+	}
+
+	public void setCardState(int[] in, int off) {
+		if (drawPile == null) return;
+
+		System.arraycopy(in, off, drawPile, 0, drawPile.length);
+		off += drawPile.length;
+		System.arraycopy(in, off, discardPile, 0, discardPile.length);
+		off += discardPile.length;
+		System.arraycopy(in, off, activeCards, 0, activeCards.length);
+		discardIndex = in[off + activeCards.length];
+	}
+
 	/*
 		Returns the first card in activeCards
 		Returns the null card if 
@@ -154,6 +262,23 @@ public class Player {
 		return cards;
 	}
 
+	/*
+		Writes nonzero card ids from the draw pile into out without allocating
+		Returns how many there are, which may be more than out can hold
+	*/
+	public int getCards(int[] out) {
+		int count = 0;
+
+		for (int i = 0; i < drawPile.length; i++) {
+			if (drawPile[i] != 0) {
+				if (count < out.length) out[count] = drawPile[i];
+				count++;
+			}
+		}
+
+		return count;
+	}
+
 	/*
 		Easy adjustment of money count
 	*/
@@ -173,7 +298,17 @@ public class Player {
 
 	// Checks if a player is on a territory
 	public boolean isOn(Territory t) {
-		return occupiedTerritories.contains(t);
+		int id = t.getId();
+
+		// Territories off the board have no id to look up
+		if (id < 0) return occupiedTerritories.contains(t);
+
+		return hasBit(occupied, id);
+	}
+
+	// Checks if a player is attacking a space
+	public boolean isAttacking(Territory t) {
+		return this.equals(t.getAtkPly());
 	}
 
 	// Checks if a player is defending a space, must be on the space
@@ -183,48 +318,335 @@ public class Player {
 
 	// Adds a new territory to the player
 	public void addTerr(Territory terr) {
+		int id = terr.getId();
+
+		if (id < 0) {
+			occupiedTerritories.add(terr);
+			return;
+		}
+
+		if (isOn(terr)) return;
+
+		ensureBitCapacity(id);
+		occupied[id >>> 6] |= 1L << id;
+		slot[id] = occupiedTerritories.size();
 		occupiedTerritories.add(terr);
 	}
 
 	// Removes a territory from the player
 	public void removeTerr(Territory terr) {
-		occupiedTerritories.remove(terr);
+		int id = terr.getId();
+
+		if (id < 0) {
+			occupiedTerritories.remove(terr);
+			return;
+		}
+
+		if (!isOn(terr)) return;
+
+		// Move the last territory into the gap
+		int index = slot[id];
+		Territory last = occupiedTerritories.remove(occupiedTerritories.size() - 1);
+
+		if (last != terr) {
+			occupiedTerritories.set(index, last);
+			slot[last.getId()] = index;
+		}
+
+		occupied[id >>> 6] &= ~(1L << id);
+	}
+
+	// Takes the player off every territory, the territories themselves are unchanged
+	public void clearTerritories() {
+		for (int i = 0; i < occupiedTerritories.size(); i++) {
+			int id = occupiedTerritories.get(i).getId();
+			if (id >= 0) occupied[id >>> 6] &= ~(1L << id);
+		}
+
+		occupiedTerritories.clear();
+	}
+
+	/*
+		Word level territory sets
+	*/
+	// Number of territories the player is on, defends or attacks
+	public int getTerritoryCount() {
+		return occupiedTerritories.size();
+	}
+
+	public int getDefendedCount() {
+		return countBits(defended);
+	}
+
+	public int getAttackedCount() {
+		return countBits(attacked);
+	}
+
+	/*
+		Writes the territories next to this player's that the player is not on into out
+		out must hold the board's word count (Board.getWordCount()), returns how many there are
+	*/
+	public int getFrontier(long[] out) {
+		for (int i = 0; i < out.length; i++) out[i] = 0;
+
+		for (int i = 0; i < occupiedTerritories.size(); i++) {
+			long[] adj = occupiedTerritories.get(i).getAdjacency();
+			if (adj == null) continue;
+
+			for (int w = 0; w < adj.length && w < out.length; w++) {
+				out[w] |= adj[w];
+			}
+		}
+
+		int count = 0;
+		for (int w = 0; w < out.length; w++) {
+			if (w < occupied.length) out[w] &= ~occupied[w];
+			count += Long.bitCount(out[w]);
+		}
+
+		return count;
+	}
+
+	// Live bitsets, must not be modified
+	public long[] getOccupiedBits() {
+		return occupied;
+	}
+
+	public long[] getDefendedBits() {
+		return defended;
+	}
+
+	public long[] getAttackedBits() {
+		return attacked;
+	}
+
+	private static boolean hasBit(long[] bits, int id) {
+		return (id >>> 6) < bits.length && (bits[id >>> 6] & (1L << id)) != 0;
+	}
+
+	private static void setBit(long[] bits, int id, boolean on) {
+		if (on) {
+			bits[id >>> 6] |= 1L << id;
+		} else {
+			bits[id >>> 6] &= ~(1L << id);
+		}
+	}
+
+	private static int countBits(long[] bits) {
+		int count = 0;
+		for (int i = 0; i < bits.length; i++) count += Long.bitCount(bits[i]);
+		return count;
+	}
+
+	private void ensureBitCapacity(int id) {
+		int words = (id >>> 6) + 1;
+
+		if (words > occupied.length) {
+			occupied = growBits(occupied, words);
+			defended = growBits(defended, words);
+			attacked = growBits(attacked, words);
+			crowned = growBits(crowned, words);
+		}
+
+		if (id >= slot.length) {
+			slot = grow(slot, Math.max(id + 1, slot.length * 2));
+		}
+	}
+
+	private static long[] growBits(long[] bits, int words) {
+		long[] out = new long[words];
+		System.arraycopy(bits, 0, out, 0, bits.length);
+		return out;
 	}
 
 	// Returns an array of the supply chain starting from a territory
 	public Territory[] getSupplyChain(Territory start) {
-		Territory[] occupied = getTerritories();
-		ArrayList<Territory> chain = new ArrayList<Territory>();
-
 		// Check if the starting territory is owned
 		// Also check if it is disputed
-		if (!isOn(start) || start.isDisputed()) return null;
+		if (!isOn(start) || !inChain(start)) return null;
+
+		// Breadth first search over chain members
+		stamp++;
+		int end = 0;
+		queue[end++] = start;
+		visited[start.getId()] = stamp;
 
-		chainRecursion(start, chain, occupied);
+		for (int head = 0; head < end; head++) {
+			Territory t = queue[head];
 
-		return chain.toArray(new Territory[chain.size()]);
+			for (int k = 0; k < t.getConnectionCount(); k++) {
+				Territory next = t.getConnection(k);
+
+				if (inChain(next) && visited[next.getId()] != stamp) {
+					visited[next.getId()] = stamp;
+					queue[end++] = next;
+				}
+			}
+		}
+
+		Territory[] chain = new Territory[end];
+		System.arraycopy(queue, 0, chain, 0, end);
+
+		return chain;
 	}
 
-	// Used by getSupplyChain to generate a list of territories connected to the chain
-	// Expects that terr is owned and not disputed
-	private void chainRecursion(Territory terr, ArrayList<Territory> chain, Territory[] owned) {
-		// Add to chain list
-		chain.add(terr);
+	/*
+		Called by Territory whenever its defender, attacker, value or crown changes
+		Joins the territory's chains on gain, a loss or dispute leaves the chains to be rebuilt
+	*/
+	public void territoryChanged(Territory t) {
+		int id = t.getId();
+		if (id < 0) return;
+
+		ensureBitCapacity(id);
+		setBit(defended, id, isDefending(t));
+		setBit(attacked, id, isAttacking(t));
+
+		// Keep the crown count in step
+		boolean hasCrown = t.hasCrown() && isDefending(t);
+		if (hasCrown != hasBit(crowned, id)) {
+			setBit(crowned, id, hasCrown);
+			crownCount += hasCrown ? 1 : -1;
+		}
+
+		ensureChainCapacity(id);
+
+		boolean nowIn = isDefending(t) && !t.isDisputed();
+		int value = t.getValue(), crown = t.hasCrown() ? 1 : 0;
+
+		if (nowIn && !member[id]) {
+			// Gained, join every neighbouring chain
+			member[id] = true;
+			members[id] = t;
+			memberValue[id] = value;
+			memberCrown[id] = crown;
+
+			if (!chainsDirty) {
+				parent[id] = id;
+				chainValue[id] = value;
+				chainCrowns[id] = crown;
+
+				for (int k = 0; k < t.getConnectionCount(); k++) {
+					if (inChain(t.getConnection(k))) union(id, t.getConnection(k).getId());
+				}
+
+				// Chains only grow here, so the best can only go up
+				int root = find(id);
+				if (chainCrowns[root] > 0 && chainValue[root] > taxValue) {
+					taxValue = chainValue[root];
+				}
+			}
+		} else if (!nowIn && member[id]) {
+			// Lost or disputed, this can split a chain
+			member[id] = false;
+			members[id] = null;
+			chainsDirty = true;
+		} else if (nowIn && (memberValue[id] != value || memberCrown[id] != crown)) {
+			memberValue[id] = value;
+			memberCrown[id] = crown;
+			chainsDirty = true;
+		}
+	}
+
+	/*
+		Rebuilds every supply chain from the members in one pass
+	*/
+	public void findSupplyChains() {
+		taxValue = 0;
+
+		for (int id = 0; id < member.length; id++) {
+			if (member[id]) {
+				parent[id] = id;
+				chainValue[id] = memberValue[id];
+				chainCrowns[id] = memberCrown[id];
+			}
+		}
+
+		for (int id = 0; id < member.length; id++) {
+			if (member[id]) {
+				Territory t = members[id];
+
+				for (int k = 0; k < t.getConnectionCount(); k++) {
+					if (inChain(t.getConnection(k))) union(id, t.getConnection(k).getId());
+				}
+			}
+		}
 
-		// Repeat this with owned adjacent territories that are not disputed
-		for (int i = 0; i < owned.length; i++) {
-			if (terr.isAdjacent(owned[i]) && !owned[i].isDisputed() && !chain.contains(owned[i])) {
-				chainRecursion(owned[i], chain, owned);
+		for (int id = 0; id < member.length; id++) {
+			if (member[id] && parent[id] == id && chainCrowns[id] > 0 && chainValue[id] > taxValue) {
+				taxValue = chainValue[id];
 			}
 		}
+
+		chainsDirty = false;
+	}
+
+	private boolean inChain(Territory t) {
+		int id = t.getId();
+		return id >= 0 && id < member.length && member[id];
+	}
+
+	// Finds the root of a chain, halving paths along the way
+	private int find(int id) {
+		while (parent[id] != id) {
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+
+		return id;
+	}
+
+	// Joins two chains, the larger value becomes the root
+	private void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b) return;
+
+		if (chainValue[a] < chainValue[b]) {
+			int temp = a;
+			a = b;
+			b = temp;
+		}
+
+		parent[b] = a;
+		chainValue[a] += chainValue[b];
+		chainCrowns[a] += chainCrowns[b];
+	}
+
+	private void ensureChainCapacity(int id) {
+		if (id < member.length) return;
+
+		int size = Math.max(Math.max(id + 1, member.length * 2), 64);
+
+		boolean[] grownMember = new boolean[size];
+		System.arraycopy(member, 0, grownMember, 0, member.length);
+		member = grownMember;
+
+		Territory[] grownMembers = new Territory[size];
+		System.arraycopy(members, 0, grownMembers, 0, members.length);
+		members = grownMembers;
+
+		memberValue = grow(memberValue, size);
+		memberCrown = grow(memberCrown, size);
+		parent = grow(parent, size);
+		chainValue = grow(chainValue, size);
+		chainCrowns = grow(chainCrowns, size);
+		visited = grow(visited, size);
+		queue = new Territory[size];
+	}
+
+	private static int[] grow(int[] arr, int size) {
+		int[] out = new int[size];
+		System.arraycopy(arr, 0, out, 0, arr.length);
+		return out;
 	}
 
 	/*
 		Getters
 	*/
-	public Territory[] getTerritories() {
-		// Returns a copy of the array that is ok to change
-		return occupiedTerritories.toArray(new Territory[1]);
+	public List<Territory> getTerritories() {
+		// Read only view, reflects later changes
+		return territoryView;
 	}
 
 	public String getName() {
@@ -239,7 +661,43 @@ public class Player {
 		return money;
 	}
 
+	/*
+		Supply chain reads, rebuilt first only if a territory was lost or disputed
+	*/
+	// Value of the largest chain containing a city
+	public int getTaxValue() {
+		if (chainsDirty) findSupplyChains();
+		return taxValue;
+	}
+
+	// Value of the chain a territory is in, 0 if it is not in one
+	public int getChainValue(Territory t) {
+		if (!inChain(t)) return 0;
+		if (chainsDirty) findSupplyChains();
+		return chainValue[find(t.getId())];
+	}
+
+	// Number of cities in the chain a territory is in
+	public int getChainCrowns(Territory t) {
+		if (!inChain(t)) return 0;
+		if (chainsDirty) findSupplyChains();
+		return chainCrowns[find(t.getId())];
+	}
+
 	public int getCrowns() {
+		if (checkCrowns) {
+			int scanned = countCrowns();
+
+			if (scanned != crownCount) {
+				throw new IllegalStateException(name + " has " + scanned + " crowns but counted " + crownCount);
+			}
+		}
+
+		return crownCount;
+	}
+
+	// Counts crowns the slow way, by scanning every occupied territory
+	public int countCrowns() {
 		int crowns = 0;
 
 		for (Territory t : occupiedTerritories) {
@@ -251,6 +709,11 @@ public class Player {
 		return crowns;
 	}
 
+	// Turns the crown count cross check on or off for every player
+	public static void setCheckCrowns(boolean check) {
+		checkCrowns = check;
+	}
+
 	public int getTotalFoot() {
 		return totalActiveUnits[0];
 	} 
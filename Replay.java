@@ -0,0 +1,423 @@
+/*
+	Plays a recorded game (see EventLog) back without any console, and seeks to any point of it
+
+	Usage: java Replay game.log [-round N | -action K | -event K] [-interval N]
+
+	The log is read once into arrays: the actions, the rolls each one made and the outcome of
+	every dispute. The game is then played through once, keeping a GameState snapshot every
+	interval actions. Seeking restores the last snapshot at or before the target and applies
+	only the actions after it, so it costs at most interval actions however long the game was.
+	Moving forward from the current position does not go back to a snapshot at all.
+
+	Battles are not fought again: the engine settles each one with the logged outcome, so games
+	where the defender rerolled on the console replay exactly. Siege and bid rolls come from the
+	log in the order they were made.
+
+	Positions are counted in actions: position k is the state after the first k actions.
+	An action taken back in the log (UNDO) is dropped along with its rolls and disputes, events
+	between it and the undo map to the state before it.
+*/
+import java.io.IOException;
+
+public class Replay {
+	private GameEngine engine;
+	private EventReader header;
+	private int interval;
+
+	// Actions, the first roll and dispute of each, count + 1 long
+	private Action[] actions = new Action[256];
+	private int[] rollStart = new int[257];
+	private int[] disputeStart = new int[257];
+	private int actionCount;
+
+	private byte[] rolls = new byte[1024];
+	private int rollCount;
+
+	// Disputes in the order they were fought
+	private int[] disputeId = new int[64], disputeWinner = new int[64];
+	private int[] attackerLeft = new int[64], defenderLeft = new int[64];
+	private int[] disputeRound = new int[64];
+	private int disputeCount;
+
+	private int[] roundAction = new int[16];		// By round, actions before it started
+	private int roundCount;
+	private int[] eventAction;						// By event, actions applied once it was written
+	private int winner = -1;
+
+	private GameState[] snapshots;					// Snapshot i is the state at position i * interval
+	private int position;
+
+	// Where the engine reads its rolls and battle results from
+	private int rollAt, disputeAt;
+
+	public Replay(String path) throws IOException {
+		this(path, null, 32);
+	}
+
+	// Plays the log on board, or the board file named in the log if board is null
+	public Replay(String path, Board board, int interval) throws IOException {
+		if (interval < 1) throw new IllegalArgumentException("The snapshot interval must be at least 1");
+		this.interval = interval;
+
+		EventReader in = new EventReader(path);
+		header = in;
+
+		if (board == null) board = new Board(in.getBoardPath());
+
+		engine = in.newEngine(board, () -> {
+			if (rollAt == rollCount) throw new IllegalStateException("The log ran out of rolls");
+			return rolls[rollAt++];
+		});
+
+		engine.setBattleOutcomes((t, out) -> {
+			if (disputeAt == disputeCount || disputeId[disputeAt] != t.getId()) {
+				throw new IllegalStateException("The log has no battle on " + t.getPrefName() + " here");
+			}
+
+			out[0] = disputeWinner[disputeAt];
+			out[1] = attackerLeft[disputeAt];
+			out[2] = defenderLeft[disputeAt];
+			disputeAt++;
+		});
+
+		read(in);
+		playThrough();
+	}
+
+	/*
+		Loading
+	*/
+	// Reads every event into the arrays
+	private void read(EventReader in) {
+		// The header was read when the reader opened
+		int[] events = new int[1024];
+		int eventCount = 1;
+
+		while (in.next()) {
+			switch (in.getTag()) {
+				case EventLog.ACTION:
+					addAction(in.toAction(engine));
+					break;
+
+				case EventLog.ROLLS:
+					for (int i = 0; i < in.getRollCount(); i++) addRoll(in.getRoll(i));
+					rollStart[actionCount] = rollCount;
+					break;
+
+				case EventLog.DISPUTE:
+					addDispute(in);
+					disputeStart[actionCount] = disputeCount;
+					break;
+
+				case EventLog.ROUND:
+					if (roundCount == roundAction.length) roundAction = grow(roundAction);
+					roundAction[roundCount++] = actionCount;
+					break;
+
+				case EventLog.GAME_END:
+					winner = in.getWinnerIndex();
+					break;
+
+				case EventLog.UNDO:
+					undoLast();
+					break;
+
+				default:
+					// Newer events are skipped
+			}
+
+			if (eventCount == events.length) events = grow(events);
+			events[eventCount++] = actionCount;
+		}
+
+		eventAction = new int[eventCount];
+		System.arraycopy(events, 0, eventAction, 0, eventCount);
+	}
+
+	private void addAction(Action a) {
+		if (actionCount + 1 == actions.length) {
+			Action[] grown = new Action[actions.length * 2];
+			System.arraycopy(actions, 0, grown, 0, actionCount);
+			actions = grown;
+
+			rollStart = grow(rollStart);
+			disputeStart = grow(disputeStart);
+		}
+
+		actions[actionCount++] = a;
+		rollStart[actionCount] = rollCount;
+		disputeStart[actionCount] = disputeCount;
+	}
+
+	private void addRoll(int roll) {
+		if (rollCount == rolls.length) {
+			byte[] grown = new byte[rolls.length * 2];
+			System.arraycopy(rolls, 0, grown, 0, rollCount);
+			rolls = grown;
+		}
+
+		rolls[rollCount++] = (byte) roll;
+	}
+
+	private void addDispute(EventReader in) {
+		if (disputeCount == disputeId.length) {
+			disputeId = grow(disputeId);
+			disputeWinner = grow(disputeWinner);
+			attackerLeft = grow(attackerLeft);
+			defenderLeft = grow(defenderLeft);
+			disputeRound = grow(disputeRound);
+		}
+
+		disputeId[disputeCount] = in.getTerritory();
+		disputeWinner[disputeCount] = in.getWinner();
+		attackerLeft[disputeCount] = in.getAttackerLeft();
+		defenderLeft[disputeCount] = in.getDefenderLeft();
+		disputeRound[disputeCount] = roundCount;
+		disputeCount++;
+	}
+
+	// Drops the last action with its rolls, disputes and the rounds it started
+	private void undoLast() {
+		if (actionCount == 0) return;
+
+		actionCount--;
+		rollCount = rollStart[actionCount];
+		disputeCount = disputeStart[actionCount];
+		winner = -1;
+
+		while (roundCount > 0 && roundAction[roundCount - 1] > actionCount) roundCount--;
+	}
+
+	// Plays every action once, keeping the snapshots
+	private void playThrough() {
+		snapshots = new GameState[actionCount / interval + 1];
+		snapshots[0] = engine.snapshot();
+
+		while (position < actionCount) {
+			step();
+			if (position % interval == 0) snapshots[position / interval] = engine.snapshot();
+		}
+	}
+
+	private void step() {
+		rollAt = rollStart[position];
+		disputeAt = disputeStart[position];
+
+		if (!engine.apply(actions[position])) {
+			throw new IllegalStateException("Action " + position + " in the log was rejected: " + engine.getError());
+		}
+
+		position++;
+	}
+
+	private static int[] grow(int[] arr) {
+		int[] grown = new int[arr.length * 2];
+		System.arraycopy(arr, 0, grown, 0, arr.length);
+		return grown;
+	}
+
+	/*
+		Seeking
+	*/
+	// State after the first k actions
+	public void seekAction(int k) {
+		if (k < 0 || k > actionCount) throw new IllegalArgumentException("There are " + actionCount + " actions");
+
+		int s = k / interval;
+
+		// Step forward from here if no snapshot is closer
+		if (k < position || position < s * interval) {
+			engine.restore(snapshots[s]);
+			position = s * interval;
+		}
+
+		while (position < k) step();
+	}
+
+	// State at the start of a round, when cards are about to be picked
+	public void seekRound(int round) {
+		if (round < 1 || round > roundCount) throw new IllegalArgumentException("There are " + roundCount + " rounds");
+		seekAction(roundAction[round - 1]);
+	}
+
+	// State once event k (the header is event 0) had been written
+	public void seekEvent(int k) {
+		if (k < 0 || k >= eventAction.length) throw new IllegalArgumentException("There are " + eventAction.length + " events");
+		seekAction(eventAction[k]);
+	}
+
+	/*
+		Getters
+	*/
+	// The game at the current position, only for reading, seeking replaces what it shows
+	public GameEngine getEngine() {
+		return engine;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public int getActionCount() {
+		return actionCount;
+	}
+
+	public Action getAction(int k) {
+		return actions[k];
+	}
+
+	public int getRoundCount() {
+		return roundCount;
+	}
+
+	public int getEventCount() {
+		return eventAction.length;
+	}
+
+	// Index of the winner in the order players were named, -1 if the log ends before the game does
+	public int getWinnerIndex() {
+		return winner;
+	}
+
+	public String[] getNames() {
+		return header.getNames();
+	}
+
+	// Disputes in the order they were fought
+	public int getDisputeCount() {
+		return disputeCount;
+	}
+
+	public int getDisputeTerritory(int i) {
+		return disputeId[i];
+	}
+
+	// BattleResolver.NONE, ATTACKER or DEFENDER
+	public int getDisputeWinner(int i) {
+		return disputeWinner[i];
+	}
+
+	public int getDisputeAttackerLeft(int i) {
+		return attackerLeft[i];
+	}
+
+	public int getDisputeDefenderLeft(int i) {
+		return defenderLeft[i];
+	}
+
+	// Round the dispute ended
+	public int getDisputeRound(int i) {
+		return disputeRound[i];
+	}
+
+	// Position right after the dispute was settled
+	public int getDisputeAction(int i) {
+		int k = 0;
+		while (disputeStart[k + 1] <= i) k++;
+
+		return k + 1;
+	}
+
+	/*
+		Command line
+	*/
+	public static void main(String[] args) {
+		String path = null, seek = null;
+		int target = 0, interval = 32;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (!args[i].startsWith("-")) {
+					path = args[i];
+					continue;
+				}
+
+				if (i + 1 == args.length) throw new IllegalArgumentException(args[i] + " needs a value");
+				String value = args[++i];
+
+				switch (args[i - 1]) {
+					case "-round":
+					case "-action":
+					case "-event":
+						seek = args[i - 1];
+						target = Integer.parseInt(value);
+						break;
+					case "-interval": interval = Integer.parseInt(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+				}
+			}
+
+			if (path == null) throw new IllegalArgumentException("Give a game log");
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.out.println("Usage: java Replay game.log [-round N | -action K | -event K] [-interval N]");
+			return;
+		}
+
+		try {
+			long start = System.nanoTime();
+			Replay r = new Replay(path, null, interval);
+			long loaded = System.nanoTime();
+
+			if (seek == null) {
+				r.seekAction(r.getActionCount());
+			} else if (seek.equals("-round")) {
+				r.seekRound(target);
+			} else if (seek.equals("-action")) {
+				r.seekAction(target);
+			} else {
+				r.seekEvent(target);
+			}
+
+			long sought = System.nanoTime();
+			r.print();
+
+			System.out.printf("%nLoaded %d actions over %d rounds in %.1f ms, seek took %.3f ms%n", r.getActionCount(),
+				r.getRoundCount(), (loaded - start) / 1e6, (sought - loaded) / 1e6);
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Could not replay " + path + ": " + e.getMessage());
+		}
+	}
+
+	// Prints the players, the disputes of the round and the contested territories
+	private void print() {
+		GameEngine g = engine;
+		Player[] players = g.getPlayers();
+
+		System.out.println("Round " + g.getRound() + ", action " + position + " of " + actionCount);
+
+		for (int i = 0; i < players.length; i++) {
+			Player p = players[i];
+			System.out.printf("  %-16s crowns %2d  money %3d  territories %2d  units %d/%d/%d/%d%s%n", p.getName(),
+				p.getCrowns(), p.getMoney(), p.getTerritories().size(), p.getTotalFoot(), p.getTotalArch(),
+				p.getTotalCav(), p.getTotalSiege(), p == g.getFirstPlayer() ? "  (first)" : "");
+		}
+
+		if (g.isOver()) System.out.println("  " + g.getWinner().getName() + " has won");
+
+		// Battles that ended the last round played
+		int round = g.isOver() ? g.getRound() : g.getRound() - 1;
+		System.out.println("\nDisputes settled at the end of round " + round + ":");
+
+		for (int i = 0; i < disputeCount; i++) {
+			if (disputeRound[i] != round) continue;
+
+			String[] results = {"both armies fell", "attacker won", "defender held"};
+			System.out.printf("  %-20s %-16s attacker left %d, defender left %d%n",
+				g.getBoard().getTerritory(disputeId[i]).getPrefName(), results[disputeWinner[i]], attackerLeft[i], defenderLeft[i]);
+		}
+
+		Territory[] terrs = g.getBoard().getTerritories();
+		boolean any = false;
+
+		for (int i = 0; i < terrs.length; i++) {
+			if (!terrs[i].isDisputed()) continue;
+
+			if (!any) System.out.println("\nDisputed now:");
+			any = true;
+
+			System.out.println("  " + terrs[i].getPrefName() + ": " + terrs[i].getAtk().getOwner().getName() + " attacking "
+				+ terrs[i].getDef().getOwner().getName());
+		}
+	}
+}
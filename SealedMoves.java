@@ -0,0 +1,172 @@
+/*
+	Gathers the sealed moves of a phase (every bid, or every pair of picked cards) from bots at once
+
+	Bids and picks are hidden and do not depend on each other, so no bot has to wait for another.
+	begin() sets every bot thinking on its own copy of the game, which hides the other players'
+	sealed choices as the game itself does, while people give their moves on the console or over
+	the network. A phase then takes as long as its slowest player rather than all of them in turn.
+
+	The phase has a deadline, the bots' time plus a little grace. A bot that has not answered by
+	then, failed, or answered with something other than its own bid or pick is given defaultMove():
+	a bid of nothing, or the first two cards in the player's hand. A bot playing more than one seat
+	thinks for them one after another with its time shared between them. A bot given up on may
+	still be thinking when the next phase begins, its new moves then wait for it to finish, so a
+	bot is never run on two threads at once.
+*/
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SealedMoves {
+	// Time past the bots' deadline before their moves are given up on
+	private static final long GRACE = 50000000L;
+
+	private ExecutorService pool;					// Made on first use
+	private GameEngine engine;
+	private CompletableFuture<Action>[] pending;	// By the index players were named at, null for people
+	private boolean[] late;
+	private long deadline;
+
+	// Last work given to each bot while it runs, the entry goes once it ends (guarded by itself)
+	private IdentityHashMap<Bot, CompletableFuture<Void>> running = new IdentityHashMap<Bot, CompletableFuture<Void>>();
+
+	/*
+		Starts the bots of the current bid or pick phase, bots[i] plays the player named at index i
+		and null seats are people. Bots that have already moved are left out.
+	*/
+	public void begin(GameEngine g, Bot[] bots, long botTime) {
+		int n = bots.length;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		CompletableFuture<Action>[] futures = new CompletableFuture[n];
+
+		engine = g;
+		pending = futures;
+		late = new boolean[n];
+
+		long start = System.nanoTime();
+		deadline = start + botTime + GRACE;
+
+		for (int i = 0; i < n; i++) {
+			if (bots[i] == null || pending[i] != null || hasMoved(g, g.getPlayer(i))) continue;
+
+			// Every seat this bot still has to move for, each on its own copy made before anyone moves
+			int[] group = new int[n];
+			GameEngine[] copies = new GameEngine[n];
+			int size = 0;
+
+			for (int j = i; j < n; j++) {
+				if (bots[j] != bots[i] || hasMoved(g, g.getPlayer(j))) continue;
+
+				pending[j] = new CompletableFuture<Action>();
+				copies[size] = g.copy(new SeededDice(), g.getPlayer(j));
+				group[size++] = j;
+			}
+
+			Bot bot = bots[i];
+			int count = size;
+
+			if (pool == null) {
+				pool = Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r, "sealed-moves");
+					t.setDaemon(true);
+					return t;
+				});
+			}
+
+			Runnable work = () -> {
+				for (int k = 0; k < count; k++) {
+					int seat = group[k];
+
+					try {
+						GameEngine copy = copies[k];
+						futures[seat].complete(bot.choose(copy, copy.getPlayer(seat), start + botTime * (k + 1) / count));
+					} catch (RuntimeException e) {
+						futures[seat].completeExceptionally(e);
+					}
+				}
+			};
+
+			// Starts once the bot is done with anything it was given before, however that ended
+			CompletableFuture<Void> task;
+
+			synchronized (running) {
+				CompletableFuture<Void> last = running.get(bot);
+				task = last == null ? CompletableFuture.runAsync(work, pool) : last.handle((v, e) -> null).thenRunAsync(work, pool);
+				running.put(bot, task);
+			}
+
+			task.whenComplete((v, e) -> {
+				synchronized (running) {
+					running.remove(bot, task);
+				}
+			});
+		}
+	}
+
+	/*
+		The move of the bot named at index i for the real game, waiting no later than the deadline
+		Gives the default move if the bot was late, failed or made some other move
+	*/
+	public Action collect(int i) {
+		Player p = engine.getPlayer(i);
+		Action a = null;
+
+		try {
+			a = pending[i].get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException | ExecutionException e) {
+			// Falls back to the default move
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// The bot's move names its copy's player, it is made again for the real one
+		Action own = null;
+
+		if (a instanceof BidAction && engine.getPhase() == GameEngine.BID) {
+			own = new BidAction(p, ((BidAction) a).getAmount());
+		} else if (a instanceof PickCards && engine.getPhase() == GameEngine.PICK) {
+			own = new PickCards(p, ((PickCards) a).getFirst(), ((PickCards) a).getSecond());
+		}
+
+		late[i] = own == null;
+		return own == null ? defaultMove(engine, p) : own;
+	}
+
+	// Whether collect(i) gave the default move
+	public boolean isLate(int i) {
+		return late[i];
+	}
+
+	// Bots still thinking, including ones given up on
+	public int getBusyCount() {
+		synchronized (running) {
+			return running.size();
+		}
+	}
+
+	// Lets the pool's threads end, a later begin() makes a new pool
+	public void shutdown() {
+		if (pool != null) pool.shutdown();
+		pool = null;
+	}
+
+	/*
+		The move made for a player who runs out of time in a sealed phase, null outside of one
+	*/
+	public static Action defaultMove(GameEngine g, Player p) {
+		if (g.getPhase() == GameEngine.BID) return new BidAction(p, 0);
+		if (g.getPhase() != GameEngine.PICK) return null;
+
+		int[] cards = p.getCards();
+		return new PickCards(p, cards[0], cards[1]);
+	}
+
+	private static boolean hasMoved(GameEngine g, Player p) {
+		return g.getPhase() == GameEngine.BID ? g.hasBid(p) : g.hasPicked(p);
+	}
+}
@@ -0,0 +1,35 @@
+/*
+	Dice backed by a SplittableRandom
+
+	The same seed always gives the same rolls. split() hands out an independent source for
+	another thread or task, so parallel runs stay reproducible without sharing a generator.
+*/
+import java.util.SplittableRandom;
+
+public class SeededDice implements DiceSource {
+	private SplittableRandom rng;
+
+	/*
+		Constructors
+	*/
+	public SeededDice(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	public SeededDice() {
+		this(new SplittableRandom());
+	}
+
+	private SeededDice(SplittableRandom rng) {
+		this.rng = rng;
+	}
+
+	public int roll() {
+		return rng.nextInt(6) + 1;
+	}
+
+	// Returns a new independent source, this source keeps its own sequence
+	public SeededDice split() {
+		return new SeededDice(rng.split());
+	}
+}
@@ -0,0 +1,24 @@
+/*
+	Fires the siege weapons on one territory at a neighbouring enemy, null territories pass
+*/
+public class SiegeAction extends Action {
+	private Territory from, to;
+
+	public SiegeAction(Player player, Territory from, Territory to) {
+		super(player, SIEGE);
+		this.from = from;
+		this.to = to;
+	}
+
+	public boolean isPass() {
+		return from == null;
+	}
+
+	public Territory getFrom() {
+		return from;
+	}
+
+	public Territory getTo() {
+		return to;
+	}
+}
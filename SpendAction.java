@@ -0,0 +1,37 @@
+/*
+	Buys units (and optionally a castle) for a city or castle the player defends
+	A player may spend several times in one turn, a SpendAction without a territory ends spending
+*/
+public class SpendAction extends Action {
+	private Territory location;
+	private int[] units;
+	private boolean castle;
+
+	public SpendAction(Player player, Territory location, int[] units, boolean castle) {
+		super(player, SPEND);
+		this.location = location;
+		this.units = units;
+		this.castle = castle;
+	}
+
+	// Finished spending
+	public SpendAction(Player player) {
+		this(player, null, new int[4], false);
+	}
+
+	public boolean isDone() {
+		return location == null;
+	}
+
+	public Territory getLocation() {
+		return location;
+	}
+
+	public int[] getUnits() {
+		return units;
+	}
+
+	public boolean hasCastle() {
+		return castle;
+	}
+}
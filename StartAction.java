@@ -0,0 +1,15 @@
+/*
+	Chooses a player's starting city, which gets a castle and the starting army
+*/
+public class StartAction extends Action {
+	private Territory location;
+
+	public StartAction(Player player, Territory location) {
+		super(player, START);
+		this.location = location;
+	}
+
+	public Territory getLocation() {
+		return location;
+	}
+}
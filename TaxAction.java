@@ -0,0 +1,8 @@
+/*
+	Collects the value of the player's largest supply chain
+*/
+public class TaxAction extends Action {
+	public TaxAction(Player player) {
+		super(player, TAX);
+	}
+}
@@ -6,12 +6,17 @@
 	Connections are shown through an array that houses adjacent territory references.
 	Territories can house an army and hold attackers until battles get resolved.
 	Castles can be placed on territories.
+	Ids are assigned by the Board the territory belongs to, -1 until then.
+	The board also gives each territory a bitset of its neighbours' ids for O(1) adjacency checks.
+	Players on the territory are told whenever its defender, attacker, value or crown changes.
 */
 
 public class Territory {
+	private int id = -1;
 	private String name;
 	private int value;
 	private Territory[] connections;
+	private long[] adjacency;					// Neighbour ids as a bitset, null if not on a board
 	private Army atk;
 	private Army def;
 	private boolean crown;
@@ -85,6 +90,12 @@ public class Territory {
 		Checks to see if other is connected
 	*/
 	public boolean isAdjacent(Territory other) {
+		int otherId = other.getId();
+
+		if (adjacency != null && otherId >= 0) {
+			return (otherId >>> 6) < adjacency.length && (adjacency[otherId >>> 6] & (1L << otherId)) != 0;
+		}
+
 		for (int i = 0; i < connections.length; i++) {
 			if (connections[i].equals(other)) {
 				return true;
@@ -99,6 +110,7 @@ public class Territory {
 		Otherwise makes the territory unclaimed
 	*/
 	public void removeDef() {
+		Player oldDef = getDefPly(), oldAtk = getAtkPly();
 		def.getOwner().removeTerr(this);
 
 		if (atk != null) {
@@ -107,14 +119,28 @@ public class Territory {
 		} else {
 			def = null;
 		}
+
+		notifyChange(oldDef);
+		notifyChange(oldAtk);
 	}
 
 	/*
 		Removes attacker
 	*/
 	public void removeAtk() {
+		Player oldAtk = getAtkPly();
 		atk.getOwner().removeTerr(this);
 		atk = null;
+
+		notifyChange(oldAtk);
+		notifyChange(getDefPly());
+	}
+
+	// Tells a player that this territory changed
+	private void notifyChange(Player p) {
+		if (p != null) {
+			p.territoryChanged(this);
+		}
 	}
 
 	/*
@@ -158,6 +184,7 @@ public class Territory {
 
 		newConnections[i] = newTerr;
 		connections = newConnections;
+		adjacency = null;
 
 		// Adds connection to other territory
 		newConnections = new Territory[newTerr.getConnections().length+1];
@@ -173,12 +200,26 @@ public class Territory {
 	/*
 		Setters
 	*/
+	public void setId(int id) {
+		this.id = id;
+	}
+
 	public void setDef(Army def) {
+		Player oldDef = getDefPly();
 		this.def = def;
+
+		notifyChange(oldDef);
+		if (getDefPly() != oldDef) notifyChange(getDefPly());
 	}
 
 	public void setAtk(Army atk) {
+		Player oldAtk = getAtkPly();
 		this.atk = atk;
+
+		// Disputes change the defender's supply chains too
+		notifyChange(getDefPly());
+		notifyChange(oldAtk);
+		if (getAtkPly() != oldAtk) notifyChange(getAtkPly());
 	}
 
 	public void setName(String name) {
@@ -187,14 +228,22 @@ public class Territory {
 
 	public void setValue(int value) {
 		this.value = value;
+		notifyChange(getDefPly());
 	}
 
 	public void setConnections(Territory[] connections) {
 		this.connections = connections;
+		adjacency = null;
+	}
+
+	// Set by Board after connections, cleared whenever connections change
+	public void setAdjacency(long[] adjacency) {
+		this.adjacency = adjacency;
 	}
 
 	public void setCrown(boolean crown) {
 		this.crown = crown;
+		notifyChange(getDefPly());
 	}
 
 	public void setCastle(boolean castle) {
@@ -212,6 +261,10 @@ public class Territory {
 	/*
 		Getters
 	*/
+	public int getId() {
+		return id;
+	}
+
 	public Army getAtk() {
 		return atk;
 	}
@@ -240,6 +293,19 @@ public class Territory {
 		return canStart;
 	}
 
+	// Zero copy access to connections
+	public int getConnectionCount() {
+		return connections.length;
+	}
+
+	public Territory getConnection(int i) {
+		return connections[i];
+	}
+
+	public long[] getAdjacency() {
+		return adjacency;
+	}
+
 	public Territory[] getConnections() {
 		Territory[] temp = new Territory[connections.length];
 
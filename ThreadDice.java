@@ -0,0 +1,26 @@
+/*
+	Dice that give each thread its own stream
+
+	Each thread's generator is split from a root SplittableRandom the first time that thread rolls,
+	so threads never contend on a shared generator. Rolls are reproducible per thread as long as
+	threads make their first roll in the same order.
+*/
+import java.util.SplittableRandom;
+
+public class ThreadDice implements DiceSource {
+	private SplittableRandom root;
+	private ThreadLocal<SplittableRandom> streams;
+
+	public ThreadDice(long seed) {
+		root = new SplittableRandom(seed);
+		streams = ThreadLocal.withInitial(this::nextStream);
+	}
+
+	public int roll() {
+		return streams.get().nextInt(6) + 1;
+	}
+
+	private synchronized SplittableRandom nextStream() {
+		return root.split();
+	}
+}
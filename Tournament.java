@@ -0,0 +1,361 @@
+/*
+	Command line self-play tournament
+
+	Usage: java Tournament [options] bot bot [bot ...]
+
+	Bots:
+		heuristic						HeuristicBot with the default Evaluator
+		heuristic:c,t,a,m,e				HeuristicBot with crown, tax, army, money and exposure weights
+		mcts							MctsBot on one thread (games already run in parallel)
+		mcts:nodes						MctsBot with a node pool of the given size
+
+	Options:
+		-games N			Games to play (100)
+		-board path			Board file (risk_eu_board.txt)
+		-threads N			Games played at once (every core)
+		-seed N				Seed for the first game, game g uses seed + g (time)
+		-time ms			Time each bot has per move (5)
+		-rounds N			Rounds before a game counts as unfinished (100)
+		-cards a,b,...		Card ids each player starts with (1,1,2,3,3,4,5,5)
+		-win N				Crowns needed to win
+		-castles N			Castles on the board at most
+		-start N			Starting money
+		-units f,a,c,s		Unit limits per player
+		-log dir			Writes an event log of game g to dir/game-g.log (see EventLog)
+
+	Games run on a fixed pool with a bounded queue, each with its own seeded dice and its own
+	bots. Seats rotate from game to game so no bot always bids or plays first. Prints win rates
+	(with 95% Wilson intervals), average rounds to a win, the average crowns of each bot at the end
+	of every round, and games per second.
+*/
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class Tournament {
+	private String[] specs;
+	private Board board;
+	private String boardPath;
+	private String logDir;						// Null when games are not recorded
+	private int[] cards = {1,1,2,3,3,4,5,5};
+	private long moveTime = 5000000;
+	private int maxRounds = 100;
+
+	// Rule changes, -1 keeps the engine's default
+	private int winCrownCount = -1, maxCastles = -1, startAmt = -1;
+	private int[] maxUnits;
+
+	private Stats stats;
+
+	public static void main(String[] args) throws InterruptedException {
+		int games = 100, threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		String boardPath = "risk_eu_board.txt";
+
+		Tournament t = new Tournament();
+		int count = 0;
+		String[] specs = new String[args.length];
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (!args[i].startsWith("-")) {
+					specs[count++] = args[i];
+					continue;
+				}
+
+				if (i + 1 == args.length) throw new IllegalArgumentException(args[i] + " needs a value");
+				String value = args[++i];
+
+				switch (args[i - 1]) {
+					case "-games": games = Integer.parseInt(value); break;
+					case "-board": boardPath = value; break;
+					case "-threads": threads = Integer.parseInt(value); break;
+					case "-seed": seed = Long.parseLong(value); break;
+					case "-time": t.moveTime = Long.parseLong(value) * 1000000; break;
+					case "-rounds": t.maxRounds = Integer.parseInt(value); break;
+					case "-cards": t.cards = parseList(value); break;
+					case "-win": t.winCrownCount = Integer.parseInt(value); break;
+					case "-castles": t.maxCastles = Integer.parseInt(value); break;
+					case "-start": t.startAmt = Integer.parseInt(value); break;
+					case "-units": t.maxUnits = parseList(value); break;
+					case "-log": t.logDir = value; break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+				}
+			}
+
+			if (count < 2) throw new IllegalArgumentException("Give at least two bots");
+
+			t.specs = new String[count];
+			System.arraycopy(specs, 0, t.specs, 0, count);
+
+			// Every spec is checked once before any game starts
+			for (int i = 0; i < count; i++) makeBot(t.specs[i], 0);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.out.println("Usage: java Tournament [-games N] [-board path] [-threads N] [-seed N] [-time ms] [-rounds N]");
+			System.out.println("       [-cards a,b,...] [-win N] [-castles N] [-start N] [-units f,a,c,s] [-log dir] bot bot [bot ...]");
+			System.out.println("Bots: heuristic, heuristic:crown,tax,army,money,exposure, mcts, mcts:nodes");
+			return;
+		}
+
+		t.board = new Board(boardPath);
+		t.boardPath = boardPath;
+		t.run(games, threads, seed);
+	}
+
+	/*
+		Plays every game on a fixed pool, then prints the report
+	*/
+	private void run(int games, int threads, long seed) throws InterruptedException {
+		stats = new Stats(specs.length);
+
+		// A full queue makes the submitting thread play the game itself, so tasks never pile up
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long start = System.nanoTime();
+
+		for (int g = 0; g < games; g++) {
+			int game = g;
+			pool.execute(() -> playSafely(game, seed + game));
+		}
+
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+
+		report((System.nanoTime() - start) / 1e9);
+	}
+
+	private void playSafely(int game, long seed) {
+		try {
+			stats.add(play(game, seed));
+		} catch (RuntimeException e) {
+			stats.fail("Game " + game + " (seed " + seed + "): " + e);
+		}
+	}
+
+	/*
+		Plays one game, seats rotate with the game number
+	*/
+	private Result play(int game, long seed) {
+		int n = specs.length;
+		String[] names = new String[n];
+		Bot[] bots = new Bot[n];
+		int[] botAt = new int[n];					// Spec index by seat
+
+		for (int s = 0; s < n; s++) {
+			botAt[s] = (s + game) % n;
+			names[s] = (s + 1) + ":" + specs[botAt[s]];
+			bots[s] = makeBot(specs[botAt[s]], seed * 31 + s);
+		}
+
+		GameEngine engine = new GameEngine(names, board.copy(), cards, new SeededDice(seed));
+
+		if (winCrownCount >= 0) engine.setWinCrownCount(winCrownCount);
+		if (maxCastles >= 0) engine.setMaxCastles(maxCastles);
+		if (startAmt >= 0) engine.setStartAmt(startAmt);
+		if (maxUnits != null) engine.setMaxUnits(maxUnits);
+
+		if (logDir == null) return play(engine, bots, botAt, names);
+
+		try (EventLog log = new EventLog(logDir + "/game-" + game + ".log", boardPath)) {
+			engine.setEventLog(log);
+			return play(engine, bots, botAt, names);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Result play(GameEngine engine, Bot[] bots, int[] botAt, String[] names) {
+		int n = bots.length;
+		Player[] seats = engine.getPlayers().clone();
+		Result out = new Result(n, maxRounds);
+		int round = engine.getRound();
+
+		while (!engine.isOver() && engine.getRound() <= maxRounds) {
+			Player p = engine.getActingPlayer();
+			int seat = indexOf(seats, p);
+
+			Action a = bots[seat].choose(engine, p, System.nanoTime() + moveTime);
+
+			if (!engine.apply(a)) {
+				throw new IllegalStateException(names[seat] + " made an illegal move: " + engine.getError());
+			}
+
+			out.actions++;
+
+			// Crowns at the end of each round, and at the end of the game
+			if (engine.getRound() != round || engine.isOver()) {
+				if (round >= 1 && round <= maxRounds) {
+					for (int s = 0; s < n; s++) out.crowns[round - 1][botAt[s]] = seats[s].getCrowns();
+					out.rounds = round;
+				}
+
+				round = engine.getRound();
+			}
+		}
+
+		if (engine.isOver()) out.winner = botAt[indexOf(seats, engine.getWinner())];
+
+		return out;
+	}
+
+	/*
+		Report
+	*/
+	private void report(double seconds) {
+		Stats s = stats;
+		int n = specs.length;
+
+		System.out.printf("Played %d games in %.2f s: %.1f games/s, %.0f actions/s%n", s.played, seconds,
+			s.played / seconds, s.actions / seconds);
+
+		if (s.failed > 0) {
+			System.out.println(s.failed + " games failed, the first: " + s.firstFailure);
+		}
+
+		System.out.printf("%n%-30s %6s %22s %14s%n", "Bot", "Wins", "Win rate", "Rounds to win");
+
+		for (int b = 0; b < n; b++) {
+			double rate = s.played == 0 ? 0 : (double) s.wins[b] / s.played;
+			double[] ci = s.played == 0 ? new double[2] : BattleSimulator.wilson(s.wins[b], s.played);
+			String rounds = s.wins[b] == 0 ? "-" : String.format("%.2f", (double) s.winRounds[b] / s.wins[b]);
+
+			System.out.printf("%-30s %6d %6.1f%% [%5.1f%%, %5.1f%%] %14s%n", (b + 1) + " " + specs[b], s.wins[b], rate * 100,
+				ci[0] * 100, ci[1] * 100, rounds);
+		}
+
+		System.out.println("Unfinished after " + maxRounds + " rounds: " + (s.played - s.finished));
+
+		// Crown trajectories over games still running at each round
+		System.out.printf("%nAverage crowns at the end of each round%n%-6s %6s", "Round", "Games");
+		for (int b = 0; b < n; b++) System.out.printf(" %12s", "Bot " + (b + 1));
+		System.out.println();
+
+		for (int r = 0; r < s.reached.length && s.reached[r] > 0; r++) {
+			System.out.printf("%-6d %6d", r + 1, s.reached[r]);
+			for (int b = 0; b < n; b++) System.out.printf(" %12.2f", (double) s.crowns[r][b] / s.reached[r]);
+			System.out.println();
+		}
+	}
+
+	/*
+		Bots
+	*/
+	private static Bot makeBot(String spec, long seed) {
+		String[] parts = spec.split(":", 2);
+
+		try {
+			switch (parts[0]) {
+				case "heuristic":
+					if (parts.length == 1) return new HeuristicBot();
+
+					double[] w = parseWeights(parts[1]);
+					return new HeuristicBot(new Evaluator(w[0], w[1], w[2], w[3], w[4]), 0.4);
+
+				case "mcts":
+					int nodes = parts.length == 1 ? 1 << 14 : Integer.parseInt(parts[1]);
+					return new MctsBot(1, nodes, seed);
+
+				default:
+					throw new IllegalArgumentException("Unknown bot " + spec);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad numbers in " + spec);
+		}
+	}
+
+	private static double[] parseWeights(String list) {
+		String[] parts = list.split(",");
+		if (parts.length != 5) throw new IllegalArgumentException("Give five weights: crown,tax,army,money,exposure");
+
+		double[] out = new double[5];
+		for (int i = 0; i < 5; i++) out[i] = Double.parseDouble(parts[i]);
+
+		return out;
+	}
+
+	private static int[] parseList(String list) {
+		String[] parts = list.split(",");
+		int[] out = new int[parts.length];
+
+		for (int i = 0; i < parts.length; i++) out[i] = Integer.parseInt(parts[i].trim());
+
+		return out;
+	}
+
+	private static int indexOf(Player[] arr, Player p) {
+		for (int i = 0; i < arr.length; i++) {
+			if (arr[i] == p) return i;
+		}
+
+		return -1;
+	}
+
+	/*
+		One game's outcome, by bot (spec index) rather than seat
+	*/
+	private static class Result {
+		int winner = -1;
+		int rounds;								// Rounds completed
+		long actions;
+		int[][] crowns;							// [round - 1][bot]
+
+		Result(int bots, int maxRounds) {
+			crowns = new int[maxRounds][bots];
+		}
+	}
+
+	/*
+		Totals over every game, added to by the game threads
+	*/
+	private static class Stats {
+		int played, finished, failed;
+		long actions;
+		String firstFailure;
+		int[] wins;
+		long[] winRounds;
+		int[] reached;							// Games that completed each round
+		long[][] crowns;						// Summed over those games
+
+		Stats(int bots) {
+			wins = new int[bots];
+			winRounds = new long[bots];
+			reached = new int[1];
+			crowns = new long[1][bots];
+		}
+
+		synchronized void add(Result r) {
+			played++;
+			actions += r.actions;
+
+			if (r.winner >= 0) {
+				finished++;
+				wins[r.winner]++;
+				winRounds[r.winner] += r.rounds;
+			}
+
+			if (r.rounds > reached.length) {
+				int[] grownReached = new int[r.crowns.length];
+				System.arraycopy(reached, 0, grownReached, 0, reached.length);
+				reached = grownReached;
+
+				long[][] grownCrowns = new long[r.crowns.length][wins.length];
+				for (int i = 0; i < crowns.length; i++) grownCrowns[i] = crowns[i];
+				crowns = grownCrowns;
+			}
+
+			for (int i = 0; i < r.rounds; i++) {
+				reached[i]++;
+				for (int b = 0; b < wins.length; b++) crowns[i][b] += r.crowns[i][b];
+			}
+		}
+
+		synchronized void fail(String message) {
+			failed++;
+			if (firstFailure == null) firstFailure = message;
+		}
+	}
+}
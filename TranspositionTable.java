@@ -0,0 +1,65 @@
+/*
+	A fixed size, lock free cache of evaluations keyed by position hash (GameEngine.getHash())
+
+	Each slot is two longs in an AtomicLongArray: (key ^ data, data). A reader accepts a slot only
+	if the stored key XOR the stored data gives back its key, so a slot torn by two threads writing
+	at once reads as a miss instead of a wrong value. No locks are taken, writers simply replace
+	what was in the slot.
+
+	Values are doubles. The size is rounded up to a power of two so the slot is the low bits of the key.
+*/
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class TranspositionTable {
+	private AtomicLongArray slots;
+	private int mask;
+
+	public TranspositionTable(int entries) {
+		int size = 1;
+		while (size < entries) size <<= 1;
+
+		slots = new AtomicLongArray(size * 2);
+		mask = size - 1;
+	}
+
+	/*
+		Returns the value stored for a key, or missing if there is none
+	*/
+	public double get(long key, double missing) {
+		key = nonZero(key);
+		int i = slot(key);
+
+		long data = slots.get(i + 1);
+		long check = slots.get(i);
+
+		if ((check ^ data) != key) return missing;
+		return Double.longBitsToDouble(data);
+	}
+
+	public void put(long key, double value) {
+		key = nonZero(key);
+		int i = slot(key);
+		long data = Double.doubleToRawLongBits(value);
+
+		slots.set(i, key ^ data);
+		slots.set(i + 1, data);
+	}
+
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) slots.set(i, 0);
+	}
+
+	// Number of slots
+	public int size() {
+		return mask + 1;
+	}
+
+	private int slot(long key) {
+		return ((int) key & mask) * 2;
+	}
+
+	// Empty slots read as key 0, so key 0 is stored as 1
+	private static long nonZero(long key) {
+		return key == 0 ? 1 : key;
+	}
+}
@@ -0,0 +1,54 @@
+/*
+	Zobrist keys for hashing game positions
+
+	A position's hash is the XOR of one random 64 bit key per feature it has (this defender with
+	this many archers on territory 12, a castle on territory 3, ...), so a change to one feature is
+	undone from the hash with one XOR and redone with another. GameEngine keeps a hash per
+	territory this way and updates only the territories an action touched.
+
+	Keys come from a fixed 64 bit mixer over (kind, a, b, c) instead of stored tables, so they need
+	no memory, cover any board size and are the same in every run.
+
+	Unordered collections (card piles) are hashed by adding keys rather than XOR, so duplicate
+	cards do not cancel out and any order of the same cards gives the same hash.
+*/
+
+public final class Zobrist {
+	// Kinds of features
+	public static final int DEFENDER = 1;		// (territory, player)
+	public static final int DEF_UNITS = 2;		// (territory, unit type, count)
+	public static final int ATTACKER = 3;		// (territory, player)
+	public static final int ATK_UNITS = 4;		// (territory, unit type, count)
+	public static final int CASTLE = 5;			// (territory)
+	public static final int MONEY = 6;			// (player, amount)
+	public static final int DRAW = 7;			// (player, card)
+	public static final int DISCARD = 8;		// (player, card)
+	public static final int ACTIVE = 9;			// (player, slot, card)
+	public static final int FIRST = 10;			// (player)
+	public static final int CURRENT = 11;		// (player)
+	public static final int ORDER = 12;			// (turn position, player)
+	public static final int BID = 13;			// (player, amount)
+	public static final int STATE = 14;			// (phase, step, turn)
+	public static final int CARD = 15;			// (card in play)
+	public static final int VIEWER = 16;		// (player) whose point of view a cached value is from
+
+	private Zobrist() {
+	}
+
+	public static long key(int kind, int a, int b, int c) {
+		long z = kind * 0x9E3779B97F4A7C15L + a * 0xBF58476D1CE4E5B9L + b * 0x94D049BB133111EBL + c * 0xD6E8FEB86659FD93L;
+
+		// SplitMix64 finalizer
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public static long key(int kind, int a, int b) {
+		return key(kind, a, b, 0);
+	}
+
+	public static long key(int kind, int a) {
+		return key(kind, a, 0, 0);
+	}
+}
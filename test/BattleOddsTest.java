@@ -0,0 +1,38 @@
+public class BattleOddsTest {
+	public static void main(String[] args) {
+		BattleOdds odds = new BattleOdds();
+		BattleResolver resolver = new BattleResolver(new SeededDice(7));
+
+		int[][][] battles = {
+			{{10, 2, 4, 2}, {8, 3, 2, 1}},
+			{{3, 0, 0, 0}, {2, 0, 0, 0}},
+			{{5, 4, 0, 1}, {12, 0, 0, 0}},
+			{{25, 12, 12, 4}, {25, 12, 12, 4}}
+		};
+
+		for (int[][] b : battles) {
+			for (int castle = 0; castle < 2; castle++) {
+				long start = System.nanoTime();
+				odds.compute(b[0], b[1], castle == 1);
+				long time = System.nanoTime() - start;
+
+				System.out.printf("Exact     - Att: %.4f Def: %.4f None: %.4f AttLeft: %.2f DefLeft: %.2f (%d us)%n", odds.getAttackerWin(), 
+					odds.getDefenderWin(), odds.getMutualDestruction(), odds.getExpectedAttackers(), odds.getExpectedDefenders(), time / 1000);
+
+				// Compare against played out battles
+				int trials = 200000;
+				double[] wins = new double[3];
+				double attLeft = 0, defLeft = 0;
+
+				for (int i = 0; i < trials; i++) {
+					wins[resolver.resolve(b[0], b[1], castle == 1)]++;
+					attLeft += resolver.getAttackerTotal();
+					defLeft += resolver.getDefenderTotal();
+				}
+
+				System.out.printf("Simulated - Att: %.4f Def: %.4f None: %.4f AttLeft: %.2f DefLeft: %.2f%n%n", wins[BattleResolver.ATTACKER] / trials,
+					wins[BattleResolver.DEFENDER] / trials, wins[BattleResolver.NONE] / trials, attLeft / trials, defLeft / trials);
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+public class BattleResolverTest {
+	public static void main(String[] args) {
+		BattleResolver resolver = new BattleResolver(new SeededDice(42));
+
+		int[] att = {10, 2, 4, 2};
+		int[] def = {8, 3, 2, 1};
+
+		// Play one battle and show what is left
+		int winner = resolver.resolve(att, def, false);
+		printResult(resolver, winner);
+
+		// Inputs must not be modified
+		System.out.println("Attacker input: " + att[0] + " " + att[1] + " " + att[2] + " " + att[3]);
+
+		// Play the same battle many times with and without a castle
+		int trials = 100000;
+		for (int castle = 0; castle < 2; castle++) {
+			int[] wins = new int[3];
+
+			for (int i = 0; i < trials; i++) {
+				wins[resolver.resolve(att, def, castle == 1)]++;
+			}
+
+			System.out.println((castle == 1 ? "Castle" : "No castle") + " - Att: " + wins[BattleResolver.ATTACKER] + " Def: " 
+				+ wins[BattleResolver.DEFENDER] + " None: " + wins[BattleResolver.NONE]);
+		}
+
+		// A recorded battle replays exactly
+		DiceLog log = DiceLog.record(new SeededDice(3));
+		int first = new BattleResolver(log).resolve(att, def, true);
+
+		BattleResolver replayed = new BattleResolver(DiceLog.replay(log.getRolls(), log.getCount()));
+		int second = replayed.resolve(att, def, true);
+		System.out.println("Recorded " + log.getCount() + " rolls, replay matches: " + (first == second));
+	}
+
+	static void printResult(BattleResolver resolver, int winner) {
+		int[] a = resolver.getAttacker();
+		int[] d = resolver.getDefender();
+
+		System.out.println("Winner: " + winner + " after " + resolver.getTurns() + " turns");
+		System.out.println("Attacker: " + a[0] + " " + a[1] + " " + a[2] + " " + a[3]);
+		System.out.println("Defender: " + d[0] + " " + d[1] + " " + d[2] + " " + d[3]);
+	}
+}
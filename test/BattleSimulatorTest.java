@@ -0,0 +1,62 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class BattleSimulatorTest {
+	public static void main(String[] args) {
+		int[] att = {10, 2, 4, 2};
+		int[] def = {8, 3, 2, 1};
+		int[] threads = {1, 2, 3, 8, 16};
+		long[] trials = {5000, 1000000, 3000001};
+		int mismatches = 0;
+
+		// The same seed gives the same counts and histograms on any pool
+		for (long n : trials) {
+			BattleSimulator.Result first = null;
+
+			for (int t : threads) {
+				ForkJoinPool pool = new ForkJoinPool(t);
+				BattleSimulator.Result res = new BattleSimulator(pool).run(att, def, true, n, 5);
+				pool.shutdown();
+
+				if (res.getTrials() != n) mismatches++;
+
+				if (first == null) {
+					first = res;
+				} else if (!same(first, res)) {
+					mismatches++;
+					System.out.println("Trials " + n + " on " + t + " threads differ from 1 thread");
+				}
+			}
+
+			System.out.printf("Trials %d - Att: %d Def: %d None: %d%n", n, first.getCount(BattleResolver.ATTACKER),
+				first.getCount(BattleResolver.DEFENDER), first.getCount(BattleResolver.NONE));
+		}
+
+		// Another seed gives another run
+		BattleSimulator sim = new BattleSimulator();
+		if (same(sim.run(att, def, true, 1000000, 5), sim.run(att, def, true, 1000000, 6))) mismatches++;
+
+		// No trials is refused, a single one gives finite results
+		try {
+			sim.run(att, def, true, 0, 5);
+			mismatches++;
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		BattleSimulator.Result one = sim.run(att, def, true, 1, 5);
+		double[] ci = one.getInterval(BattleResolver.ATTACKER);
+		if (Double.isNaN(one.getAttackersMargin()) || Double.isNaN(one.getDefendersMargin()) || Double.isNaN(ci[0] + ci[1])) mismatches++;
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static boolean same(BattleSimulator.Result a, BattleSimulator.Result b) {
+		for (int w = 0; w < 3; w++) {
+			if (a.getCount(w) != b.getCount(w)) return false;
+		}
+
+		return Arrays.equals(a.getAttackerHistogram(), b.getAttackerHistogram())
+			&& Arrays.equals(a.getDefenderHistogram(), b.getDefenderHistogram());
+	}
+}
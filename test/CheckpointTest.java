@@ -0,0 +1,65 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CheckpointTest {
+	public static void main(String[] args) throws Exception {
+		String[] names = {"Billy", "Bobby", "Johnny"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		Path dir = Files.createTempDirectory("checkpoint");
+		String path = dir.resolve("game.ckpt").toString();
+		Board board = new Board("risk_eu_board.txt");
+		int games = 10, checks = 0, mismatches = 0;
+
+		for (int game = 0; game < games; game++) {
+			GameEngine engine = new GameEngine(names, board.copy(), cards, new SeededDice(game));
+			Bot bot = new HeuristicBot();
+
+			while (!engine.isOver() && engine.getRound() <= 100) {
+				// Every position goes through a file and back into a new engine
+				Checkpoint.save(engine, "risk_eu_board.txt", path);
+				Checkpoint saved = Checkpoint.open(path);
+				GameEngine loaded = saved.newEngine(board.copy(), new SeededDice(game));
+
+				checks++;
+				if (loaded.getHash() != engine.getHash() || loaded.computeHash() != engine.getHash()) mismatches++;
+				if (saved.getRound() != engine.getRound() || saved.getPhase() != engine.getPhase()) mismatches++;
+
+				// The loaded game plays on
+				if (!loaded.apply(bot.choose(loaded, loaded.getActingPlayer(), System.nanoTime() + 1000000))) mismatches++;
+
+				if (!engine.apply(bot.choose(engine, engine.getActingPlayer(), System.nanoTime() + 1000000))) {
+					System.out.println("Rejected: " + engine.getError());
+					return;
+				}
+			}
+		}
+
+		System.out.println("Checkpoints: " + checks + " Mismatches: " + mismatches);
+
+		// Parked games: many checkpoints opened and loaded at once
+		int parked = 1000;
+		GameEngine engine = new GameEngine(names, board.copy(), cards, new SeededDice(1));
+		Bot bot = new HeuristicBot();
+
+		for (int i = 0; i < parked; i++) {
+			if (engine.isOver()) engine = new GameEngine(names, board.copy(), cards, new SeededDice(i));
+
+			engine.apply(bot.choose(engine, engine.getActingPlayer(), System.nanoTime() + 100000));
+			Checkpoint.save(engine, "risk_eu_board.txt", dir.resolve("parked-" + i + ".ckpt").toString());
+		}
+
+		for (int pass = 0; pass < 3; pass++) {
+			long start = System.nanoTime();
+			long rounds = 0;
+
+			for (int i = 0; i < parked; i++) {
+				GameEngine g = Checkpoint.open(dir.resolve("parked-" + i + ".ckpt").toString()).newEngine(board.copy(), new SeededDice(i));
+				rounds += g.getRound();
+			}
+
+			System.out.printf("Loaded %d parked games in %.1f ms (rounds %d)%n", parked, (System.nanoTime() - start) / 1e6, rounds);
+		}
+
+		System.out.println("Checkpoint size: " + Files.size(dir.resolve("parked-0.ckpt")) + " bytes");
+	}
+}
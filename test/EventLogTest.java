@@ -0,0 +1,132 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class EventLogTest {
+	public static void main(String[] args) throws Exception {
+		String[] names = {"Billy", "Bobby", "Johnny"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		Path dir = Files.createTempDirectory("eventlog");
+		int games = 20, mismatches = 0;
+		long actions = 0, bytes = 0;
+
+		for (int game = 0; game < games; game++) {
+			String path = dir.resolve("game-" + game + ".log").toString();
+			GameEngine engine = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(game));
+			Bot bot = new HeuristicBot();
+
+			try (EventLog log = new EventLog(path, "risk_eu_board.txt")) {
+				engine.setEventLog(log);
+
+				while (!engine.isOver() && engine.getRound() <= 100) {
+					if (!engine.apply(bot.choose(engine, engine.getActingPlayer(), System.nanoTime() + 1000000))) {
+						System.out.println("Rejected: " + engine.getError());
+						return;
+					}
+
+					actions++;
+				}
+			}
+
+			byte[] whole = Files.readAllBytes(Paths.get(path));
+			bytes += whole.length;
+
+			// Replayed with the logged rolls the game ends the same, and logging it again gives the same file
+			GameEngine replay = replay(path, null);
+			if (replay == null || replay.getHash() != engine.getHash()) mismatches++;
+
+			String again = dir.resolve("again.log").toString();
+			replay(path, again);
+			if (!Arrays.equals(whole, Files.readAllBytes(Paths.get(again)))) mismatches++;
+
+			// A log cut short ends at its last whole event
+			Path cut = dir.resolve("cut.log");
+			Files.write(cut, Arrays.copyOf(whole, whole.length - 1));
+
+			EventReader torn = new EventReader(cut.toString());
+			while (torn.next());
+			if (!torn.isTorn()) mismatches++;
+
+			System.out.println("Game " + game + ": " + whole.length + " bytes, rounds " + engine.getRound());
+		}
+
+		System.out.printf("%nActions: %d Bytes per action: %.2f Mismatches: %d%n", actions, (double) bytes / actions, mismatches);
+
+		// Time apply() on replays with and without a log, once the JIT has warmed up
+		String path = dir.resolve("game-0.log").toString();
+		long plain = 0, logged = 0;
+
+		for (int i = 0; i < 2000; i++) {
+			long p = timeReplay(path, null), l = timeReplay(path, dir.resolve("again.log").toString());
+
+			if (i >= 1000) {
+				plain += p;
+				logged += l;
+			}
+		}
+
+		System.out.printf("apply() without a log: %d ns, with a log: %d ns%n", plain / 1000, logged / 1000);
+	}
+
+	// Plays a logged game again from its log, recording it to out unless out is null
+	private static GameEngine replay(String path, String out) throws Exception {
+		EventReader in = new EventReader(path);
+		GameEngine g = in.newEngine(new Board(in.getBoardPath()), rolls(path));
+		EventLog log = out == null ? null : new EventLog(out, in.getBoardPath());
+		if (log != null) g.setEventLog(log);
+
+		while (in.next()) {
+			if (in.getTag() == EventLog.ACTION && !g.apply(in.toAction(g))) {
+				System.out.println("Replay rejected: " + g.getError());
+				return null;
+			}
+
+			// Outcome of a battle the action just fought
+			if (in.getTag() == EventLog.DISPUTE) {
+				Army def = g.getBoard().getTerritory(in.getTerritory()).getDef();
+				if ((in.getWinner() == BattleResolver.NONE) != (def == null)) return null;
+			}
+		}
+
+		if (log != null) log.close();
+		return g;
+	}
+
+	// Average time per action of a replay
+	private static long timeReplay(String path, String out) throws Exception {
+		EventReader in = new EventReader(path);
+		GameEngine g = in.newEngine(new Board(in.getBoardPath()), rolls(path));
+		EventLog log = out == null ? null : new EventLog(out, in.getBoardPath());
+		if (log != null) g.setEventLog(log);
+
+		long total = 0;
+		int count = 0;
+
+		while (in.next()) {
+			if (in.getTag() != EventLog.ACTION) continue;
+
+			Action a = in.toAction(g);
+			long start = System.nanoTime();
+			g.apply(a);
+			total += System.nanoTime() - start;
+			count++;
+		}
+
+		if (log != null) log.close();
+		return total / count;
+	}
+
+	// Every roll in the log in the order it was made
+	private static DiceLog rolls(String path) throws Exception {
+		EventReader in = new EventReader(path);
+		byte[] rolls = new byte[1 << 16];
+		int count = 0;
+
+		while (in.next()) {
+			for (int i = 0; i < in.getRollCount(); i++) rolls[count++] = (byte) in.getRoll(i);
+		}
+
+		return DiceLog.replay(rolls, count);
+	}
+}
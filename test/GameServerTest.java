@@ -0,0 +1,201 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+public class GameServerTest {
+	static int active = 200, idle = 1000, lastRound = 4;
+	static int errors, finished, stopped, rejoined;
+	static String firstError;
+
+	public static void main(String[] args) throws Exception {
+		GameServer server = new GameServer(0, new Board("risk_eu_board.txt"));
+		Thread serverThread = new Thread(server, "game-server");
+		serverThread.start();
+
+		int port = server.getPort();
+
+		// Rooms are made up front, half of the active ones are won with a single crown
+		try (Socket s = new Socket("localhost", port)) {
+			PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+			in.readLine();
+
+			for (int i = 0; i < active; i++) out.println("CREATE a" + i + " 2" + (i % 2 == 0 ? " 1" : ""));
+			for (int i = 0; i < idle; i++) out.println("CREATE i" + i + " 2");
+			for (int i = 0; i < active + idle; i++) {
+				String line = in.readLine();
+				if (!line.equals("OK")) error(line);
+			}
+		}
+
+		// Every client runs on one selector here, idle ones join and never move
+		Selector selector = Selector.open();
+		ArrayList<Client> clients = new ArrayList<Client>();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < idle; i++) {
+			for (int seat = 0; seat < 2; seat++) clients.add(new Client(selector, port, "i" + i, "idle" + seat, true, i));
+		}
+
+		long connected = System.nanoTime();
+
+		for (int i = 0; i < active; i++) {
+			for (int seat = 0; seat < 2; seat++) clients.add(new Client(selector, port, "a" + i, "p" + seat, false, i * 2 + seat));
+		}
+
+		// Runs until every active game ended or reached the last round, or a minute went by
+		long deadline = System.nanoTime() + 60000000000L;
+
+		while (finished + stopped < active * 2 && System.nanoTime() < deadline) {
+			selector.select(100);
+
+			for (SelectionKey key : selector.selectedKeys()) {
+				((Client) key.attachment()).read(selector, port);
+			}
+
+			selector.selectedKeys().clear();
+		}
+
+		long played = System.nanoTime();
+
+		System.out.printf("Connected %d idle clients in %.0f ms%n", idle * 2, (connected - start) / 1e6);
+		System.out.printf("Active rooms: %d, players done: %d finished + %d stopped at round %d in %.0f ms%n",
+			active, finished, stopped, lastRound, (played - connected) / 1e6);
+		System.out.println("Rejoined: " + rejoined + " Errors: " + errors + (firstError != null ? " (" + firstError + ")" : ""));
+
+		server.stop();
+		serverThread.join();
+		selector.close();
+
+		System.out.println("Rooms left open: " + server.getRoomCount());
+	}
+
+	static void error(String line) {
+		errors++;
+		if (firstError == null) firstError = line;
+	}
+
+	/*
+		A scripted player, answers every prompt with a simple legal move
+	*/
+	static class Client {
+		SocketChannel ch;
+		ByteBuffer in = ByteBuffer.allocate(4096);
+		String room, name;
+		boolean idle, done, leaves;
+		SplittableRandom rng;
+
+		Client(Selector selector, int port, String room, String name, boolean idle, long seed) throws Exception {
+			this.room = room;
+			this.name = name;
+			this.idle = idle;
+			rng = new SplittableRandom(seed);
+
+			// One player of the first room drops out in round 2 and comes back
+			leaves = room.equals("a1") && name.equals("p0");
+			connect(selector, port);
+		}
+
+		void connect(Selector selector, int port) throws Exception {
+			ch = SocketChannel.open(new InetSocketAddress("localhost", port));
+			ch.configureBlocking(false);
+			ch.register(selector, SelectionKey.OP_READ, this);
+
+			send("JOIN " + room + " " + name);
+		}
+
+		void read(Selector selector, int port) throws Exception {
+			if (ch.read(in) < 0) {
+				ch.close();
+				return;
+			}
+
+			SocketChannel reading = ch;
+			int from = 0;
+			byte[] buf = in.array();
+
+			for (int i = 0; i < in.position(); i++) {
+				if (buf[i] != '\n') continue;
+
+				String line = new String(buf, from, i - from, StandardCharsets.UTF_8);
+				from = i + 1;
+
+				if (!idle && !done) handle(line.split(" "), selector, port);
+				if (!ch.isOpen()) return;
+
+				// Lines left from a connection that was dropped are not answered
+				if (ch != reading) {
+					in.clear();
+					return;
+				}
+			}
+
+			in.flip();
+			in.position(from);
+			in.compact();
+		}
+
+		void handle(String[] words, Selector selector, int port) throws Exception {
+			switch (words[0]) {
+				case "ERROR":
+					error(String.join(" ", words));
+					break;
+
+				case "ROUND":
+					int round = Integer.parseInt(words[1]);
+
+					if (leaves && round == 2) {
+						leaves = false;
+						rejoined++;
+						ch.close();
+						connect(selector, port);
+					} else if (round == lastRound) {
+						done = true;
+						stopped++;
+						send("QUIT");
+					}
+					break;
+
+				case "OVER":
+					done = true;
+					finished++;
+					send("QUIT");
+					break;
+
+				case "MOVE":
+					move(words);
+					break;
+
+				default:
+					// Everything else is only news
+			}
+		}
+
+		void move(String[] words) throws Exception {
+			switch (words[1]) {
+				case "BID": send("BID " + rng.nextInt(Integer.parseInt(words[2]) + 1)); break;
+				case "PICK": send("PICK " + words[2] + " " + words[3]); break;
+				case "START": send("START " + words[2 + rng.nextInt(words.length - 2)]); break;
+				case "SETUP": send("EXPAND PASS"); break;
+				case "CARD": send(Integer.parseInt(words[2]) <= 2 ? "TAX" : "MANEUVER PASS"); break;
+				case "SPEND": send("SPEND DONE"); break;
+				case "FORTIFY": send("FORTIFY PASS"); break;
+				default: send("SIEGE PASS");
+			}
+		}
+
+		void send(String line) throws Exception {
+			ByteBuffer b = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+			while (b.hasRemaining()) ch.write(b);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+public class HeuristicBotTest {
+	public static void main(String[] args) {
+		String[] names = {"Billy", "Bobby", "Johnny"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		long budget = 2000000;		// 2ms per move
+
+		int finished = 0;
+		long totalRounds = 0, moves = 0, late = 0;
+
+		for (int game = 0; game < 20; game++) {
+			GameEngine engine = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(game));
+			Bot[] bots = {new HeuristicBot(), new HeuristicBot(), new HeuristicBot()};
+
+			while (!engine.isOver() && engine.getRound() <= 100) {
+				// Bids and picks are open to everyone, otherwise only the current player acts
+				Player[] players = engine.getPlayers();
+				Player p = engine.getCurrentPlayer();
+				int seat = 0;
+
+				if (p == null) {
+					for (seat = 0; seat < players.length; seat++) {
+						if (!engine.hasBid(players[seat]) && engine.getPhase() == GameEngine.BID) break;
+						if (!engine.hasPicked(players[seat]) && engine.getPhase() == GameEngine.PICK) break;
+					}
+					p = players[seat];
+				} else {
+					while (players[seat] != p) seat++;
+				}
+
+				long start = System.nanoTime();
+				Action a = bots[seat].choose(engine, p, start + budget);
+
+				// More than a millisecond over counts as late, the first game warms up the JIT
+				if (game > 0 && System.nanoTime() - start > budget + 1000000) late++;
+
+				if (!engine.apply(a)) {
+					System.out.println("Rejected: " + engine.getError());
+					return;
+				}
+
+				moves++;
+			}
+
+			if (engine.isOver()) {
+				finished++;
+				System.out.println("Game " + game + ": " + engine.getWinner().getName() + " wins in round " + engine.getRound());
+			}
+
+			totalRounds += engine.getRound();
+		}
+
+		System.out.println("\nFinished: " + finished + "/20 Average rounds: " + (totalRounds / 20.0) + " Moves: " + moves + " Late moves: " + late);
+	}
+}
@@ -0,0 +1,54 @@
+public class MctsBotTest {
+	public static void main(String[] args) {
+		String[] names = {"Monte", "Billy", "Bobby"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		long budget = (args.length > 1 ? Long.parseLong(args[1]) : 100) * 1000000;
+
+		MctsBot mcts = new MctsBot(Runtime.getRuntime().availableProcessors(), 1 << 16, 1);
+		int wins = 0, finished = 0;
+		long searches = 0, iterations = 0, tableHits = 0, late = 0, worst = 0;
+
+		for (int game = 0; game < games; game++) {
+			GameEngine engine = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(game));
+			Player monte = engine.getPlayers()[0];
+			Bot heuristic = new HeuristicBot();
+
+			while (!engine.isOver() && engine.getRound() <= 100) {
+				Player p = engine.getActingPlayer();
+				Action a;
+
+				if (p == monte) {
+					long start = System.nanoTime();
+					a = mcts.choose(engine, p, start + budget);
+					long over = System.nanoTime() - start - budget;
+
+					// More than two milliseconds over counts as late
+					if (over > 2000000) late++;
+					worst = Math.max(worst, over);
+
+					searches++;
+					iterations += mcts.getIterations();
+					tableHits += mcts.getTableHits();
+				} else {
+					a = heuristic.choose(engine, p, System.nanoTime() + 2000000);
+				}
+
+				if (!engine.apply(a)) {
+					System.out.println("Rejected: " + engine.getError());
+					return;
+				}
+			}
+
+			if (engine.isOver()) {
+				finished++;
+				if (engine.getWinner() == monte) wins++;
+				System.out.println("Game " + game + ": " + engine.getWinner().getName() + " wins in round " + engine.getRound());
+			}
+		}
+
+		System.out.println("\nFinished: " + finished + "/" + games + " MCTS wins: " + wins + " Searches: " + searches
+			+ " Playouts per search: " + (searches == 0 ? 0 : iterations / searches) + " Table hits: " + tableHits + " Late: " + late + " Worst overrun: " + (worst / 1000) + "us");
+		mcts.shutdown();
+	}
+}
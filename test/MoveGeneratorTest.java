@@ -0,0 +1,63 @@
+import java.util.Random;
+
+public class MoveGeneratorTest {
+	public static void main(String[] args) {
+		String[] names = {"Billy", "Bobby", "Johnny"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		int rejected = 0, splits = 0, shortSplits = 0;
+		long moves = 0, actions = 0;
+
+		// Plays random games picking uniformly from the generated moves, every one must be accepted
+		for (int game = 0; game < 40; game++) {
+			Random rng = new Random(game);
+			GameEngine engine = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(game));
+			MoveGenerator gen = new MoveGenerator(engine);
+
+			// Every unit split in half of the games, a few per move in the rest
+			boolean coarse = game % 2 == 0;
+			gen.setCoarse(coarse);
+
+			while (!engine.isOver() && engine.getRound() <= (coarse ? 40 : 6)) {
+				Action chosen = null;
+				long seen = 0;
+
+				for (Player p : engine.getPlayers()) {
+					gen.reset(p);
+
+					while (gen.next()) {
+						// A split must leave two units behind
+						if (gen.getType() == Action.EXPAND && gen.getSplitTo() != null) {
+							splits++;
+							if (gen.getFrom().getDef().getTotal() - sum(gen.getUnits()) - sum(gen.getSplitUnits()) < 2) shortSplits++;
+						}
+
+						// Reservoir sample one move
+						if (rng.nextLong(++seen) == 0) chosen = gen.toAction();
+					}
+				}
+
+				moves += seen;
+
+				if (chosen == null) {
+					System.out.println("No moves in phase " + engine.getPhase() + " step " + engine.getStep());
+					return;
+				}
+
+				if (!engine.apply(chosen)) {
+					System.out.println("Rejected type " + chosen.getType() + ": " + engine.getError());
+					rejected++;
+					break;
+				}
+
+				actions++;
+			}
+		}
+
+		System.out.println("Actions: " + actions + " Moves generated: " + moves + " Rejected: " + rejected);
+		System.out.println("Splits generated: " + splits + " Leaving fewer than 2: " + shortSplits);
+	}
+
+	private static int sum(int[] units) {
+		return units[0] + units[1] + units[2] + units[3];
+	}
+}
@@ -0,0 +1,55 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class OddsTableTest {
+	public static void main(String[] args) throws Exception {
+		int[] maxUnits = {25, 12, 12, 4};
+		int[] unitValue = {1, 2, 3, 10, 12};
+
+		Path path = Files.createTempFile("odds_test", ".bin");
+
+		try {
+			run(new OddsTable(path.toString(), maxUnits, unitValue));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static void run(OddsTable table) {
+		BattleOdds exact = new BattleOdds();
+
+		int[][][] battles = {
+			{{10, 2, 4, 2}, {8, 3, 2, 1}},
+			{{3, 0, 0, 0}, {2, 0, 0, 0}},
+			{{5, 4, 0, 1}, {12, 0, 0, 0}}
+		};
+
+		for (int[][] b : battles) {
+			for (int castle = 0; castle < 2; castle++) {
+				exact.compute(b[0], b[1], castle == 1);
+
+				long start = System.nanoTime();
+				double first = table.getAttackerWin(b[0], b[1], castle == 1);
+				long miss = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				double second = table.getAttackerWin(b[0], b[1], castle == 1);
+				long hit = System.nanoTime() - start;
+
+				System.out.printf("Exact: %.4f Table: %.4f %.4f (miss %d us, hit %d ns)%n", exact.getAttackerWin(), first, second, miss / 1000, hit);
+			}
+		}
+
+		// A sub battle was filled by the first query
+		int[] att = {7, 2, 4, 2}, def = {0, 3, 2, 1};
+		exact.compute(att, def, false);
+		System.out.printf("Sub battle - Exact: %.4f Table: %.4f%n", exact.getAttackerWin(), table.getAttackerWin(att, def, false));
+
+		// Empty armies are settled without the table
+		int[] none = {0, 0, 0, 0};
+		System.out.printf("Empty defender: %.4f Empty attacker: %.4f Both empty: %.4f%n", table.getAttackerWin(att, none, false),
+			table.getAttackerWin(none, def, true), table.getAttackerWin(none, none, false));
+
+		table.flush();
+	}
+}
@@ -1,4 +1,8 @@
+import java.util.List;
+
 public class PlayerTest {
+	static int failures;
+
 	public static void main(String[] args) {
 		int[] testCards = {1, 2, 3, 4, 3, 6, 7, 8};
 
@@ -54,5 +58,229 @@ public class PlayerTest {
 		System.out.println(p1);
 		p1.useCard();
 		System.out.println(p1);
+
+		supplyChains();
+		territorySets();
+		crowns();
+
+		System.out.println("Failures: " + failures);
+	}
+
+	/*
+		A line of 70 territories, T0 - T1 - ... - T69, so the bitsets take two words
+		Crowns on T1, T3 and T65, values 1 to 3
+	*/
+	static Board line() {
+		Territory[] terrs = new Territory[70];
+		String[][] edges = new String[69][];
+
+		for (int i = 0; i < terrs.length; i++) {
+			boolean crown = i == 1 || i == 3 || i == 65;
+			terrs[i] = new Territory("T" + i, 1 + i % 3, crown, crown ? "C" + i : null, true);
+			if (i > 0) edges[i - 1] = new String[] {"T" + (i - 1), "T" + i};
+		}
+
+		return new Board(terrs, edges);
+	}
+
+	static void take(Player p, Territory t) {
+		p.addTerr(t);
+		t.setDef(new Army(1, 0, 0, 0, p));
+	}
+
+	static void attack(Player p, Territory t) {
+		p.addTerr(t);
+		t.setAtk(new Army(1, 0, 0, 0, p));
+	}
+
+	/*
+		Chains join as territories are gained and split when one is disputed or lost
+	*/
+	static void supplyChains() {
+		Board b = line();
+		Player p = new Player("Chains", "red"), q = new Player("Raider", "blue");
+
+		take(p, b.getTerritory(0));
+		take(p, b.getTerritory(1));
+		take(p, b.getTerritory(2));
+		take(p, b.getTerritory(4));
+		check(p.getChainValue(b.getTerritory(0)) == 1 + 2 + 3, "T0 - T2 chain value");
+		check(p.getChainValue(b.getTerritory(4)) == 2, "T4 alone");
+		check(p.getTaxValue() == 6, "Tax from the crowned T0 - T2 chain");
+
+		// T3 joins both chains into one
+		take(p, b.getTerritory(3));
+		check(p.getChainValue(b.getTerritory(0)) == 1 + 2 + 3 + 1 + 2, "Joined chain value");
+		check(p.getChainCrowns(b.getTerritory(4)) == 2, "Joined chain crowns");
+		check(p.getSupplyChain(b.getTerritory(4)).length == 5, "Joined chain length");
+		checkChains(b, p);
+
+		// A dispute on T2 splits it, T2 itself is in no chain
+		attack(q, b.getTerritory(2));
+		check(p.getChainValue(b.getTerritory(2)) == 0, "Disputed T2 out of the chain");
+		check(p.getChainValue(b.getTerritory(0)) == 3, "T0 - T1 after the split");
+		check(p.getChainValue(b.getTerritory(4)) == 3, "T3 - T4 after the split");
+		check(p.getSupplyChain(b.getTerritory(0)).length == 2, "Split chain length");
+		checkChains(b, p);
+
+		// Losing T2 keeps them split and gives the raider a chain of one
+		b.getTerritory(2).removeDef();
+		check(!p.isOn(b.getTerritory(2)), "T2 lost");
+		check(p.getChainValue(b.getTerritory(0)) == 3 && q.getChainValue(b.getTerritory(2)) == 3, "Chains after the loss");
+		checkChains(b, p);
+		checkChains(b, q);
+
+		// Taking it back joins them again
+		attack(p, b.getTerritory(2));
+		b.getTerritory(2).removeDef();
+		check(p.getChainValue(b.getTerritory(0)) == 9 && q.getChainValue(b.getTerritory(2)) == 0, "Chain after retaking T2");
+		checkChains(b, p);
+		checkChains(b, q);
+		checkRebuild(b, p);
+
+		System.out.println("Supply chains checked");
+	}
+
+	// Every chain read agrees with a search of the chain, and tax with the best crowned chain
+	static void checkChains(Board b, Player p) {
+		int best = 0;
+
+		for (int id = 0; id < b.getTerritoryCount(); id++) {
+			Territory t = b.getTerritory(id);
+			Territory[] chain = p.getSupplyChain(t);
+			int value = 0, crowns = 0;
+
+			if (chain != null) {
+				for (Territory c : chain) {
+					value += c.getValue();
+					if (c.hasCrown()) crowns++;
+				}
+			}
+
+			check(p.getChainValue(t) == value, p.getName() + " chain value at " + t.getName());
+			check(p.getChainCrowns(t) == crowns, p.getName() + " chain crowns at " + t.getName());
+			if (crowns > 0) best = Math.max(best, value);
+		}
+
+		check(p.getTaxValue() == best, p.getName() + " tax value");
+	}
+
+	// A full rebuild in one pass finds the chains that were kept up as territories changed
+	static void checkRebuild(Board b, Player p) {
+		int[] value = new int[b.getTerritoryCount()], crowns = new int[value.length];
+		int tax = p.getTaxValue();
+
+		for (int id = 0; id < value.length; id++) {
+			value[id] = p.getChainValue(b.getTerritory(id));
+			crowns[id] = p.getChainCrowns(b.getTerritory(id));
+		}
+
+		p.findSupplyChains();
+		check(p.getTaxValue() == tax, "Tax value after a rebuild");
+
+		for (int id = 0; id < value.length; id++) {
+			check(p.getChainValue(b.getTerritory(id)) == value[id] && p.getChainCrowns(b.getTerritory(id)) == crowns[id], "Rebuilt chain at T" + id);
+		}
+	}
+
+	/*
+		The occupied bitset and the territory list stay in step, also after clearTerritories()
+	*/
+	static void territorySets() {
+		Board b = line();
+		Player p = new Player("Sets", "red");
+		List<Territory> view = p.getTerritories();
+
+		for (int id : new int[] {0, 5, 63, 64, 69}) take(p, b.getTerritory(id));
+		checkSets(b, p);
+
+		// Removing from the middle moves the last one into the gap
+		p.removeTerr(b.getTerritory(5));
+		checkSets(b, p);
+
+		p.clearTerritories();
+		check(p.getTerritoryCount() == 0 && view.isEmpty(), "Nothing left after clearing");
+		checkSets(b, p);
+
+		for (int id : new int[] {64, 2, 69}) p.addTerr(b.getTerritory(id));
+		p.removeTerr(b.getTerritory(64));
+		checkSets(b, p);
+		check(view.size() == 2, "The view shows later changes");
+
+		// Territories are still defended by the player, clearing only takes the player off them
+		check(p.getDefendedCount() == 5, "Defended bits are left alone");
+
+		try {
+			view.add(b.getTerritory(10));
+			check(false, "The view is read only");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		System.out.println("Territory sets checked");
+	}
+
+	static void checkSets(Board b, Player p) {
+		long[] bits = p.getOccupiedBits();
+		int count = 0;
+
+		for (int w = 0; w < bits.length; w++) count += Long.bitCount(bits[w]);
+		check(count == p.getTerritoryCount(), "Bit count matches the list");
+
+		for (Territory t : p.getTerritories()) {
+			int id = t.getId();
+			check((bits[id >>> 6] & (1L << id)) != 0, t.getName() + " is in the bitset");
+		}
+
+		for (int id = 0; id < b.getTerritoryCount(); id++) {
+			check(p.isOn(b.getTerritory(id)) == p.getTerritories().contains(b.getTerritory(id)), "isOn at T" + id);
+		}
+	}
+
+	/*
+		The crown count follows disputes and lost territories
+	*/
+	static void crowns() {
+		Player.setCheckCrowns(true);
+
+		Board b = line();
+		Player p = new Player("Crowns", "red"), q = new Player("Raider", "blue");
+
+		for (int id : new int[] {1, 2, 3, 65}) take(p, b.getTerritory(id));
+		checkCrowns(p, 3);
+
+		// A disputed crown still belongs to its defender
+		attack(q, b.getTerritory(3));
+		checkCrowns(p, 3);
+		checkCrowns(q, 0);
+
+		// The attacker takes over once the defender is removed
+		b.getTerritory(3).removeDef();
+		checkCrowns(p, 2);
+		checkCrowns(q, 1);
+
+		// Removed with nobody to take over
+		b.getTerritory(65).removeDef();
+		checkCrowns(p, 1);
+
+		// Attackers that lose leave the count alone
+		attack(q, b.getTerritory(1));
+		b.getTerritory(1).removeAtk();
+		checkCrowns(p, 1);
+		checkCrowns(q, 1);
+
+		Player.setCheckCrowns(false);
+		System.out.println("Crowns checked");
+	}
+
+	static void checkCrowns(Player p, int expected) {
+		check(p.getCrowns() == expected && p.countCrowns() == expected, p.getName() + " has " + p.getCrowns() + " crowns, not " + expected);
+	}
+
+	static void check(boolean ok, String what) {
+		if (ok) return;
+
+		failures++;
+		System.out.println("FAIL: " + what);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class ReplayTest {
+	public static void main(String[] args) throws Exception {
+		String[] names = {"Billy", "Bobby", "Johnny"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		Path dir = Files.createTempDirectory("replay");
+		SplittableRandom rng = new SplittableRandom(7);
+		int games = 10, seeks = 0, mismatches = 0;
+		long seekNanos = 0, worstSeek = 0;
+
+		for (int game = 0; game < games; game++) {
+			String path = dir.resolve("game-" + game + ".log").toString();
+			GameEngine engine = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(game));
+			Bot bot = new HeuristicBot();
+
+			// The hash after every action, to check positions of the replay against
+			long[] hashes = new long[4096];
+			int count = 0;
+			hashes[count++] = engine.getHash();
+
+			try (EventLog log = new EventLog(path, "risk_eu_board.txt")) {
+				engine.setEventLog(log);
+
+				while (!engine.isOver() && engine.getRound() <= 100) {
+					engine.apply(bot.choose(engine, engine.getActingPlayer(), System.nanoTime() + 1000000));
+					hashes[count++] = engine.getHash();
+				}
+			}
+
+			Replay replay = new Replay(path, null, 16);
+
+			if (replay.getActionCount() != count - 1 || replay.getEngine().getHash() != engine.getHash()) mismatches++;
+			if (replay.getWinnerIndex() != engine.getPlayerIndex(engine.getWinner())) mismatches++;
+
+			// Random seeks in both directions
+			for (int i = 0; i < 200; i++) {
+				int k = rng.nextInt(count);
+
+				long start = System.nanoTime();
+				replay.seekAction(k);
+				long took = System.nanoTime() - start;
+
+				seekNanos += took;
+				worstSeek = Math.max(worstSeek, took);
+				seeks++;
+
+				if (replay.getEngine().getHash() != hashes[k]) mismatches++;
+			}
+
+			// Every round starts with picks
+			for (int r = 1; r <= replay.getRoundCount(); r++) {
+				replay.seekRound(r);
+				GameEngine g = replay.getEngine();
+
+				if (g.getRound() != r || g.getPhase() != GameEngine.PICK) mismatches++;
+			}
+
+			// The last event is the end of the game
+			replay.seekEvent(replay.getEventCount() - 1);
+			if (!replay.getEngine().isOver()) mismatches++;
+
+			System.out.println("Game " + game + ": " + replay.getActionCount() + " actions, " + replay.getRoundCount()
+				+ " rounds, " + replay.getDisputeCount() + " disputes");
+		}
+
+		System.out.printf("%nSeeks: %d Average: %.1f us Worst: %.1f us Mismatches: %d%n", seeks,
+			seekNanos / 1e3 / seeks, worstSeek / 1e3, mismatches);
+	}
+}
@@ -0,0 +1,211 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SealedMovesTest {
+	static int failures;
+
+	public static void main(String[] args) throws Exception {
+		String[] names = {"Billy", "Bobby", "Johnny", "Jimmy"};
+		int[] cards = {1,1,2,3,3,4,5,5};
+		long think = 200000000L;
+
+		// Four bots that each think 200 ms, one after another and then at once
+		GameEngine g = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(1));
+		Bot[] bots = new Bot[4];
+		for (int i = 0; i < 4; i++) bots[i] = new SlowBot(think / 1000000);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) bots[i].choose(g, g.getPlayer(i), start + think);
+		long inTurn = System.nanoTime() - start;
+
+		SealedMoves sealed = new SealedMoves();
+		start = System.nanoTime();
+		sealed.begin(g, bots, think);
+
+		for (int i = 0; i < 4; i++) {
+			if (!g.apply(sealed.collect(i)) || sealed.isLate(i)) fail("Bid " + i + " was not taken: " + g.getError());
+		}
+
+		long atOnce = System.nanoTime() - start;
+		if (g.getPhase() != GameEngine.START) fail("Bidding did not end");
+		if (atOnce * 2 > inTurn) fail("Bids at once were not quicker");
+
+		System.out.printf("Four 200 ms bids one after another: %.0f ms, at once: %.0f ms%n", inTurn / 1e6, atOnce / 1e6);
+
+		// Play on to the first pick, one bot never answers in time and one bot plays two seats
+		Bot quick = new HeuristicBot();
+		while (g.getPhase() != GameEngine.PICK) g.apply(quick.choose(g, g.getActingPlayer(), System.nanoTime() + 1000000));
+
+		Bot shared = new SlowBot(20);
+		SlowBot stuck = new SlowBot(1000);
+		bots = new Bot[] {stuck, shared, shared, null};
+
+		start = System.nanoTime();
+		sealed.begin(g, bots, 100000000L);
+
+		// The person picks while the bots think
+		Player person = g.getPlayer(3);
+		int[] hand = person.getCards();
+		g.apply(new PickCards(person, hand[hand.length - 1], hand[hand.length - 2]));
+
+		int[] firstHand = g.getPlayer(0).getCards();
+
+		for (int i = 0; i < 3; i++) {
+			Action a = sealed.collect(i);
+			if (!g.apply(a)) fail("Pick " + i + " was rejected: " + g.getError());
+			if (sealed.isLate(i) != (i == 0)) fail("Seat " + i + (i == 0 ? " was not" : " was") + " late");
+
+			if (i == 0) {
+				PickCards pick = (PickCards) a;
+				if (pick.getFirst() != firstHand[0] || pick.getSecond() != firstHand[1]) fail("The late seat did not get the default pick");
+			}
+		}
+
+		long picked = System.nanoTime() - start;
+		if (g.getPhase() != GameEngine.TURN) fail("Picking did not end");
+		if (picked > 1000000000L) fail("The late bot was waited on");
+
+		System.out.printf("Picks with a 1 s bot and a 100 ms deadline: %.0f ms%n", picked / 1e6);
+
+		// The late bot is still thinking when the next phase begins, it is not started again beside itself
+		GameEngine next = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(2));
+		sealed.begin(next, new Bot[] {stuck, null, null, null}, 100000000L);
+
+		if (!next.apply(sealed.collect(0)) || !sealed.isLate(0)) fail("The busy bot was not given the default bid");
+
+		Thread.sleep(2500);
+		if (stuck.runs.get() != 2) fail("The busy bot ran " + stuck.runs.get() + " times, not 2");
+		if (stuck.most.get() != 1) fail("The busy bot ran on " + stuck.most.get() + " threads at once");
+		if (sealed.getBusyCount() != 0) fail(sealed.getBusyCount() + " bots are still held once they are done");
+
+		// A bot whose move fails with an Error while its next phase waits on it still gets to think again
+		BrokenBot broken = new BrokenBot();
+
+		for (int phase = 0; phase < 2; phase++) {
+			GameEngine fresh = new GameEngine(names, new Board("risk_eu_board.txt"), cards, new SeededDice(3 + phase));
+			sealed.begin(fresh, new Bot[] {broken, null, null, null}, 100000000L);
+			if (!fresh.apply(sealed.collect(0)) || !sealed.isLate(0)) fail("The broken bot was not given the default in phase " + phase);
+		}
+
+		Thread.sleep(1000);
+		if (broken.calls.get() != 2) fail("The bot after an Error ran " + broken.calls.get() + " times, not 2");
+		if (sealed.getBusyCount() != 0) fail(sealed.getBusyCount() + " bots are still held after an Error");
+
+		sealed.shutdown();
+
+		serverDeadline();
+
+		System.out.println("Failures: " + failures);
+	}
+
+	// Seats that never bid are bid for once the deadline passes, and the game moves on
+	static void serverDeadline() throws Exception {
+		GameServer server = new GameServer(0, new Board("risk_eu_board.txt"));
+		server.setSealedTime(100);
+		Thread serverThread = new Thread(server, "game-server");
+		serverThread.start();
+
+		try (Socket a = new Socket("localhost", server.getPort()); Socket b = new Socket("localhost", server.getPort())) {
+			PrintWriter outA = new PrintWriter(a.getOutputStream(), true), outB = new PrintWriter(b.getOutputStream(), true);
+			BufferedReader inA = new BufferedReader(new InputStreamReader(a.getInputStream()));
+			BufferedReader inB = new BufferedReader(new InputStreamReader(b.getInputStream()));
+
+			outA.println("CREATE late 2");
+			until(inA, "OK");
+			outA.println("JOIN late Billy");
+			until(inA, "SEATED");
+			outB.println("JOIN late Bobby");
+			until(inB, "MOVE BID");
+
+			// Bobby bids, Billy does not
+			long start = System.nanoTime();
+			outB.println("BID 3");
+			until(inB, "OK");
+
+			String line = until(inB, "TIMEOUT");
+			if (!line.equals("TIMEOUT 0")) fail("Expected Billy to time out, got " + line);
+
+			line = until(inB, "DID 0");
+			if (!line.equals("DID 0 BID")) fail("Expected a sealed bid for Billy, got " + line);
+
+			long waited = System.nanoTime() - start;
+			if (waited > 1000000000L) fail("The deadline took " + waited / 1000000 + " ms");
+
+			// Bobby bid more and starts, the bid phase has no deadline left to fire
+			until(inB, "MOVE START");
+			System.out.printf("Server bid deadline of 100 ms passed after %.0f ms%n", waited / 1e6);
+		}
+
+		server.stop();
+		serverThread.join();
+	}
+
+	static String until(BufferedReader in, String prefix) throws Exception {
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith("ERROR")) fail(line);
+			if (line.startsWith(prefix)) return line;
+		}
+
+		fail("Connection closed waiting for " + prefix);
+		return "";
+	}
+
+	static void fail(String why) {
+		failures++;
+		System.out.println("FAIL: " + why);
+	}
+
+	/*
+		Thinks for 300 ms and then fails with an Error
+	*/
+	static class BrokenBot implements Bot {
+		AtomicInteger calls = new AtomicInteger();
+
+		public Action choose(GameEngine engine, Player p, long deadline) {
+			calls.incrementAndGet();
+
+			try {
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			throw new AssertionError("Broken on purpose");
+		}
+	}
+
+	/*
+		Takes its full time before giving the heuristic move
+	*/
+	static class SlowBot implements Bot {
+		long millis;
+		HeuristicBot inner = new HeuristicBot();
+
+		// Calls under way, the most at once and in all
+		AtomicInteger active = new AtomicInteger(), most = new AtomicInteger(), runs = new AtomicInteger();
+
+		SlowBot(long millis) {
+			this.millis = millis;
+		}
+
+		public Action choose(GameEngine engine, Player p, long deadline) {
+			most.accumulateAndGet(active.incrementAndGet(), Math::max);
+			runs.incrementAndGet();
+
+			try {
+				Thread.sleep(millis);
+				return inner.choose(engine, p, System.nanoTime() + 1000000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+}
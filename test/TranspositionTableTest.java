@@ -0,0 +1,75 @@
+public class TranspositionTableTest {
+	public static void main(String[] args) throws Exception {
+		// Threads write values that can be checked from the key, a wrong value on a hit is a torn read
+		TranspositionTable table = new TranspositionTable(1 << 10);
+		long[] wrong = new long[1], hits = new long[1];
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++) {
+			long seed = t;
+
+			threads[t] = new Thread(() -> {
+				java.util.SplittableRandom rng = new java.util.SplittableRandom(seed);
+				long localWrong = 0, localHits = 0;
+
+				for (int i = 0; i < 2000000; i++) {
+					long key = rng.nextLong(1 << 14) * 0x9E3779B97F4A7C15L;
+
+					if (rng.nextBoolean()) {
+						table.put(key, key & 0xFFFF);
+					} else {
+						double v = table.get(key, -1);
+
+						if (v >= 0) {
+							localHits++;
+							if (v != (key & 0xFFFF)) localWrong++;
+						}
+					}
+				}
+
+				synchronized (wrong) {
+					wrong[0] += localWrong;
+					hits[0] += localHits;
+				}
+			});
+
+			threads[t].start();
+		}
+
+		for (Thread t : threads) t.join();
+		System.out.println("Table hits: " + hits[0] + " Wrong values: " + wrong[0]);
+
+		// The kept hash against one computed from scratch, through undo and copies
+		int games = 10, mismatches = 0, checks = 0;
+
+		for (int game = 0; game < games; game++) {
+			GameEngine engine = new GameEngine(new String[] {"Billy", "Bobby", "Johnny"}, new Board("risk_eu_board.txt"), new int[] {1,1,2,3,3,4,5,5}, new SeededDice(game));
+			engine.setUndo(true);
+			Bot bot = new HeuristicBot();
+
+			while (!engine.isOver() && engine.getRound() <= 100) {
+				long before = engine.getHash();
+				Player p = engine.getActingPlayer();
+
+				if (!engine.apply(bot.choose(engine, p, System.nanoTime() + 1000000))) {
+					System.out.println("Rejected: " + engine.getError());
+					return;
+				}
+
+				checks++;
+				if (engine.getHash() != engine.computeHash()) mismatches++;
+				if (engine.copy(new SeededDice(0), null).getHash() != engine.getHash()) mismatches++;
+
+				// Every tenth action is taken back and played again
+				if (checks % 10 == 0) {
+					engine.undo();
+					if (engine.getHash() != before) mismatches++;
+
+					engine.apply(bot.choose(engine, p, System.nanoTime() + 1000000));
+				}
+			}
+		}
+
+		System.out.println("Hash checks: " + checks + " Mismatches: " + mismatches);
+	}
+}